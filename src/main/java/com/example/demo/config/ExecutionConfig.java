@@ -0,0 +1,52 @@
+package com.example.demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Request execution configuration. With request.execution-mode=virtual every request is handled on its own
+ * virtual thread instead of a thread of Tomcat's pool, so a request blocked on the database no longer holds
+ * one of a few hundred platform threads; the connection pool becomes the only limit on concurrent queries.
+ * Virtual threads need Java 21. The executor is looked up at runtime so the application still builds and
+ * runs on Java 17, where this mode falls back to the platform thread pool with a warning.
+ */
+@Configuration
+public class ExecutionConfig {
+    private static final Logger log = LoggerFactory.getLogger(ExecutionConfig.class);
+
+    @Bean
+    @ConditionalOnProperty(name = "request.execution-mode", havingValue = "virtual")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadExecutor() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        if (executor == null) {
+            log.warn("request.execution-mode=virtual needs Java 21 or later, running on Java {} with platform threads",
+                    Runtime.version().feature());
+            return protocolHandler -> {
+            };
+        }
+        log.info("Requests are handled on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread for each task.
+     *
+     * @return The executor, or null if the running Java version has no virtual threads.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
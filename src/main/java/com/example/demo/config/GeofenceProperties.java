@@ -0,0 +1,33 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration of the service-area zones, for example:
+ * geofence.zones[0].name=taipei
+ * geofence.zones[0].polygon=25.026708 121.511162, 25.026708 121.567045, 25.068277 121.567045, 25.068277 121.511162
+ * Without zones the original Taipei rectangle is used.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "geofence")
+public class GeofenceProperties {
+    private double cellSize = 0.001;
+    private List<ZoneProperties> zones = new ArrayList<>();
+
+    /**
+     * One zone, with its vertices written as "lat lng" pairs separated by commas.
+     */
+    @Data
+    @NoArgsConstructor
+    public static class ZoneProperties {
+        private String name;
+        private String polygon;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demo.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.aop.ObservedAspect;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Observation configuration turning service methods annotated with @Observed into timers, and into spans
+ * once a tracing bridge is on the classpath, so the time of a request can be split between its steps.
+ */
+@Configuration
+public class ObservationConfig {
+
+    @Bean
+    public ObservedAspect observedAspect(ObservationRegistry observationRegistry) {
+        return new ObservedAspect(observationRegistry);
+    }
+}
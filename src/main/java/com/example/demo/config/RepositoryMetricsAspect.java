@@ -0,0 +1,96 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aspect timing every query method of the repositories and recording the number of rows each
+ * collection-returning query loads, tagged by repository and method. The meters of a method are looked
+ * up once and kept, so a query pays for two clock reads and a map lookup.
+ */
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+    private static final String REPOSITORY_PACKAGE = "com.example.demo.repository";
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final Map<MeterKey, Meters> meters = new ConcurrentHashMap<>();
+
+    @Around("execution(* com.example.demo.repository..*.*(..))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Meters methodMeters = meters.computeIfAbsent(new MeterKey(joinPoint.getThis().getClass(), method),
+                key -> register(repositoryName(key.proxyClass(), method), method));
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Object result = joinPoint.proceed();
+            succeeded = true;
+            if (methodMeters.results() != null && result instanceof Collection<?> rows) {
+                methodMeters.results().record(rows.size());
+            }
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (succeeded) {
+                methodMeters.success().record(elapsed, TimeUnit.NANOSECONDS);
+            } else {
+                // Failures are rare, so their timers are only created when one happens
+                timer(methodMeters.repository(), method.getName(), "error").record(elapsed, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private Meters register(String repository, Method method) {
+        DistributionSummary results = null;
+        if (Collection.class.isAssignableFrom(method.getReturnType())) {
+            results = DistributionSummary.builder("repository.results")
+                    .description("Rows loaded by a repository query")
+                    .baseUnit("rows")
+                    .tag("repository", repository)
+                    .tag("method", method.getName())
+                    .register(registry);
+        }
+        return new Meters(repository, timer(repository, method.getName(), "success"), results);
+    }
+
+    private Timer timer(String repository, String method, String outcome) {
+        return Timer.builder("repository.query")
+                .description("Time spent in a repository query")
+                .tag("repository", repository)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    // Inherited methods such as save are declared by Spring Data, so the name is taken from the proxied repository
+    private static String repositoryName(Class<?> proxyClass, Method method) {
+        for (Class<?> type : proxyClass.getInterfaces()) {
+            if (type.getName().startsWith(REPOSITORY_PACKAGE)) {
+                return type.getSimpleName();
+            }
+        }
+        return method.getDeclaringClass().getSimpleName();
+    }
+
+    private record MeterKey(Class<?> proxyClass, Method method) {
+    }
+
+    private record Meters(String repository, Timer success, DistributionSummary results) {
+    }
+}
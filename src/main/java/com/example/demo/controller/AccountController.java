@@ -8,7 +8,9 @@ import com.example.demo.model.UserInfo;
 import com.example.demo.repository.UserInfoRepository;
 import com.example.demo.service.AccountService;
 import com.example.demo.response.*;
+import com.example.demo.security.UserPrincipal;
 import com.example.demo.service.RentingService;
+import com.example.demo.service.ServiceMetrics;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -28,19 +30,18 @@ public class AccountController {
     @Autowired
     private RentingService rentingService;
 
+    @Autowired
+    private ServiceMetrics metrics;
+
     /**
      * Retrieves the information of a user.
      *
-     * @param id    The ID of the user.
-     * @param token The authentication token.
+     * @param principal The authenticated user.
      * @return ResponseEntity representing the user information or an error response.
      */
     @GetMapping("/info/{id}")
-    public ResponseEntity<?> getInfo(@PathVariable long id, @RequestHeader("Authorization") String token) {
-        if (!accountService.isAuthenticated(id, token)) {
-            return ResponseEntity.status(401).body(new ErrorResponse("Authentication failed"));
-        }
-        UserInfo user = accountService.findUserInfo(id);
+    public ResponseEntity<?> getInfo(UserPrincipal principal) {
+        UserInfo user = principal.getUserInfo();
         if (user == null) {
             return ResponseEntity.status(401).body(new ErrorResponse("User not found"));
         }
@@ -95,26 +96,23 @@ public class AccountController {
     public ResponseEntity<?> login(@RequestBody LoginForm loginForm, HttpServletRequest request) {
         UserInfo user = accountService.findUserInfo(loginForm.getUsername());
         if (user == null || !accountService.verifyUserInfo(user, loginForm.getPassword())) {
+            metrics.loginFailed();
             return ResponseEntity.status(401).body(new ErrorResponse("Authentication failed"));
         }
-        String token = accountService.login(user.getId());
+        String token = accountService.login(user);
         return ResponseEntity.status(200).body(new UserTokenResponse(user.getId(), token, user.getIsRenter()));
     }
 
     /**
      * Performs user logout.
      *
-     * @param id    The ID of the user.
-     * @param token The authentication token.
+     * @param principal The authenticated user.
+     * @param token     The authentication token.
      * @return ResponseEntity representing the success or failure of the logout process.
      */
     @PostMapping("/logout/{id}")
-    public ResponseEntity<?> logout(@PathVariable long id, @RequestHeader("Authorization") String token) {
-        if (!accountService.isAuthenticated(id, token)) {
-            return ResponseEntity.status(401).body(new ErrorResponse("Authentication failed"));
-        }
-
-        if (accountService.logout(id)) {
+    public ResponseEntity<?> logout(UserPrincipal principal, @RequestHeader("Authorization") String token) {
+        if (accountService.logout(principal.getId(), token)) {
             return ResponseEntity.status(200).body(util.EMPTY_RESPONSE);
         } else {
             return ResponseEntity.status(403).body(new ErrorResponse("Not logged in"));
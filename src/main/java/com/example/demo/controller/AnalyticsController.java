@@ -0,0 +1,70 @@
+/**
+ * The AnalyticsController class answers aggregate questions about finished trips, such as the revenue per
+ * hour and zone or the average trip duration by start cell, from the in-memory trip store instead of the
+ * database.
+ */
+package com.example.demo.controller;
+
+import com.example.demo.response.ErrorResponse;
+import com.example.demo.service.TripStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@RequestMapping("/analytics")
+public class AnalyticsController {
+
+    @Autowired
+    private TripStore tripStore;
+
+    /**
+     * Retrieves the trip count, revenue, average bill, minutes and distance, and coupon rate of the finished
+     * trips, grouped by up to three dimensions.
+     *
+     * @param groupBy  The comma-separated dimensions: hour, weekday, day, zone, startCell, endCell or coupon.
+     * @param from     The earliest start time of the trips, omitted for no limit.
+     * @param to       The start time the trips started before, omitted for no limit.
+     * @param cellSize The edge length in degrees of the cells of the cell dimensions.
+     * @param sort     The order of the groups: key, trips, revenue, avgBill, avgMinutes or avgDistance.
+     * @param limit    The maximum number of groups to return.
+     * @return ResponseEntity containing the measures of each group or an error response if the query is invalid.
+     */
+    @GetMapping("/trips")
+    public ResponseEntity<?> getTrips(@RequestParam(defaultValue = "") String groupBy,
+                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                      @RequestParam(defaultValue = "0.01") double cellSize,
+                                      @RequestParam(defaultValue = "key") String sort,
+                                      @RequestParam(defaultValue = "1000") int limit) {
+        try {
+            List<TripStore.Dimension> dimensions = new ArrayList<>();
+            for (String name : groupBy.split(",")) {
+                if (!name.isBlank()) {
+                    dimensions.add(TripStore.Dimension.parse(name));
+                }
+            }
+            return ResponseEntity.status(200).body(tripStore.aggregate(dimensions, from, to, cellSize, sort, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Retrieves the size, memory and import progress of the trip store.
+     *
+     * @return ResponseEntity containing the store statistics.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> getStats() {
+        return ResponseEntity.status(200).body(tripStore.stats());
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * The AuthenticationExceptionHandler class turns authentication failures raised while resolving
+ * the request principal into the same 401 response the controllers used to build themselves.
+ */
+package com.example.demo.controller;
+
+import com.example.demo.response.ErrorResponse;
+import com.example.demo.security.AuthenticationFailedException;
+import com.example.demo.service.ServiceMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@RestControllerAdvice
+public class AuthenticationExceptionHandler {
+
+    @Autowired
+    private ServiceMetrics metrics;
+
+    /**
+     * Handles a failed authentication.
+     *
+     * @param e The exception raised by the principal resolver.
+     * @return ResponseEntity representing the authentication failure.
+     */
+    @ExceptionHandler(AuthenticationFailedException.class)
+    public ResponseEntity<?> handleAuthenticationFailed(AuthenticationFailedException e) {
+        metrics.tokenRejected();
+        return ResponseEntity.status(401).body(new ErrorResponse("Authentication failed"));
+    }
+}
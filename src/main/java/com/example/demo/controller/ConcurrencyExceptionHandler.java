@@ -0,0 +1,26 @@
+/**
+ * The ConcurrencyExceptionHandler class reports optimistic locking failures, raised when two requests
+ * modify the same car or renter at the same time, as a conflict the client can retry.
+ */
+package com.example.demo.controller;
+
+import com.example.demo.response.ErrorResponse;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@RestControllerAdvice
+public class ConcurrencyExceptionHandler {
+
+    /**
+     * Handles a concurrent modification.
+     *
+     * @param e The optimistic locking failure.
+     * @return ResponseEntity representing the conflict.
+     */
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<?> handleOptimisticLockingFailure(ObjectOptimisticLockingFailureException e) {
+        return ResponseEntity.status(409).body(new ErrorResponse("Concurrent modification, please retry"));
+    }
+}
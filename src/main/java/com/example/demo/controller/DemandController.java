@@ -0,0 +1,57 @@
+/**
+ * The DemandController class exposes the demand heatmap of the service area and the cells forecast to run
+ * short of cars, for rebalancing the fleet.
+ */
+package com.example.demo.controller;
+
+import com.example.demo.response.ErrorResponse;
+import com.example.demo.service.DemandForecaster;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/demand")
+public class DemandController {
+    private static final int MAX_SHORTAGES = 1000;
+
+    @Autowired
+    private DemandForecaster demandForecaster;
+
+    /**
+     * Retrieves the rent and return rates and the available cars of every grid cell with any of them.
+     *
+     * @param horizon The time ahead the shortfall of each cell is forecast for, as an ISO-8601 duration.
+     * @return ResponseEntity containing the cells or an error response if the horizon is invalid.
+     */
+    @GetMapping("/heatmap")
+    public ResponseEntity<?> getHeatmap(@RequestParam(defaultValue = "PT1H") Duration horizon) {
+        if (horizon.isNegative()) {
+            return ResponseEntity.status(400).body(new ErrorResponse("Horizon must not be negative"));
+        }
+        return ResponseEntity.status(200).body(demandForecaster.heatmap(horizon));
+    }
+
+    /**
+     * Retrieves the cells expected to have fewer cars than renters within the horizon.
+     *
+     * @param horizon      The time ahead to forecast for, as an ISO-8601 duration.
+     * @param minShortfall The smallest number of missing cars to report a cell for.
+     * @param limit        The maximum number of cells to return.
+     * @return ResponseEntity containing the cells, largest shortfall first, or an error response if the horizon is invalid.
+     */
+    @GetMapping("/shortages")
+    public ResponseEntity<?> getShortages(@RequestParam(defaultValue = "PT1H") Duration horizon,
+                                          @RequestParam(defaultValue = "1") double minShortfall,
+                                          @RequestParam(defaultValue = "20") int limit) {
+        if (horizon.isNegative()) {
+            return ResponseEntity.status(400).body(new ErrorResponse("Horizon must not be negative"));
+        }
+        return ResponseEntity.status(200).body(demandForecaster.shortages(horizon, minShortfall, Math.min(limit, MAX_SHORTAGES)));
+    }
+}
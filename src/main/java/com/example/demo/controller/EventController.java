@@ -0,0 +1,100 @@
+/**
+ * The EventController class serves the read models projected from the rental event log, and lets them be
+ * rebuilt by replaying the log. The projections trail the database by the projection lag.
+ */
+package com.example.demo.controller;
+
+import com.example.demo.response.ErrorResponse;
+import com.example.demo.response.RenterEventsResponse;
+import com.example.demo.security.UserPrincipal;
+import com.example.demo.service.EventLog;
+import com.example.demo.service.EventProjections;
+import com.example.demo.service.FleetPositionProjection;
+import com.example.demo.service.RentHistoryProjection;
+import com.example.demo.service.RenterStatusProjection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/events")
+public class EventController {
+
+    @Autowired
+    private EventLog eventLog;
+
+    @Autowired
+    private EventProjections projections;
+
+    @Autowired
+    private RenterStatusProjection renterStatus;
+
+    @Autowired
+    private RentHistoryProjection rentHistory;
+
+    @Autowired
+    private FleetPositionProjection fleetPositions;
+
+    /**
+     * Retrieves the rental status and latest rides of a renter.
+     *
+     * @param principal The authenticated renter.
+     * @return ResponseEntity containing the status, null if the renter has no events, and the rides, latest first.
+     */
+    @GetMapping("/renters/{id}")
+    public ResponseEntity<?> getRenter(UserPrincipal principal) {
+        return ResponseEntity.status(200).body(new RenterEventsResponse(renterStatus.find(principal.getId()),
+                rentHistory.find(principal.getId())));
+    }
+
+    /**
+     * Retrieves the last known position, power and status of a car.
+     *
+     * @param no The car number.
+     * @return ResponseEntity containing the state of the car or an error response if the car has no events.
+     */
+    @GetMapping("/cars/{no}")
+    public ResponseEntity<?> getCar(@PathVariable String no) {
+        FleetPositionProjection.Position position = fleetPositions.find(no);
+        if (position == null) {
+            return ResponseEntity.status(404).body(new ErrorResponse("No events for car"));
+        }
+        return ResponseEntity.status(200).body(position);
+    }
+
+    /**
+     * Retrieves the size of the event log and the lag of the projections.
+     *
+     * @return ResponseEntity containing the log and projection statistics.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("log", eventLog.stats());
+        stats.put("projections", projections.stats());
+        return ResponseEntity.status(200).body(stats);
+    }
+
+    /**
+     * Starts rebuilding the projections by replaying the whole event log.
+     *
+     * @param principal The authenticated user.
+     * @return ResponseEntity with status 202, the rebuild going on in the background, or an error response if
+     * the user is not a repairer.
+     */
+    @PostMapping("/replay/{id}")
+    public ResponseEntity<?> replay(UserPrincipal principal) {
+        if (!principal.isRepairer()) {
+            return ResponseEntity.status(403).body(new ErrorResponse("Not a repairer"));
+        }
+        projections.rebuild();
+        return ResponseEntity.status(202).build();
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * The IdempotencyExceptionHandler class reports an Idempotency-Key that cannot be used for a request,
+ * because it is malformed or was already used for a different request.
+ */
+package com.example.demo.controller;
+
+import com.example.demo.response.ErrorResponse;
+import com.example.demo.service.IdempotencyCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@RestControllerAdvice
+public class IdempotencyExceptionHandler {
+
+    /**
+     * Handles an unusable idempotency key.
+     *
+     * @param e The exception raised by the idempotency cache.
+     * @return ResponseEntity representing the rejected key.
+     */
+    @ExceptionHandler(IdempotencyCache.InvalidIdempotencyKeyException.class)
+    public ResponseEntity<?> handleInvalidIdempotencyKey(IdempotencyCache.InvalidIdempotencyKeyException e) {
+        return ResponseEntity.status(422).body(new ErrorResponse(e.getMessage()));
+    }
+}
@@ -1,13 +1,19 @@
 /**
  * The LoadingController class is responsible for handling requests related to loading data into the system.
- * It provides endpoints for loading cars and charge stations.
+ * It provides endpoints for loading cars, charge stations and the pricing tariff.
  */
 package com.example.demo.controller;
 
 import com.example.demo.model.Car;
 import com.example.demo.model.ChargeStation;
-import com.example.demo.repository.CarRepository;
-import com.example.demo.repository.ChargeStationRepository;
+import com.example.demo.response.ErrorResponse;
+import com.example.demo.security.UserPrincipal;
+import com.example.demo.service.BulkImportService;
+import com.example.demo.service.PricingEngine;
+import com.example.demo.service.Tariff;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -16,6 +22,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -23,10 +31,9 @@ import java.util.List;
 public class LoadingController {
 
     @Autowired
-    private CarRepository carRepo;
-
+    private BulkImportService bulkImportService;
     @Autowired
-    private ChargeStationRepository chargeStationRepo;
+    private PricingEngine pricingEngine;
 
     /**
      * Loads a list of cars into the system.
@@ -36,10 +43,26 @@ public class LoadingController {
      */
     @PostMapping("/car")
     public ResponseEntity<String> loadCars(@RequestBody List<Car> cars) {
-        carRepo.saveAll(cars);
+        bulkImportService.importCars(cars);
         return ResponseEntity.status(HttpStatus.CREATED).body("Cars loaded successfully");
     }
 
+    /**
+     * Loads a JSON array of cars of any size, parsing and writing it batch by batch.
+     *
+     * @param body The request body containing the JSON array of cars.
+     * @return ResponseEntity containing the import progress summary, or an error response if the body is malformed.
+     * @throws IOException If the request body cannot be read.
+     */
+    @PostMapping("/car/stream")
+    public ResponseEntity<?> streamCars(InputStream body) throws IOException {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(bulkImportService.importCars(body));
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.status(400).body(new ErrorResponse("Malformed car list: " + e.getOriginalMessage()));
+        }
+    }
+
     /**
      * Loads a list of charge stations into the system.
      *
@@ -48,7 +71,54 @@ public class LoadingController {
      */
     @PostMapping("/chargeStation")
     public ResponseEntity<String> loadBattery(@RequestBody List<ChargeStation> batteries) {
-        chargeStationRepo.saveAll(batteries);
+        bulkImportService.importChargeStations(batteries);
         return ResponseEntity.status(HttpStatus.CREATED).body("Charge stations loaded successfully");
     }
+
+    /**
+     * Loads a JSON array of charge stations of any size, parsing and writing it batch by batch.
+     *
+     * @param body The request body containing the JSON array of charge stations.
+     * @return ResponseEntity containing the import progress summary, or an error response if the body is malformed.
+     * @throws IOException If the request body cannot be read.
+     */
+    @PostMapping("/chargeStation/stream")
+    public ResponseEntity<?> streamBattery(InputStream body) throws IOException {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(bulkImportService.importChargeStations(body));
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.status(400).body(new ErrorResponse("Malformed charge station list: " + e.getOriginalMessage()));
+        }
+    }
+
+    /**
+     * Replaces the pricing tariff. The rules are compiled before the current tariff is swapped out,
+     * so returns in progress are priced with either the old or the new tariff as a whole.
+     *
+     * @param principal  The authenticated user.
+     * @param tariffForm The tariff form containing the coupon discount and the pricing rules.
+     * @return ResponseEntity containing the loaded tariff, or an error response if the user is not a repairer
+     * or a rule is invalid.
+     */
+    @PostMapping("/tariff/{id}")
+    public ResponseEntity<?> loadTariff(UserPrincipal principal, @RequestBody TariffForm tariffForm) {
+        if (!principal.isRepairer()) {
+            return ResponseEntity.status(403).body(new ErrorResponse("Not a repairer"));
+        }
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(pricingEngine.load(tariffForm.getCouponPercent(), tariffForm.getRules()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * The TariffForm class represents the tariff request form.
+     */
+    @Data
+    @NoArgsConstructor
+    public static class TariffForm {
+        private Integer couponPercent;
+        private List<Tariff.Rule> rules;
+    }
 }
@@ -7,11 +7,13 @@ package com.example.demo.controller;
 
 import com.example.demo.model.Car;
 import com.example.demo.model.Renter;
-import com.example.demo.model.UserInfo;
 import com.example.demo.response.ErrorResponse;
+import com.example.demo.response.ViewportResponse;
 import com.example.demo.response.util;
-import com.example.demo.service.AccountService;
+import com.example.demo.security.UserPrincipal;
 import com.example.demo.service.CarService;
+import com.example.demo.service.GeofenceService;
+import com.example.demo.service.IdempotencyCache;
 import com.example.demo.service.RentingService;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -23,43 +25,67 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/renting")
 public class RentingController {
 
-    @Autowired
-    private AccountService accountService;
-
     @Autowired
     private RentingService rentingService;
 
     @Autowired
     private CarService carService;
 
+    @Autowired
+    private GeofenceService geofenceService;
+
+    @Autowired
+    private IdempotencyCache idempotencyCache;
+
     /**
      * Retrieves the rental status of a renter.
      *
-     * @param id    The ID of the renter.
-     * @param token The authorization token.
+     * @param principal The authenticated renter.
      * @return ResponseEntity containing the rental status or an error response if authentication fails.
      */
     @GetMapping("/status/{id}")
-    public ResponseEntity<?> getStatus(@PathVariable long id, @RequestHeader("Authorization") String token) {
-        if (!accountService.isAuthenticated(id, token)) {
-            return ResponseEntity.status(401).body(new ErrorResponse("Authentication failed"));
-        }
-        return ResponseEntity.status(200).body(rentingService.findRenter(accountService.findUserInfo(id).getId()));
+    public ResponseEntity<?> getStatus(UserPrincipal principal) {
+        return ResponseEntity.status(200).body(principal.getRenter());
     }
 
     /**
      * Retrieves the rental records of a renter.
      *
-     * @param id    The ID of the renter.
-     * @param token The authorization token.
+     * @param principal The authenticated renter.
      * @return ResponseEntity containing the rental records or an error response if authentication fails.
      */
     @GetMapping("/records/{id}")
-    public ResponseEntity<?> getRecords(@PathVariable long id, @RequestHeader("Authorization") String token) {
-        if (!accountService.isAuthenticated(id, token)) {
-            return ResponseEntity.status(401).body(new ErrorResponse("Authentication failed"));
+    public ResponseEntity<?> getRecords(UserPrincipal principal) {
+        return ResponseEntity.status(200).body(rentingService.getRentRecords(principal.getId()));
+    }
+
+    /**
+     * Retrieves one page of the rental records of a renter, latest first.
+     *
+     * @param principal The authenticated renter.
+     * @param cursor    The cursor returned with the previous page, omitted for the first page.
+     * @param size      The maximum number of records on the page.
+     * @return ResponseEntity containing the page and the cursor of the next page, or an error response if the cursor is invalid.
+     */
+    @GetMapping("/records/{id}/page")
+    public ResponseEntity<?> getRecordPage(UserPrincipal principal, @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.status(200).body(rentingService.getRentRecordPage(principal.getId(), cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(new ErrorResponse("Invalid cursor"));
         }
-        return ResponseEntity.status(200).body(rentingService.getRentRecords(accountService.findUserInfo(id).getId()));
+    }
+
+    /**
+     * Retrieves the ride count and the total bill, distance and minutes of the finished rentals of a renter.
+     *
+     * @param principal The authenticated renter.
+     * @return ResponseEntity containing the rental summary.
+     */
+    @GetMapping("/records/{id}/summary")
+    public ResponseEntity<?> getRecordSummary(UserPrincipal principal) {
+        return ResponseEntity.status(200).body(rentingService.getRentSummary(principal.getId()));
     }
 
     /**
@@ -75,6 +101,39 @@ public class RentingController {
         return ResponseEntity.status(200).body(carService.getNormalCars(latitude, longitude, range));
     }
 
+    /**
+     * Retrieves the k available cars closest to the specified coordinates, nearest first.
+     *
+     * @param latitude  The latitude coordinate.
+     * @param longitude The longitude coordinate.
+     * @param k         The number of cars to return.
+     * @return ResponseEntity containing the list of closest available cars.
+     */
+    @GetMapping("/cars/nearest")
+    public ResponseEntity<?> getNearestCars(@RequestParam double latitude, @RequestParam double longitude, @RequestParam(defaultValue = "10") int k) {
+        return ResponseEntity.status(200).body(carService.getNearestCars(latitude, longitude, k));
+    }
+
+    /**
+     * Retrieves the available cars inside a map viewport and the STOMP topics to subscribe to for live changes.
+     * The cars are the initial state; the topics then push ADD, REMOVE and MOVE deltas for each grid cell.
+     *
+     * @param minLatitude  The minimum latitude.
+     * @param maxLatitude  The maximum latitude.
+     * @param minLongitude The minimum longitude.
+     * @param maxLongitude The maximum longitude.
+     * @return ResponseEntity containing the cars and topics, or an error response if the viewport is too large.
+     */
+    @GetMapping("/viewport")
+    public ResponseEntity<?> getViewport(@RequestParam double minLatitude, @RequestParam double maxLatitude,
+                                         @RequestParam double minLongitude, @RequestParam double maxLongitude) {
+        ViewportResponse viewport = carService.getViewport(minLatitude, maxLatitude, minLongitude, maxLongitude);
+        if (viewport == null) {
+            return ResponseEntity.status(400).body(new ErrorResponse("Viewport too large"));
+        }
+        return ResponseEntity.status(200).body(viewport);
+    }
+
     /**
      * Retrieves the available charge stations within a specified range of coordinates.
      *
@@ -89,19 +148,22 @@ public class RentingController {
     }
 
     /**
-     * Rents a car for a renter.
+     * Rents a car for a renter. Attempts sending the same Idempotency-Key are executed once and all get
+     * the response of the first.
      *
-     * @param rentForm The rent form containing the car number.
-     * @param id       The ID of the renter.
-     * @param token    The authorization token.
+     * @param rentForm  The rent form containing the car number.
+     * @param principal The authenticated renter.
+     * @param requestId The idempotency key of the attempt, optional.
      * @return ResponseEntity representing the success or failure of the rental process.
      */
     @PostMapping("/rent/{id}")
-    public ResponseEntity<?> rent(@RequestBody RentForm rentForm, @PathVariable long id, @RequestHeader("Authorization") String token) {
-        if (!accountService.isAuthenticated(id, token)) {
-            return ResponseEntity.status(401).body(new ErrorResponse("Authentication failed"));
-        }
-        Renter user = rentingService.findRenter(id);
+    public ResponseEntity<?> rent(@RequestBody RentForm rentForm, UserPrincipal principal,
+                                  @RequestHeader(value = IdempotencyCache.HEADER, required = false) String requestId) {
+        return idempotencyCache.execute(principal.getId(), "rent", requestId, rentForm, () -> rent(rentForm, principal));
+    }
+
+    private ResponseEntity<?> rent(RentForm rentForm, UserPrincipal principal) {
+        Renter user = principal.getRenter();
         if (user.isRenting()) {
             return ResponseEntity.status(403).body(new ErrorResponse("Already renting"));
         }
@@ -112,39 +174,42 @@ public class RentingController {
         if (car.isRiding()) {
             return ResponseEntity.status(403).body(new ErrorResponse("Car in use"));
         }
-        rentingService.rent(car, user);
+        if (!rentingService.rent(car, user)) {
+            return ResponseEntity.status(403).body(new ErrorResponse("Car in use"));
+        }
         return ResponseEntity.status(200).body(util.EMPTY_RESPONSE);
     }
 
     /**
-     * Returns a rented car and calculates the payment.
+     * Returns a rented car and calculates the payment. Attempts sending the same Idempotency-Key are
+     * executed once and all get the response of the first, so a retry never bills or awards coupons twice.
      *
-     * @param id         The ID of the renter.
-     * @param token      The authorization token.
+     * @param principal  The authenticated renter.
      * @param returnForm The return form containing return details.
+     * @param requestId  The idempotency key of the attempt, optional.
      * @return ResponseEntity representing the success or failure of the return process.
      */
     @PostMapping("/return/{id}")
-    public ResponseEntity<?> returnAndPay(@PathVariable long id, @RequestHeader("Authorization") String token, @RequestBody ReturnForm returnForm) {
-        if (!accountService.isAuthenticated(id, token)) {
-            return ResponseEntity.status(401).body(new ErrorResponse("Authentication failed"));
-        }
-        Renter renter = rentingService.findRenter(id);
+    public ResponseEntity<?> returnAndPay(UserPrincipal principal, @RequestBody ReturnForm returnForm,
+                                          @RequestHeader(value = IdempotencyCache.HEADER, required = false) String requestId) {
+        return idempotencyCache.execute(principal.getId(), "return", requestId, returnForm, () -> returnAndPay(principal, returnForm));
+    }
+
+    private ResponseEntity<?> returnAndPay(UserPrincipal principal, ReturnForm returnForm) {
+        Renter renter = principal.getRenter();
         if (!renter.isRenting()) {
             return ResponseEntity.status(403).body(new ErrorResponse("Not renting"));
         }
-        if (!returnForm.inRange()) {
+        if (!returnForm.inRange(geofenceService)) {
             return ResponseEntity.status(403).body(new ErrorResponse("Not in range"));
         }
-        UserInfo user = accountService.findUserInfo(id);
-        if (returnForm.isUsedCoupon()) {
-            if (user.getCouponCount() < 1) {
-                return ResponseEntity.status(403).body(new ErrorResponse("Not enough coupons"));
-            }
-            accountService.useCoupon(user);
+        if (returnForm.isUsedCoupon() && principal.getUserInfo().getCouponCount() < 1) {
+            return ResponseEntity.status(403).body(new ErrorResponse("Not enough coupons"));
+        }
+        // Coupons are used and earned in the same transaction as the return
+        if (!rentingService.returnAndPay(renter, returnForm.getDistance(), returnForm.getLat(), returnForm.getLng(), returnForm.isUsedCoupon(), returnForm.getPower(), returnForm.getChargeCount())) {
+            return ResponseEntity.status(403).body(new ErrorResponse("Not enough coupons"));
         }
-        accountService.addCoupon(user, returnForm.getChargeCount());
-        rentingService.returnAndPay(renter, returnForm.getDistance(), returnForm.getLat(), returnForm.getLng(), returnForm.isUsedCoupon(), returnForm.getPower(), returnForm.getChargeCount());
         return ResponseEntity.status(200).body(util.EMPTY_RESPONSE);
     }
 
@@ -171,14 +236,13 @@ public class RentingController {
         private boolean isUsedCoupon;
 
         /**
-         * Checks if the return coordinates are within the valid range.
+         * Checks if the return coordinates are within the service area.
          *
-         * @return true if the coordinates are within the valid range, false otherwise.
+         * @param geofence The service area.
+         * @return true if the coordinates are within the service area, false otherwise.
          */
-        public boolean inRange() {
-            if (lng < 121.511162 || lng > 121.567045) return false;
-            if (lat < 25.026708 || lat > 25.068277) return false;
-            return true;
+        public boolean inRange(GeofenceService geofence) {
+            return geofence.contains(lat, lng);
         }
     }
 }
@@ -7,9 +7,8 @@ package com.example.demo.controller;
 
 import com.example.demo.model.Car;
 import com.example.demo.model.CarStatus;
-import com.example.demo.model.UserInfo;
 import com.example.demo.response.util;
-import com.example.demo.service.AccountService;
+import com.example.demo.security.UserPrincipal;
 import com.example.demo.service.CarService;
 import com.example.demo.response.ErrorResponse;
 import lombok.Data;
@@ -25,9 +24,6 @@ public class RepairingController {
     @Autowired
     private CarService carService;
 
-    @Autowired
-    private AccountService accountService;
-
     /**
      * Retrieves the cars with the specified status.
      *
@@ -49,21 +45,93 @@ public class RepairingController {
         return ResponseEntity.status(200).body(carService.getNoPowerCars());
     }
 
+    /**
+     * Retrieves one page of the cars with no power, lowest power first and then nearest to the repairer first.
+     *
+     * @param latitude  The latitude of the repairer, optional.
+     * @param longitude The longitude of the repairer, optional.
+     * @param page      The zero-based page number.
+     * @param size      The page size.
+     * @return ResponseEntity containing the page of cars.
+     */
+    @GetMapping("/queue/noPower")
+    public ResponseEntity<?> getNoPowerQueue(@RequestParam(required = false) Double latitude, @RequestParam(required = false) Double longitude,
+                                             @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.status(200).body(carService.getNoPowerQueue(latitude, longitude, page, size));
+    }
+
+    /**
+     * Retrieves one page of the cars with a status, lowest power first and then nearest to the repairer first.
+     *
+     * @param carStatus The status of the cars to retrieve.
+     * @param latitude  The latitude of the repairer, optional.
+     * @param longitude The longitude of the repairer, optional.
+     * @param page      The zero-based page number.
+     * @param size      The page size.
+     * @return ResponseEntity containing the page of cars.
+     */
+    @GetMapping("/queue/status")
+    public ResponseEntity<?> getStatusQueue(@RequestParam CarStatus carStatus, @RequestParam(required = false) Double latitude,
+                                            @RequestParam(required = false) Double longitude, @RequestParam(defaultValue = "0") int page,
+                                            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.status(200).body(carService.getStatusQueue(carStatus, latitude, longitude, page, size));
+    }
+
+    /**
+     * Retrieves the live number of cars per status and per power range.
+     *
+     * @return ResponseEntity containing the queue counts.
+     */
+    @GetMapping("/queue/counts")
+    public ResponseEntity<?> getQueueCounts() {
+        return ResponseEntity.status(200).body(carService.getQueueCounts());
+    }
+
+    /**
+     * Plans the tour of a repairer through the nearest cars with no power.
+     *
+     * @param principal The authenticated user.
+     * @param latitude  The latitude of the repairer.
+     * @param longitude The longitude of the repairer.
+     * @param limit     The maximum number of cars to visit.
+     * @param capacity  The number of cars the repairer can charge before refilling at a station, or 0 for no limit.
+     * @return ResponseEntity containing the planned tour or an error response if the user is not a repairer.
+     */
+    @GetMapping("/route/{id}")
+    public ResponseEntity<?> getRoute(UserPrincipal principal, @RequestParam double latitude, @RequestParam double longitude,
+                                      @RequestParam(defaultValue = "50") int limit, @RequestParam(defaultValue = "10") int capacity) {
+        if (!principal.isRepairer()) {
+            return ResponseEntity.status(403).body(new ErrorResponse("Not a repairer"));
+        }
+        return ResponseEntity.status(200).body(carService.planRoute(latitude, longitude, limit, capacity));
+    }
+
+    /**
+     * Retrieves the charge stations closest to a car.
+     *
+     * @param carNo The car number.
+     * @param n     The number of stations to return.
+     * @return ResponseEntity containing the list of closest charge stations or an error response if the car is not found.
+     */
+    @GetMapping("/chargeStation")
+    public ResponseEntity<?> getNearestStations(@RequestParam String carNo, @RequestParam(defaultValue = "3") int n) {
+        Car car = carService.findCar(carNo);
+        if (car == null) {
+            return ResponseEntity.status(404).body(new ErrorResponse("Car not found"));
+        }
+        return ResponseEntity.status(200).body(carService.getNearestStations(car, n));
+    }
+
     /**
      * Fixes a car and changes its status.
      *
-     * @param fixForm The fix form containing the car number and the new status.
-     * @param id      The ID of the user.
-     * @param token   The authorization token.
+     * @param fixForm   The fix form containing the car number and the new status.
+     * @param principal The authenticated user.
      * @return ResponseEntity representing the success or failure of the fix process.
      */
     @PostMapping("/status/{id}")
-    public ResponseEntity<?> fixCar(@RequestBody FixForm fixForm, @PathVariable long id, @RequestHeader("Authorization") String token) {
-        if (!accountService.isAuthenticated(id, token)) {
-            return ResponseEntity.status(401).body(new ErrorResponse("Authentication failed"));
-        }
-        UserInfo user = accountService.findUserInfo(id);
-        if (user.getIsRenter()) {
+    public ResponseEntity<?> fixCar(@RequestBody FixForm fixForm, UserPrincipal principal) {
+        if (!principal.isRepairer()) {
             return ResponseEntity.status(403).body(new ErrorResponse("Not a repairer"));
         }
         Car car = carService.findCar(fixForm.getCarNo());
@@ -78,17 +146,12 @@ public class RepairingController {
      * Charges a car.
      *
      * @param chargeForm The charge form containing the car number.
-     * @param id         The ID of the user.
-     * @param token      The authorization token.
+     * @param principal  The authenticated user.
      * @return ResponseEntity representing the success or failure of the charging process.
      */
     @PostMapping("/charge/{id}")
-    public ResponseEntity<?> chargeCar(@RequestBody ChargeForm chargeForm, @PathVariable long id, @RequestHeader("Authorization") String token) {
-        if (!accountService.isAuthenticated(id, token)) {
-            return ResponseEntity.status(401).body(new ErrorResponse("Authentication failed"));
-        }
-        UserInfo user = accountService.findUserInfo(id);
-        if (user.getIsRenter()) {
+    public ResponseEntity<?> chargeCar(@RequestBody ChargeForm chargeForm, UserPrincipal principal) {
+        if (!principal.isRepairer()) {
             return ResponseEntity.status(403).body(new ErrorResponse("Not a repairer"));
         }
         Car car = carService.findCar(chargeForm.getCarNo());
@@ -0,0 +1,59 @@
+/**
+ * The StatsController class exposes runtime statistics of the in-memory structures.
+ */
+package com.example.demo.controller;
+
+import com.example.demo.service.CarLockManager;
+import com.example.demo.service.CarWriteBehind;
+import com.example.demo.service.EntityCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/stats")
+public class StatsController {
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private CarLockManager carLocks;
+
+    @Autowired
+    private CarWriteBehind writeBehind;
+
+    /**
+     * Retrieves the size and hit rate of the entity caches.
+     *
+     * @return ResponseEntity containing the statistics of each cache.
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<?> getCacheStats() {
+        return ResponseEntity.status(200).body(entityCache.stats());
+    }
+
+    /**
+     * Retrieves the lock contention and double-rent conflict counters with the most contended cars.
+     *
+     * @param limit The maximum number of hot cars to list.
+     * @return ResponseEntity containing the contention statistics.
+     */
+    @GetMapping("/contention")
+    public ResponseEntity<?> getContentionStats(@RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.status(200).body(carLocks.stats(limit));
+    }
+
+    /**
+     * Retrieves the counters and backlog of the car write-behind queue.
+     *
+     * @return ResponseEntity containing the write-behind statistics.
+     */
+    @GetMapping("/write-behind")
+    public ResponseEntity<?> getWriteBehindStats() {
+        return ResponseEntity.status(200).body(writeBehind.stats());
+    }
+}
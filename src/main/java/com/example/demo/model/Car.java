@@ -1,5 +1,6 @@
 package com.example.demo.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -20,6 +21,11 @@ public class Car {
 
     private boolean isRiding;
 
+    @Version
+    @JsonIgnore
+    @Column(columnDefinition = "bigint default 0")
+    private Long version;
+
     public Car(String no, int power, double lat, double lng) {
         this.no = no;
         this.lat = lat;
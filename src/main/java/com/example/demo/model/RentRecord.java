@@ -11,6 +11,10 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_rent_record_user_start", columnList = "userid, startTime, id"),
+        @Index(name = "idx_rent_record_end", columnList = "endTime, id")
+})
 public class RentRecord {
 
     @Id
@@ -1,5 +1,6 @@
 package com.example.demo.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -21,4 +22,9 @@ public class Renter {
     @OneToOne
     private Car currentCar = null;
 
+    @Version
+    @JsonIgnore
+    @Column(columnDefinition = "bigint default 0")
+    private Long version;
+
 }
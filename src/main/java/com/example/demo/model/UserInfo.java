@@ -1,5 +1,6 @@
 package com.example.demo.model;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -29,6 +30,10 @@ public class UserInfo {
 
     private int couponCount = 0;
 
+    // Signed tokens issued at or before this time, in epoch milliseconds, are rejected; only changed by logout
+    @Column(insertable = false, updatable = false)
+    private Long tokensValidAfter;
+
     // Additional methods or annotations
 
 }
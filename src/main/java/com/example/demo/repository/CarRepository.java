@@ -3,6 +3,7 @@ import com.example.demo.model.Car;
 import com.example.demo.model.CarStatus;
 import com.example.demo.model.UserInfo;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import java.util.List;
@@ -27,4 +28,13 @@ public interface CarRepository extends JpaRepository<Car, Integer> {
     @Query("SELECT c FROM Car c WHERE c.power <= ?1")
     List<Car> findByPower(int power);
 
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Car c SET c.isRiding = true, c.version = COALESCE(c.version, 0) + 1 WHERE c.no = ?1 AND c.isRiding = false")
+    int claim(String no);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Car c SET c.lat = ?2, c.lng = ?3, c.power = ?4, c.isRiding = false, " +
+            "c.version = COALESCE(c.version, 0) + 1 WHERE c.no = ?1 AND COALESCE(c.version, 0) = ?5")
+    int release(String no, double lat, double lng, int power, long version);
+
 }
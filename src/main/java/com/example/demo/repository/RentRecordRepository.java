@@ -1,12 +1,41 @@
 package com.example.demo.repository;
 import com.example.demo.model.RentRecord;
 import com.example.demo.model.UserInfo;
+import com.example.demo.response.RentSummary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface RentRecordRepository extends JpaRepository<RentRecord, Integer> {
     @Query("SELECT r FROM RentRecord r WHERE r.userid = ?1")
     List<RentRecord> findById(Long userId);
+
+    @Query("SELECT r FROM RentRecord r WHERE r.userid = ?1 ORDER BY r.startTime DESC, r.id DESC")
+    List<RentRecord> findLatest(Long userId, Pageable pageable);
+
+    @Query("SELECT r FROM RentRecord r WHERE r.userid = ?1 AND " +
+            "(r.startTime < ?2 OR (r.startTime = ?2 AND r.id < ?3)) " +
+            "ORDER BY r.startTime DESC, r.id DESC")
+    List<RentRecord> findBefore(Long userId, LocalDateTime startTime, Long id, Pageable pageable);
+
+    @Query("SELECT COUNT(r) AS rides, COALESCE(SUM(r.bill), 0) AS totalBill, " +
+            "COALESCE(SUM(r.distance), 0) AS totalDistance, COALESCE(SUM(r.totalMinutes), 0) AS totalMinutes " +
+            "FROM RentRecord r WHERE r.userid = ?1 AND r.endTime IS NOT NULL")
+    RentSummary summarize(Long userId);
+
+    @Query("SELECT r FROM RentRecord r WHERE r.id > ?1 AND r.endTime IS NOT NULL ORDER BY r.id")
+    List<RentRecord> findClosedAfter(Long id, Pageable pageable);
+
+    @Query("SELECT r FROM RentRecord r WHERE r.endTime >= ?1 AND (r.endTime > ?1 OR r.id > ?2) ORDER BY r.endTime, r.id")
+    List<RentRecord> findClosedSince(LocalDateTime endTime, Long id, Pageable pageable);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE RentRecord r SET r.endTime = ?2, r.end_lat = ?3, r.end_lng = ?4, r.distance = ?5, " +
+            "r.totalMinutes = ?6, r.bill = ?7, r.ChargeCount = ?8, r.usedCoupon = ?9 WHERE r.id = ?1")
+    int close(Long id, LocalDateTime endTime, double endLat, double endLng, double distance,
+              long totalMinutes, int bill, int chargeCount, boolean usedCoupon);
 }
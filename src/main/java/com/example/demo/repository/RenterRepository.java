@@ -2,9 +2,15 @@ package com.example.demo.repository;
 import com.example.demo.model.Renter;
 import com.example.demo.model.UserInfo;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
 public interface RenterRepository extends JpaRepository<Renter, Integer> {
     @Query("SELECT r FROM Renter r WHERE r.userId = ?1")
     Renter findByUserId(Long userId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Renter r SET r.currentRenting = null, r.currentCar = null, r.isRenting = false, " +
+            "r.version = COALESCE(r.version, 0) + 1 WHERE r.userId = ?1 AND COALESCE(r.version, 0) = ?2")
+    int endRenting(Long userId, long version);
 }
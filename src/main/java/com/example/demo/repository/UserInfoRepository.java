@@ -1,7 +1,11 @@
 package com.example.demo.repository;
 import com.example.demo.model.UserInfo;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 public interface UserInfoRepository extends JpaRepository<UserInfo, Integer> {
     @Query("SELECT CASE WHEN COUNT(u) > 0 THEN true ELSE false END FROM UserInfo u WHERE u.username = ?1")
@@ -10,4 +14,20 @@ public interface UserInfoRepository extends JpaRepository<UserInfo, Integer> {
     @Query("SELECT u FROM UserInfo u WHERE u.username = ?1")
     UserInfo findByUsername(String username);
     UserInfo findById(long id);
+
+    @Query("SELECT u, r FROM UserInfo u LEFT JOIN Renter r ON r.userId = u.id WHERE u.id = ?1")
+    List<Object[]> findWithRenter(Long id);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE UserInfo u SET u.couponCount = u.couponCount + ?2 WHERE u.id = ?1 AND u.couponCount >= ?3")
+    int addCoupons(Long id, int delta, int required);
+
+    @Query("SELECT u.tokensValidAfter FROM UserInfo u WHERE u.id = ?1")
+    Long findTokensValidAfter(Long id);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE UserInfo u SET u.tokensValidAfter = ?2 WHERE u.id = ?1 AND (u.tokensValidAfter IS NULL OR u.tokensValidAfter < ?2)")
+    int revokeTokens(Long id, long time);
 }
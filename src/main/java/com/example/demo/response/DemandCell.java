@@ -0,0 +1,20 @@
+package com.example.demo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+/**
+ * Utility Class for returning the demand, supply and forecast shortfall of cars in one grid cell
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class DemandCell {
+    private double lat;
+    private double lng;
+    private double rentsPerHour;
+    private double returnsPerHour;
+    private int available;
+    private double shortfall;
+
+}
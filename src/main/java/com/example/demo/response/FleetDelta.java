@@ -0,0 +1,24 @@
+package com.example.demo.response;
+
+import com.example.demo.model.Car;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+/**
+ * Utility Class for pushing one change of a car to the subscribers of a grid cell
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class FleetDelta {
+    // The car entered the cell or became visible in it
+    public static final String ADD = "ADD";
+    // The car left the cell or stopped being visible in it
+    public static final String REMOVE = "REMOVE";
+    // The car moved or changed state within the cell
+    public static final String MOVE = "MOVE";
+
+    private String type;
+    private Car car;
+
+}
@@ -0,0 +1,18 @@
+package com.example.demo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+/**
+ * Utility Class for returning the outcome of a bulk import
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ImportResponse {
+    private long rows;
+    private int batches;
+    private long millis;
+    private double rowsPerSecond;
+
+}
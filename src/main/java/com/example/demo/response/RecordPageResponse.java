@@ -0,0 +1,19 @@
+package com.example.demo.response;
+
+import com.example.demo.model.RentRecord;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+/**
+ * Utility Class for returning one page of rent records with the cursor of the next page
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class RecordPageResponse {
+    private List<RentRecord> records;
+    private String nextCursor;
+
+}
@@ -0,0 +1,14 @@
+package com.example.demo.response;
+
+/**
+ * Utility Interface for returning the totals of the finished rents of a user
+ */
+public interface RentSummary {
+    long getRides();
+
+    long getTotalBill();
+
+    double getTotalDistance();
+
+    long getTotalMinutes();
+}
@@ -0,0 +1,20 @@
+package com.example.demo.response;
+
+import com.example.demo.service.RentHistoryProjection;
+import com.example.demo.service.RenterStatusProjection;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+/**
+ * Utility Class for returning the rental status and latest rides of a renter as projected from the event log
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class RenterEventsResponse {
+    private RenterStatusProjection.Status status;
+    private List<RentHistoryProjection.Ride> rides;
+
+}
@@ -0,0 +1,35 @@
+package com.example.demo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+/**
+ * Utility Class for returning the planned tour of a repairer
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class RouteResponse {
+    private List<Stop> stops;
+    private double distance;
+    private long planningMillis;
+
+    /**
+     * One visit of the tour, either a car to charge or a charge station to refill at
+     */
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Data
+    public static class Stop {
+        public static final String CAR = "CAR";
+        public static final String STATION = "STATION";
+
+        private String type;
+        private String no;
+        private double lat;
+        private double lng;
+        private Integer power;
+    }
+}
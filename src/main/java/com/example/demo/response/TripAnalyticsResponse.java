@@ -0,0 +1,38 @@
+package com.example.demo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+/**
+ * Utility Class for returning the trip measures of each group of a trip analytics query
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class TripAnalyticsResponse {
+    private List<String> groupBy;
+    private long trips;
+    private int groupCount;
+    private List<Group> groups;
+    private long queryMillis;
+
+    /**
+     * The measures of the trips sharing one value of every grouping dimension
+     */
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Data
+    public static class Group {
+        private Map<String, Object> key;
+        private long trips;
+        private long revenue;
+        private double avgBill;
+        private double avgMinutes;
+        private double avgDistance;
+        private double totalDistance;
+        private double couponRate;
+    }
+}
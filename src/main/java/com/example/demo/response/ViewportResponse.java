@@ -0,0 +1,20 @@
+package com.example.demo.response;
+
+import com.example.demo.model.Car;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+/**
+ * Utility Class for returning the cars in a viewport with the topics carrying their changes
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ViewportResponse {
+    private List<Car> cars;
+    private List<String> topics;
+    private List<String> fleetTopics;
+
+}
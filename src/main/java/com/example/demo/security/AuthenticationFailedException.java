@@ -0,0 +1,10 @@
+package com.example.demo.security;
+
+/**
+ * Thrown when a request cannot be authenticated as the user named in its path.
+ */
+public class AuthenticationFailedException extends RuntimeException {
+    public AuthenticationFailedException() {
+        super("Authentication failed");
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * The UserPrincipal class represents the user a request has been authenticated as.
+ * It is resolved once per request; the account and renter rows are loaded together on first use.
+ */
+package com.example.demo.security;
+
+import com.example.demo.model.Renter;
+import com.example.demo.model.UserInfo;
+
+import java.util.function.Function;
+
+public class UserPrincipal {
+    private final Long id;
+    private final Boolean isRenter;
+    private final Function<Long, UserProfile> profileLoader;
+    private UserProfile profile;
+
+    /**
+     * Creates a principal.
+     *
+     * @param id            The ID of the authenticated user.
+     * @param isRenter      The role known from the token or session, or null if unknown.
+     * @param profileLoader The function loading the account and renter rows of the user.
+     */
+    public UserPrincipal(Long id, Boolean isRenter, Function<Long, UserProfile> profileLoader) {
+        this.id = id;
+        this.isRenter = isRenter;
+        this.profileLoader = profileLoader;
+    }
+
+    /**
+     * Returns the ID of the authenticated user.
+     *
+     * @return The user ID.
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the account of the authenticated user.
+     *
+     * @return The UserInfo object, or null if the user no longer exists.
+     */
+    public UserInfo getUserInfo() {
+        return profile().userInfo();
+    }
+
+    /**
+     * Returns the renter of the authenticated user.
+     *
+     * @return The Renter object, or null if the user is not a renter.
+     */
+    public Renter getRenter() {
+        return profile().renter();
+    }
+
+    /**
+     * Checks if the authenticated user is a repairer, using the role from the token or session when known.
+     *
+     * @return true if the user is a repairer, false otherwise.
+     */
+    public boolean isRepairer() {
+        if (isRenter != null) {
+            return !isRenter;
+        }
+        UserInfo user = getUserInfo();
+        return user != null && !user.getIsRenter();
+    }
+
+    private UserProfile profile() {
+        // A principal belongs to a single request, so no synchronisation is needed
+        if (profile == null) {
+            profile = profileLoader.apply(id);
+        }
+        return profile;
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * The UserPrincipalArgumentResolver class authenticates a request once and injects the resulting
+ * UserPrincipal into handler methods. The user ID is taken from the {id} path variable and the
+ * token from the Authorization header; the principal is kept as a request attribute so that it is
+ * resolved only once per request.
+ */
+package com.example.demo.security;
+
+import com.example.demo.service.AccountService;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+public class UserPrincipalArgumentResolver implements HandlerMethodArgumentResolver {
+    private static final String PRINCIPAL_ATTRIBUTE = UserPrincipal.class.getName();
+
+    private final AccountService accountService;
+
+    public UserPrincipalArgumentResolver(AccountService accountService) {
+        this.accountService = accountService;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return UserPrincipal.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Object cached = webRequest.getAttribute(PRINCIPAL_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (cached != null) {
+            return cached;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> pathVariables = (Map<String, String>) webRequest.getAttribute(
+                HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        String token = webRequest.getHeader("Authorization");
+        if (pathVariables == null || pathVariables.get("id") == null || token == null) {
+            throw new AuthenticationFailedException();
+        }
+        Long id;
+        try {
+            id = Long.valueOf(pathVariables.get("id"));
+        } catch (NumberFormatException e) {
+            throw new AuthenticationFailedException();
+        }
+        UserPrincipal principal = accountService.authenticate(id, token);
+        if (principal == null) {
+            throw new AuthenticationFailedException();
+        }
+        webRequest.setAttribute(PRINCIPAL_ATTRIBUTE, principal, RequestAttributes.SCOPE_REQUEST);
+        return principal;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.demo.security;
+
+import com.example.demo.model.Renter;
+import com.example.demo.model.UserInfo;
+
+/**
+ * The account and renter rows of a user, loaded together.
+ *
+ * @param userInfo The account of the user, or null if the user does not exist.
+ * @param renter   The renter of the user, or null if the user is a repairer.
+ */
+public record UserProfile(UserInfo userInfo, Renter renter) {
+}
@@ -5,22 +5,38 @@
 package com.example.demo.service;
 
 import com.example.demo.controller.AccountController;
+import com.example.demo.model.Renter;
 import com.example.demo.model.UserInfo;
 import com.example.demo.repository.UserInfoRepository;
+import com.example.demo.security.UserPrincipal;
+import com.example.demo.security.UserProfile;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.util.List;
 
 @Service
 public class AccountService {
-    private final Map<Long, String> userMap = new HashMap<>();
+    @Autowired
+    private SessionStore sessionStore;
+
+    @Autowired
+    private SignedTokenService signedTokenService;
+
+    // "session" keeps tokens in this instance, "signed" issues HMAC-signed tokens any instance can verify
+    @Value("${account.token.mode:session}")
+    private String tokenMode;
+
+    @Autowired
+    private EntityCache entityCache;
 
     @Autowired
     private UserInfoRepository userInfoRepo;
 
+    @Autowired
+    private ServiceMetrics metrics;
+
     /**
      * Creates a new user based on the provided signup form data.
      *
@@ -37,6 +53,7 @@ public class AccountService {
         user.setEmail(signupForm.getEmail());
         user.setIsRenter(true);
         userInfoRepo.save(user);
+        entityCache.putUser(user);
         return user;
     }
 
@@ -52,6 +69,7 @@ public class AccountService {
         user.setPassword(loginForm.getPassword());
         user.setIsRenter(false);
         userInfoRepo.save(user);
+        entityCache.putUser(user);
         return user;
     }
 
@@ -72,7 +90,7 @@ public class AccountService {
      * @return The found UserInfo object, or null if not found.
      */
     public UserInfo findUserInfo(String username) {
-        return userInfoRepo.findByUsername(username);
+        return entityCache.getUserByName(username, userInfoRepo::findByUsername);
     }
 
     /**
@@ -82,7 +100,33 @@ public class AccountService {
      * @return The found UserInfo object, or null if not found.
      */
     public UserInfo findUserInfo(Long id) {
-        return userInfoRepo.findById(id);
+        return entityCache.getUser(id, userInfoRepo::findById);
+    }
+
+    /**
+     * Finds the account and renter rows of a user, from the cache or else with a single query.
+     *
+     * @param id The user ID to search for.
+     * @return The UserProfile of the user; its parts are null when the rows do not exist.
+     */
+    public UserProfile findProfile(Long id) {
+        UserInfo cachedUser = entityCache.findUser(id);
+        Renter cachedRenter = entityCache.findRenter(id);
+        if (cachedUser != null && (cachedRenter != null || !cachedUser.getIsRenter())) {
+            return new UserProfile(cachedUser, cachedRenter);
+        }
+        List<Object[]> rows = userInfoRepo.findWithRenter(id);
+        if (rows.isEmpty()) {
+            return new UserProfile(null, null);
+        }
+        Object[] row = rows.get(0);
+        UserInfo user = (UserInfo) row[0];
+        Renter renter = (Renter) row[1];
+        entityCache.putUser(user);
+        if (renter != null) {
+            entityCache.putRenter(renter);
+        }
+        return new UserProfile(user, renter);
     }
 
     /**
@@ -99,21 +143,49 @@ public class AccountService {
 
     /**
      * Adds the specified number of coupons to the user's account.
+     * The count is changed with a single atomic update, so concurrent changes are never lost.
      *
      * @param user  The UserInfo object representing the user.
      * @param count The number of coupons to add.
      */
     public void addCoupon(UserInfo user, int count) {
-        user.setCouponCount(user.getCouponCount() + count);
+        if (applyCoupons(user.getId(), 0, count)) {
+            user.setCouponCount(user.getCouponCount() + count);
+        }
     }
 
     /**
      * Decreases the user's coupon count by one.
+     * The count is checked and changed with a single atomic update, so it never becomes negative.
      *
      * @param user The UserInfo object representing the user.
+     * @return true if a coupon was used, false if the user has none left.
      */
-    public void useCoupon(UserInfo user) {
+    public boolean useCoupon(UserInfo user) {
+        if (!applyCoupons(user.getId(), 1, 0)) {
+            return false;
+        }
         user.setCouponCount(user.getCouponCount() - 1);
+        metrics.couponsUsed(1);
+        return true;
+    }
+
+    /**
+     * Uses and earns coupons in one conditional update. Joins the caller's transaction if there is one.
+     *
+     * @param userID The user ID.
+     * @param used   The number of coupons used, which the user must have.
+     * @param earned The number of coupons earned.
+     * @return true if the count was changed, false if the user does not have enough coupons.
+     */
+    public boolean applyCoupons(Long userID, int used, int earned) {
+        if (used == 0 && earned == 0) {
+            return true;
+        }
+        boolean applied = userInfoRepo.addCoupons(userID, earned - used, used) > 0;
+        // The update bypassed the cached copy
+        entityCache.evictUser(userID);
+        return applied;
     }
 
     /**
@@ -124,38 +196,83 @@ public class AccountService {
      * @return true if the authentication is successful, false otherwise.
      */
     public boolean isAuthenticated(Long userID, String token) {
-        // Check if the provided user ID and token match the stored values
-        String storedToken = userMap.get(userID);
-        return storedToken != null && storedToken.equals(token);
+        if (isSignedTokenMode()) {
+            return signedTokenService.verify(userID, token) != null;
+        }
+        return sessionStore.isAuthenticated(userID, token);
+    }
+
+    /**
+     * Authenticates a request and returns the principal it acts as.
+     *
+     * @param userID The user ID.
+     * @param token  The authentication token.
+     * @return The UserPrincipal, or null if the authentication fails.
+     */
+    public UserPrincipal authenticate(Long userID, String token) {
+        Boolean isRenter;
+        if (isSignedTokenMode()) {
+            SignedTokenService.TokenClaims claims = signedTokenService.verify(userID, token);
+            if (claims == null) {
+                return null;
+            }
+            isRenter = claims.renter();
+        } else {
+            if (!sessionStore.isAuthenticated(userID, token)) {
+                return null;
+            }
+            isRenter = sessionStore.findRole(userID);
+        }
+        return new UserPrincipal(userID, isRenter, this::findProfile);
     }
 
     /**
-     * Generates a new authentication token for the given user ID and adds it to the userMap.
+     * Returns an authentication token for the given user.
+     *
+     * @param user The UserInfo object representing the user.
+     * @return The authentication token.
+     */
+    public String login(UserInfo user) {
+        if (isSignedTokenMode()) {
+            return signedTokenService.issue(user.getId(), user.getIsRenter());
+        }
+        return sessionStore.login(user.getId(), user.getIsRenter());
+    }
+
+    /**
+     * Returns the authentication token of the user's live session, starting a new session if there is none.
      *
      * @param userID The user ID.
-     * @return The generated authentication token.
+     * @return The authentication token.
      */
     public String login(Long userID) {
-        String token = userMap.get(userID);
-        if (token == null) {
-            token = UUID.randomUUID().toString();
-            userMap.put(userID, token);
+        if (isSignedTokenMode()) {
+            UserInfo user = findUserInfo(userID);
+            return signedTokenService.issue(userID, user == null || user.getIsRenter());
         }
-        return token;
+        return sessionStore.login(userID);
     }
 
     /**
-     * Removes the authentication token associated with the given user ID from the userMap.
+     * Ends the session associated with the given user ID.
      *
      * @param userID The user ID.
+     * @param token  The authentication token.
      * @return true if the logout is successful, false otherwise.
      */
-    public boolean logout(Long userID) {
-        String token = userMap.get(userID);
-        if (token == null) {
-            return false;
+    public boolean logout(Long userID, String token) {
+        if (isSignedTokenMode()) {
+            SignedTokenService.TokenClaims claims = signedTokenService.verify(userID, token);
+            if (claims == null) {
+                return false;
+            }
+            signedTokenService.revoke(claims);
+            return true;
         }
-        userMap.remove(userID);
-        return true;
+        return sessionStore.logout(userID);
+    }
+
+    private boolean isSignedTokenMode() {
+        return "signed".equalsIgnoreCase(tokenMode);
     }
 }
@@ -0,0 +1,229 @@
+/**
+ * The BulkImportService class loads cars and charge stations into the database in fixed-size JDBC batches.
+ * Rows are written with upserts, so an import needs no select per row to tell new rows from existing ones:
+ * MySQL's INSERT ... ON DUPLICATE KEY UPDATE on MySQL and MariaDB, and the standard MERGE on other databases.
+ * Lists can be streamed: the JSON array is parsed one element at a time and only the current batch is held
+ * in memory, so memory stays flat whatever the size of the import.
+ * Each batch is committed on its own; if an import fails, the batches written before the failure are kept.
+ */
+package com.example.demo.service;
+
+import com.example.demo.model.Car;
+import com.example.demo.model.ChargeStation;
+import com.example.demo.response.ImportResponse;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.DatabaseMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Service
+public class BulkImportService {
+    private static final Logger log = LoggerFactory.getLogger(BulkImportService.class);
+    // Loading a car bumps its version, so a rent or return based on the old state is rejected
+    private static final String UPSERT_CAR_SQL = "INSERT INTO car (no, lat, lng, power, car_status, is_riding, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, 0) ON DUPLICATE KEY UPDATE lat = VALUES(lat), lng = VALUES(lng), " +
+            "power = VALUES(power), car_status = VALUES(car_status), is_riding = VALUES(is_riding), " +
+            "version = COALESCE(version, 0) + 1";
+    private static final String UPSERT_STATION_SQL = "INSERT INTO charge_station (no, lat, lng) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE lat = VALUES(lat), lng = VALUES(lng)";
+    private static final String MERGE_CAR_SQL = "MERGE INTO car c USING (VALUES (?, ?, ?, ?, ?, ?)) " +
+            "AS s (no, lat, lng, power, car_status, is_riding) ON c.no = s.no " +
+            "WHEN MATCHED THEN UPDATE SET lat = s.lat, lng = s.lng, power = s.power, car_status = s.car_status, " +
+            "is_riding = s.is_riding, version = COALESCE(c.version, 0) + 1 " +
+            "WHEN NOT MATCHED THEN INSERT (no, lat, lng, power, car_status, is_riding, version) " +
+            "VALUES (s.no, s.lat, s.lng, s.power, s.car_status, s.is_riding, 0)";
+    private static final String MERGE_STATION_SQL = "MERGE INTO charge_station c USING (VALUES (?, ?, ?)) " +
+            "AS s (no, lat, lng) ON c.no = s.no " +
+            "WHEN MATCHED THEN UPDATE SET lat = s.lat, lng = s.lng " +
+            "WHEN NOT MATCHED THEN INSERT (no, lat, lng) VALUES (s.no, s.lat, s.lng)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private CarSpatialIndex carIndex;
+    @Autowired
+    private EntityCache entityCache;
+    @Autowired
+    private CarWriteBehind writeBehind;
+    @Autowired
+    private CarService carService;
+    @Value("${load.batch-size:1000}")
+    private int batchSize;
+    private String upsertCarSql;
+    private String upsertStationSql;
+
+    @PostConstruct
+    public void chooseDialect() {
+        String product;
+        try {
+            product = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(), DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            throw new IllegalStateException("Cannot tell which database the imports write to", e);
+        }
+        boolean mysql = product != null && (product.contains("MySQL") || product.contains("MariaDB"));
+        upsertCarSql = mysql ? UPSERT_CAR_SQL : MERGE_CAR_SQL;
+        upsertStationSql = mysql ? UPSERT_STATION_SQL : MERGE_STATION_SQL;
+    }
+
+    /**
+     * Imports the cars of a JSON array read incrementally from the stream.
+     *
+     * @param body The JSON array of cars.
+     * @return The number of rows and batches written and the throughput.
+     * @throws IOException If the body cannot be read or is not a JSON array of cars.
+     */
+    public ImportResponse importCars(InputStream body) throws IOException {
+        // Pending returns would otherwise conflict with the versions bumped by the import
+        writeBehind.flushAll();
+        return stream(body, Car.class, this::writeCars);
+    }
+
+    /**
+     * Imports a list of cars already in memory.
+     *
+     * @param cars The cars to import.
+     * @return The number of rows and batches written and the throughput.
+     */
+    public ImportResponse importCars(List<Car> cars) {
+        writeBehind.flushAll();
+        return write(cars, this::writeCars);
+    }
+
+    /**
+     * Imports the charge stations of a JSON array read incrementally from the stream.
+     *
+     * @param body The JSON array of charge stations.
+     * @return The number of rows and batches written and the throughput.
+     * @throws IOException If the body cannot be read or is not a JSON array of charge stations.
+     */
+    public ImportResponse importChargeStations(InputStream body) throws IOException {
+        try {
+            return stream(body, ChargeStation.class, this::writeChargeStations);
+        } finally {
+            carService.reloadChargeStations();
+        }
+    }
+
+    /**
+     * Imports a list of charge stations already in memory.
+     *
+     * @param stations The charge stations to import.
+     * @return The number of rows and batches written and the throughput.
+     */
+    public ImportResponse importChargeStations(List<ChargeStation> stations) {
+        try {
+            return write(stations, this::writeChargeStations);
+        } finally {
+            carService.reloadChargeStations();
+        }
+    }
+
+    private void writeCars(List<Car> batch) {
+        jdbcTemplate.batchUpdate(upsertCarSql, batch, batch.size(), (ps, car) -> {
+            ps.setString(1, car.getNo());
+            ps.setDouble(2, car.getLat());
+            ps.setDouble(3, car.getLng());
+            ps.setInt(4, car.getPower());
+            if (car.getCarStatus() == null) {
+                ps.setNull(5, Types.VARCHAR);
+            } else {
+                ps.setString(5, car.getCarStatus().name());
+            }
+            ps.setBoolean(6, car.isRiding());
+        });
+        carIndex.updateAll(batch);
+        entityCache.evictCars(batch);
+    }
+
+    private void writeChargeStations(List<ChargeStation> batch) {
+        jdbcTemplate.batchUpdate(upsertStationSql, batch, batch.size(), (ps, station) -> {
+            ps.setString(1, station.getNo());
+            ps.setDouble(2, station.getLat());
+            ps.setDouble(3, station.getLng());
+        });
+    }
+
+    private <T> ImportResponse stream(InputStream body, Class<T> type, Consumer<List<T>> writer) throws IOException {
+        Progress progress = new Progress(type.getSimpleName());
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected a JSON array");
+            }
+            List<T> batch = new ArrayList<>(batchSize);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                batch.add(objectMapper.readValue(parser, type));
+                if (batch.size() == batchSize) {
+                    progress.write(batch, writer);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new JsonParseException(parser, "Expected a JSON object or the end of the array");
+            }
+            progress.write(batch, writer);
+        }
+        return progress.finish();
+    }
+
+    private <T> ImportResponse write(List<T> rows, Consumer<List<T>> writer) {
+        Progress progress = new Progress(rows.isEmpty() ? "row" : rows.get(0).getClass().getSimpleName());
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            progress.write(rows.subList(from, Math.min(from + batchSize, rows.size())), writer);
+        }
+        return progress.finish();
+    }
+
+    /**
+     * Counts and logs the batches of one import.
+     */
+    private static final class Progress {
+        private final String type;
+        private final long start = System.nanoTime();
+        private long rows;
+        private int batches;
+
+        Progress(String type) {
+            this.type = type;
+        }
+
+        <T> void write(List<T> batch, Consumer<List<T>> writer) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            long batchStart = System.nanoTime();
+            writer.accept(batch);
+            long batchNanos = System.nanoTime() - batchStart;
+            rows += batch.size();
+            batches++;
+            log.info("Imported {} batch {}: {} rows in {} ms ({} rows/s), {} rows so far", type, batches, batch.size(),
+                    batchNanos / 1_000_000, Math.round(batch.size() * 1e9 / Math.max(1, batchNanos)), rows);
+        }
+
+        ImportResponse finish() {
+            long nanos = System.nanoTime() - start;
+            double rowsPerSecond = rows * 1e9 / Math.max(1, nanos);
+            log.info("Imported {} {} rows in {} batches in {} ms ({} rows/s)", rows, type, batches, nanos / 1_000_000,
+                    Math.round(rowsPerSecond));
+            return new ImportResponse(rows, batches, nanos / 1_000_000, rowsPerSecond);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * The CarLockManager class serialises operations on the same car inside this instance with a fixed
+ * array of striped locks keyed by car number, and counts how often cars are fought over.
+ * The database stays the authority across instances; the stripes keep losers of a race from all
+ * hitting the database at once and make hot cars visible.
+ */
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+@Component
+public class CarLockManager {
+    // Per-car counters are only kept for this many cars, so the map cannot grow with the fleet
+    private static final int MAX_TRACKED_CARS = 10000;
+
+    private final ReentrantLock[] stripes;
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final Map<String, LongAdder> hotCars = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the lock stripes.
+     *
+     * @param stripeCount The number of stripes, rounded up to a power of two.
+     */
+    @Autowired
+    public CarLockManager(@Value("${car.lock.stripes:256}") int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Runs an action while holding the lock of the given car.
+     *
+     * @param no     The car number.
+     * @param action The action to run.
+     * @param <T>    The result type.
+     * @return The result of the action.
+     */
+    public <T> T withLock(String no, Supplier<T> action) {
+        ReentrantLock lock = stripes[spread(no.hashCode()) & (stripes.length - 1)];
+        acquisitions.increment();
+        if (!lock.tryLock()) {
+            contended.increment();
+            track(no);
+            lock.lock();
+        }
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that an operation on the car was refused because another one won the race.
+     *
+     * @param no The car number.
+     */
+    public void recordConflict(String no) {
+        conflicts.increment();
+        track(no);
+    }
+
+    /**
+     * Returns the lock and conflict counters together with the most contended cars.
+     *
+     * @param limit The maximum number of hot cars to list.
+     * @return The contention statistics.
+     */
+    public Map<String, Object> stats(int limit) {
+        List<Map.Entry<String, LongAdder>> entries = new ArrayList<>(hotCars.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()));
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (Map.Entry<String, LongAdder> entry : entries.subList(0, Math.min(limit, entries.size()))) {
+            top.put(entry.getKey(), entry.getValue().sum());
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("acquisitions", acquisitions.sum());
+        stats.put("contended", contended.sum());
+        stats.put("conflicts", conflicts.sum());
+        stats.put("hotCars", top);
+        return stats;
+    }
+
+    /**
+     * Returns the number of rents refused because the car was already taken.
+     *
+     * @return The count since startup.
+     */
+    public long getConflictCount() {
+        return conflicts.sum();
+    }
+
+    private void track(String no) {
+        LongAdder counter = hotCars.get(no);
+        if (counter == null) {
+            if (hotCars.size() >= MAX_TRACKED_CARS) {
+                return;
+            }
+            counter = hotCars.computeIfAbsent(no, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -9,18 +9,67 @@ import com.example.demo.model.CarStatus;
 import com.example.demo.model.ChargeStation;
 import com.example.demo.repository.CarRepository;
 import com.example.demo.repository.ChargeStationRepository;
+import com.example.demo.response.RouteResponse;
+import com.example.demo.response.ViewportResponse;
+import io.micrometer.observation.annotation.Observed;
 import org.springframework.beans.factory.annotation.Autowired;
+import jakarta.annotation.PostConstruct;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class CarService {
+    private static final int MAX_NEAREST_CARS = 100;
+    private static final int MAX_NEAREST_STATIONS = 20;
+    private static final int MAX_QUEUE_PAGE = 100;
+
     @Autowired
     private CarRepository carRepo;
     @Autowired
     private ChargeStationRepository chargeStationRepo;
+    @Autowired
+    private CarSpatialIndex carIndex;
+    @Autowired
+    private ChargeStationIndex stationIndex;
+    @Autowired
+    private EntityCache entityCache;
+    @Autowired
+    private CarLockManager carLocks;
+    @Autowired
+    private CarWriteBehind writeBehind;
+    @Autowired
+    private FleetUpdatePublisher fleetPublisher;
+    @Autowired
+    private RepairQueues repairQueues;
+    @Autowired
+    private DispatchOptimizer dispatchOptimizer;
+    @Autowired
+    private RelocationEngine relocationEngine;
+    @Autowired
+    private EventLog eventLog;
+    @Autowired
+    private DemandForecaster demandForecaster;
+
+    /**
+     * Loads the current fleet and charge stations into the in-memory spatial indexes.
+     */
+    @PostConstruct
+    public void initIndex() {
+        carIndex.load(carRepo.findAll());
+        repairQueues.load(carIndex.all());
+        demandForecaster.load(carIndex.all());
+        reloadChargeStations();
+    }
+
+    /**
+     * Rebuilds the charge station index from the database.
+     */
+    public void reloadChargeStations() {
+        stationIndex.rebuild(chargeStationRepo.findAll());
+    }
 
     /**
      * Retrieves a list of normal cars within the specified range of latitude and longitude.
@@ -35,7 +84,38 @@ public class CarService {
         double maxLatitude = latitude + range;
         double minLongitude = longitude - range;
         double maxLongitude = longitude + range;
-        return carRepo.findNormalBySquare(minLatitude, maxLatitude, minLongitude, maxLongitude);
+        return carIndex.findAvailable(minLatitude, maxLatitude, minLongitude, maxLongitude);
+    }
+
+    /**
+     * Retrieves the k normal cars closest to the specified position, nearest first.
+     *
+     * @param latitude  The latitude.
+     * @param longitude The longitude.
+     * @param k         The number of cars to return, capped at 100.
+     * @return The list of closest normal cars ranked by distance.
+     */
+    @Observed(name = "cars.nearest", contextualName = "nearest-cars")
+    public List<Car> getNearestCars(double latitude, double longitude, int k) {
+        return carIndex.findNearestAvailable(latitude, longitude, Math.min(k, MAX_NEAREST_CARS));
+    }
+
+    /**
+     * Retrieves the normal cars inside a viewport together with the topics pushing changes inside it.
+     *
+     * @param minLatitude  The minimum latitude.
+     * @param maxLatitude  The maximum latitude.
+     * @param minLongitude The minimum longitude.
+     * @param maxLongitude The maximum longitude.
+     * @return The cars and the topics of the viewport, or null if the viewport covers too many cells.
+     */
+    public ViewportResponse getViewport(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        List<String> topics = fleetPublisher.topicsIn(FleetUpdatePublisher.CARS_TOPIC, minLatitude, maxLatitude, minLongitude, maxLongitude);
+        if (topics == null) {
+            return null;
+        }
+        List<String> fleetTopics = fleetPublisher.topicsIn(FleetUpdatePublisher.FLEET_TOPIC, minLatitude, maxLatitude, minLongitude, maxLongitude);
+        return new ViewportResponse(carIndex.findAvailable(minLatitude, maxLatitude, minLongitude, maxLongitude), topics, fleetTopics);
     }
 
     /**
@@ -45,7 +125,7 @@ public class CarService {
      * @return The list of cars with the specified car status.
      */
     public List<Car> getAllCars(CarStatus carStatus) {
-        return carRepo.findByStatus(carStatus);
+        return repairQueues.allByStatus(carStatus);
     }
 
     /**
@@ -54,7 +134,57 @@ public class CarService {
      * @return The list of cars with no power.
      */
     public List<Car> getNoPowerCars() {
-        return carRepo.findByPower(20);
+        return repairQueues.allLowPower(RepairQueues.NO_POWER_LEVEL);
+    }
+
+    /**
+     * Retrieves one page of the work queue of cars with no power, lowest power first and then nearest first.
+     *
+     * @param latitude  The latitude of the repairer, or null to order cars of equal power by number.
+     * @param longitude The longitude of the repairer, or null to order cars of equal power by number.
+     * @param page      The zero-based page number.
+     * @param size      The page size.
+     * @return The cars of the page.
+     */
+    public List<Car> getNoPowerQueue(Double latitude, Double longitude, int page, int size) {
+        return repairQueues.lowPower(RepairQueues.NO_POWER_LEVEL, latitude, longitude, page, Math.min(size, MAX_QUEUE_PAGE));
+    }
+
+    /**
+     * Retrieves one page of the work queue of cars with a status, lowest power first and then nearest first.
+     *
+     * @param carStatus The car status.
+     * @param latitude  The latitude of the repairer, or null to order cars of equal power by number.
+     * @param longitude The longitude of the repairer, or null to order cars of equal power by number.
+     * @param page      The zero-based page number.
+     * @param size      The page size.
+     * @return The cars of the page.
+     */
+    public List<Car> getStatusQueue(CarStatus carStatus, Double latitude, Double longitude, int page, int size) {
+        return repairQueues.byStatus(carStatus, latitude, longitude, page, Math.min(size, MAX_QUEUE_PAGE));
+    }
+
+    /**
+     * Plans a repairer's tour through the nearest cars with no power, refilling at charge stations on the way.
+     *
+     * @param latitude  The latitude of the repairer.
+     * @param longitude The longitude of the repairer.
+     * @param limit     The maximum number of cars to visit.
+     * @param capacity  The number of cars the repairer can charge before refilling, or 0 for no limit.
+     * @return The planned tour.
+     */
+    @Observed(name = "repairing.route", contextualName = "plan-route")
+    public RouteResponse planRoute(double latitude, double longitude, int limit, int capacity) {
+        return dispatchOptimizer.plan(latitude, longitude, limit, capacity);
+    }
+
+    /**
+     * Retrieves the live number of cars per status and per power range.
+     *
+     * @return The queue counts.
+     */
+    public Map<String, Object> getQueueCounts() {
+        return repairQueues.counts();
     }
 
     /**
@@ -70,7 +200,18 @@ public class CarService {
         double maxLatitude = latitude + range;
         double minLongitude = longitude - range;
         double maxLongitude = longitude + range;
-        return chargeStationRepo.findBySquare(minLatitude, maxLatitude, minLongitude, maxLongitude);
+        return stationIndex.findInSquare(minLatitude, maxLatitude, minLongitude, maxLongitude);
+    }
+
+    /**
+     * Retrieves the charge stations closest to the specified car, nearest first.
+     *
+     * @param car The car.
+     * @param n   The number of stations to return, capped at 20.
+     * @return The list of closest charge stations.
+     */
+    public List<ChargeStation> getNearestStations(Car car, int n) {
+        return stationIndex.findNearest(car.getLat(), car.getLng(), Math.min(n, MAX_NEAREST_STATIONS));
     }
 
     /**
@@ -80,8 +221,7 @@ public class CarService {
      * @return The found car, or null if not found.
      */
     public Car findCar(String no) {
-        Car car = carRepo.findByNo(no);
-        return car;
+        return entityCache.getCar(no, carRepo::findByNo);
     }
 
     /**
@@ -91,8 +231,14 @@ public class CarService {
      * @param status The new car status.
      */
     public void changeStatus(Car car, CarStatus status) {
-        car.setCarStatus(status);
-        carRepo.save(car);
+        carLocks.withLock(car.getNo(), () -> {
+            writeBehind.flush(car.getNo());
+            car.setCarStatus(status);
+            entityCache.putCar(carRepo.save(car));
+            carIndex.update(car);
+            eventLog.append(RentalEvent.statusChanged(car.getNo(), status, System.currentTimeMillis()));
+            return null;
+        });
     }
 
     /**
@@ -101,15 +247,19 @@ public class CarService {
      * @param car The car to charge.
      */
     public void charge(Car car) {
+        carLocks.withLock(car.getNo(), () -> {
+            writeBehind.flush(car.getNo());
+            chargeAndMove(car);
+            return null;
+        });
+    }
+
+    private void chargeAndMove(Car car) {
         car.setPower(100);
         // Move to random spot
-        try {
-            Double[] newLocation = distance.generate(car.getLat(), car.getLng());
-            car.setLat(newLocation[0]);
-            car.setLng(newLocation[1]);
-        } catch (Exception e) {
-            // Ignore
-        }
-        carRepo.save(car);
+        relocationEngine.relocate(car);
+        entityCache.putCar(carRepo.save(car));
+        carIndex.update(car);
+        eventLog.append(RentalEvent.charged(car.getNo(), car.getLat(), car.getLng(), car.getPower(), System.currentTimeMillis()));
     }
 }
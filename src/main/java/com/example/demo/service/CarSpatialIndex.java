@@ -0,0 +1,396 @@
+/**
+ * The CarSpatialIndex class keeps an in-memory uniform grid over the fleet so that
+ * "available cars near me" queries can be answered without hitting the database.
+ * Every car is kept as an immutable snapshot; only NORMAL, non-riding cars are placed in grid cells.
+ * Listeners are told about every change with the previous and the new snapshot of the car.
+ */
+package com.example.demo.service;
+
+import com.example.demo.model.Car;
+import com.example.demo.model.CarStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class CarSpatialIndex {
+    private final double cellSize;
+    private final Map<String, Car> cars = new ConcurrentHashMap<>();
+    private final Map<Long, Map<String, Car>> cells = new ConcurrentHashMap<>();
+    // Bounds of every cell that has ever been occupied; they only grow, which keeps ring searches finite
+    private final AtomicInteger minRow = new AtomicInteger(Integer.MAX_VALUE);
+    private final AtomicInteger maxRow = new AtomicInteger(Integer.MIN_VALUE);
+    private final AtomicInteger minCol = new AtomicInteger(Integer.MAX_VALUE);
+    private final AtomicInteger maxCol = new AtomicInteger(Integer.MIN_VALUE);
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger riding = new AtomicInteger();
+
+    /**
+     * Creates an index whose grid cells are cellSize degrees wide in both latitude and longitude.
+     *
+     * @param cellSize The edge length of a grid cell in degrees.
+     */
+    @Autowired
+    public CarSpatialIndex(@Value("${car.index.cell-size:0.005}") double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Replaces the content of the index with the given cars.
+     *
+     * @param fleet The cars to index.
+     */
+    public void load(Iterable<Car> fleet) {
+        cars.clear();
+        cells.clear();
+        riding.set(0);
+        for (Car car : fleet) {
+            record(snapshot(car), false);
+        }
+    }
+
+    /**
+     * Records the current state of a car, moving it between cells or in and out of the available set as needed.
+     *
+     * @param car The car whose state has changed.
+     */
+    public void update(Car car) {
+        record(snapshot(car), true);
+    }
+
+    private void record(Car snapshot, boolean notify) {
+        cars.compute(snapshot.getNo(), (no, previous) -> {
+            if (previous != null && isAvailable(previous)) {
+                Map<String, Car> cell = cells.get(cellKey(previous.getLat(), previous.getLng()));
+                if (cell != null) {
+                    cell.remove(no);
+                }
+            }
+            if (isAvailable(snapshot)) {
+                int row = cellIndex(snapshot.getLat());
+                int col = cellIndex(snapshot.getLng());
+                cells.computeIfAbsent(key(row, col), key -> new ConcurrentHashMap<>()).put(no, snapshot);
+                minRow.accumulateAndGet(row, Math::min);
+                maxRow.accumulateAndGet(row, Math::max);
+                minCol.accumulateAndGet(col, Math::min);
+                maxCol.accumulateAndGet(col, Math::max);
+            }
+            int ridingDelta = (snapshot.isRiding() ? 1 : 0) - (previous != null && previous.isRiding() ? 1 : 0);
+            if (ridingDelta != 0) {
+                riding.addAndGet(ridingDelta);
+            }
+            if (notify) {
+                // Called inside compute, so the changes of one car reach listeners in order
+                for (Listener listener : listeners) {
+                    listener.onChange(previous, snapshot);
+                }
+            }
+            return snapshot;
+        });
+    }
+
+    /**
+     * Registers a listener called on every change of a car, on the thread making the change.
+     * Changes of the same car are reported one at a time and in order. Loading the whole index does not
+     * notify listeners.
+     *
+     * @param listener The listener, which must be fast, must not throw and must not call back into the index.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Records the current state of several cars.
+     *
+     * @param fleet The cars whose state has changed.
+     */
+    public void updateAll(Iterable<Car> fleet) {
+        for (Car car : fleet) {
+            update(car);
+        }
+    }
+
+    /**
+     * Retrieves the available cars inside the given bounding box.
+     * The returned cars are snapshots and must not be modified.
+     *
+     * @param minLatitude  The minimum latitude.
+     * @param maxLatitude  The maximum latitude.
+     * @param minLongitude The minimum longitude.
+     * @param maxLongitude The maximum longitude.
+     * @return The list of available cars inside the bounding box.
+     */
+    public List<Car> findAvailable(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        List<Car> result = new ArrayList<>();
+        if (minLatitude > maxLatitude || minLongitude > maxLongitude) {
+            return result;
+        }
+        int minRow = cellIndex(minLatitude);
+        int maxRow = cellIndex(maxLatitude);
+        int minCol = cellIndex(minLongitude);
+        int maxCol = cellIndex(maxLongitude);
+        long cellCount = ((long) maxRow - minRow + 1) * ((long) maxCol - minCol + 1);
+        if (cellCount > cells.size()) {
+            // The box covers more cells than are occupied, so walking the occupied cells is cheaper
+            for (Map.Entry<Long, Map<String, Car>> entry : cells.entrySet()) {
+                int row = row(entry.getKey());
+                int col = col(entry.getKey());
+                if (row >= minRow && row <= maxRow && col >= minCol && col <= maxCol) {
+                    collect(entry.getValue().values(), minLatitude, maxLatitude, minLongitude, maxLongitude, result);
+                }
+            }
+            return result;
+        }
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                Map<String, Car> cell = cells.get(key(row, col));
+                if (cell != null) {
+                    collect(cell.values(), minLatitude, maxLatitude, minLongitude, maxLongitude, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the k available cars closest to the given position, ranked by haversine distance.
+     * Cells are visited in rings around the position and the search stops as soon as no unvisited
+     * cell can contain a car closer than the current k-th candidate.
+     * The returned cars are snapshots and must not be modified.
+     *
+     * @param latitude  The latitude.
+     * @param longitude The longitude.
+     * @param k         The maximum number of cars to return.
+     * @return The list of closest available cars, nearest first.
+     */
+    public List<Car> findNearestAvailable(double latitude, double longitude, int k) {
+        if (k <= 0 || cells.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // Max-heap on distance, so the head is always the worst of the current k candidates
+        PriorityQueue<Candidate> nearest = new PriorityQueue<>(k, Comparator.comparingDouble(Candidate::distance).reversed());
+        int centerRow = cellIndex(latitude);
+        int centerCol = cellIndex(longitude);
+        int maxRing = Math.max(Math.max(centerRow - minRow.get(), maxRow.get() - centerRow),
+                Math.max(centerCol - minCol.get(), maxCol.get() - centerCol));
+        for (int ring = 0; ring <= maxRing; ring++) {
+            long ringCells = ring == 0 ? 1 : 8L * ring;
+            if (ringCells > cells.size()) {
+                // Rings are now larger than the occupied area, finish with the occupied cells directly
+                for (Map.Entry<Long, Map<String, Car>> entry : cells.entrySet()) {
+                    int distanceInCells = Math.max(Math.abs(row(entry.getKey()) - centerRow), Math.abs(col(entry.getKey()) - centerCol));
+                    if (distanceInCells >= ring) {
+                        offer(entry.getValue().values(), latitude, longitude, k, nearest);
+                    }
+                }
+                break;
+            }
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int col = centerCol - ring; col <= centerCol + ring; col += Math.max(step, 1)) {
+                    Map<String, Car> cell = cells.get(key(row, col));
+                    if (cell != null) {
+                        offer(cell.values(), latitude, longitude, k, nearest);
+                    }
+                }
+            }
+            if (nearest.size() == k && nearest.peek().distance() <= ringLowerBound(latitude, ring)) {
+                break;
+            }
+        }
+        List<Candidate> ranked = new ArrayList<>(nearest);
+        ranked.sort(Comparator.comparingDouble(Candidate::distance));
+        List<Car> result = new ArrayList<>(ranked.size());
+        for (Candidate candidate : ranked) {
+            result.add(candidate.car());
+        }
+        return result;
+    }
+
+    /**
+     * Finds the last known state of a car.
+     *
+     * @param no The car number.
+     * @return The car snapshot, or null if the car is not indexed.
+     */
+    public Car find(String no) {
+        return cars.get(no);
+    }
+
+    /**
+     * Returns the grid cells overlapping the given bounding box.
+     *
+     * @param minLatitude  The minimum latitude.
+     * @param maxLatitude  The maximum latitude.
+     * @param minLongitude The minimum longitude.
+     * @param maxLongitude The maximum longitude.
+     * @param limit        The maximum number of cells.
+     * @return The keys of the cells, or null if the box covers more than limit cells.
+     */
+    public List<Long> cellsIn(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude, int limit) {
+        if (minLatitude > maxLatitude || minLongitude > maxLongitude) {
+            return Collections.emptyList();
+        }
+        int minRow = cellIndex(minLatitude);
+        int maxRow = cellIndex(maxLatitude);
+        int minCol = cellIndex(minLongitude);
+        int maxCol = cellIndex(maxLongitude);
+        if (((long) maxRow - minRow + 1) * ((long) maxCol - minCol + 1) > limit) {
+            return null;
+        }
+        List<Long> keys = new ArrayList<>();
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                keys.add(key(row, col));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the last known state of every indexed car.
+     * The returned cars are snapshots and must not be modified.
+     *
+     * @return A live, unmodifiable view of the indexed cars.
+     */
+    public Collection<Car> all() {
+        return Collections.unmodifiableCollection(cars.values());
+    }
+
+    /**
+     * Returns the number of available cars in a grid cell.
+     *
+     * @param key The cell key.
+     * @return The number of available cars in the cell.
+     */
+    public int availableCount(long key) {
+        Map<String, Car> cell = cells.get(key);
+        return cell == null ? 0 : cell.size();
+    }
+
+    /**
+     * Returns the edge length of a grid cell.
+     *
+     * @return The cell size in degrees.
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Returns the number of indexed cars, available or not.
+     *
+     * @return The number of indexed cars.
+     */
+    public int size() {
+        return cars.size();
+    }
+
+    /**
+     * Returns the number of indexed cars that are being ridden.
+     *
+     * @return The number of riding cars.
+     */
+    public int ridingCount() {
+        return riding.get();
+    }
+
+    /**
+     * Checks if a car can be offered to renters.
+     *
+     * @param car The car to check.
+     * @return true if the car is NORMAL and not riding, false otherwise.
+     */
+    public static boolean isAvailable(Car car) {
+        return car.getCarStatus() == CarStatus.NORMAL && !car.isRiding();
+    }
+
+    private void collect(Collection<Car> candidates, double minLatitude, double maxLatitude,
+                         double minLongitude, double maxLongitude, List<Car> result) {
+        for (Car car : candidates) {
+            if (car.getLat() >= minLatitude && car.getLat() <= maxLatitude
+                    && car.getLng() >= minLongitude && car.getLng() <= maxLongitude) {
+                result.add(car);
+            }
+        }
+    }
+
+    private void offer(Collection<Car> candidates, double latitude, double longitude, int k, PriorityQueue<Candidate> nearest) {
+        for (Car car : candidates) {
+            double meters = distance.haversine(latitude, longitude, car.getLat(), car.getLng());
+            if (nearest.size() < k) {
+                nearest.add(new Candidate(car, meters));
+            } else if (meters < nearest.peek().distance()) {
+                nearest.poll();
+                nearest.add(new Candidate(car, meters));
+            }
+        }
+    }
+
+    /**
+     * Returns a lower bound, in meters, on the distance from a point to any cell beyond the given ring.
+     * Such cells are separated from the point's own cell by at least ring whole cells.
+     */
+    private double ringLowerBound(double latitude, int ring) {
+        double degrees = ring * cellSize;
+        double farthestLatitude = Math.min(89.0, Math.abs(latitude) + degrees + cellSize);
+        return degrees * distance.metersPerDegree() * Math.cos(Math.toRadians(farthestLatitude));
+    }
+
+    private record Candidate(Car car, double distance) {
+    }
+
+    /**
+     * Receives the changes of indexed cars.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called after the state of a car has been recorded.
+         *
+         * @param previous The previous snapshot of the car, or null if it was not indexed.
+         * @param current  The new snapshot of the car.
+         */
+        void onChange(Car previous, Car current);
+    }
+
+    private static Car snapshot(Car car) {
+        return new Car(car.getNo(), car.getLat(), car.getLng(), car.getPower(), car.getCarStatus(), car.isRiding(), car.getVersion());
+    }
+
+    int cellIndex(double degrees) {
+        return (int) Math.floor(degrees / cellSize);
+    }
+
+    long cellKey(double lat, double lng) {
+        return key(cellIndex(lat), cellIndex(lng));
+    }
+
+    static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    static int row(long key) {
+        return (int) (key >> 32);
+    }
+
+    static int col(long key) {
+        return (int) key;
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * The CarWriteBehind class coalesces the position and power written when cars are returned and writes
+ * them to the database in periodic JDBC batches instead of one statement per return.
+ * It is only used when renting.return.write-behind is enabled. Pending writes are keyed by car number,
+ * so several returns of the same car between two flushes become one update, and each write is
+ * conditional on the car version the return was based on. A write that finds the car changed by someone
+ * else is rebased on the current version and applied again: a release only sets the returned position and
+ * power and frees the car, so applying it twice is harmless, while dropping it would leave the car riding.
+ * Anything that reads or claims a car in the database calls flush(no) under the car lock first.
+ * Pending writes are flushed on shutdown; a crash loses them and leaves those cars marked as riding.
+ */
+package com.example.demo.service;
+
+import com.example.demo.model.Car;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+public class CarWriteBehind {
+    private static final Logger log = LoggerFactory.getLogger(CarWriteBehind.class);
+    private static final String RELEASE_SQL = "UPDATE car SET lat = ?, lng = ?, power = ?, is_riding = false, " +
+            "version = COALESCE(version, 0) + 1 WHERE no = ? AND COALESCE(version, 0) = ?";
+    private static final String VERSION_SQL = "SELECT COALESCE(version, 0) FROM car WHERE no = ?";
+    // Writes of a release that keep conflicting are left for the next flush after this many
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityCache entityCache;
+    private final boolean enabled;
+    private final Map<String, PendingRelease> pending = new ConcurrentHashMap<>();
+    // Held while writing, so that a flush of one car waits for a batch that contains it
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Creates the write-behind queue.
+     *
+     * @param jdbcTemplate The JDBC template used for the batched updates.
+     * @param entityCache  The entity cache, from which cars are dropped when their write conflicts.
+     * @param enabled      Whether returns are written behind rather than in their transaction.
+     */
+    @Autowired
+    public CarWriteBehind(JdbcTemplate jdbcTemplate, EntityCache entityCache,
+                          @Value("${renting.return.write-behind:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityCache = entityCache;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Checks if returns are written behind.
+     *
+     * @return true if write-behind is enabled, false otherwise.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the release of a returned car. A release already queued for the car is replaced, keeping
+     * the version it was based on, since the database has not moved past it yet.
+     *
+     * @param no      The car number.
+     * @param lat     The latitude of the return location.
+     * @param lng     The longitude of the return location.
+     * @param power   The power level of the car.
+     * @param version The car version the return was based on.
+     */
+    public void release(String no, double lat, double lng, int power, long version) {
+        queued.increment();
+        pending.merge(no, new PendingRelease(lat, lng, power, version),
+                (previous, next) -> new PendingRelease(next.lat(), next.lng(), next.power(), previous.version()));
+    }
+
+    /**
+     * Writes the pending release of one car, if any. Callers hold the car lock.
+     *
+     * @param no The car number.
+     */
+    public void flush(String no) {
+        if (!pending.containsKey(no)) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            PendingRelease release = pending.get(no);
+            if (release != null) {
+                write(List.of(Map.entry(no, release)), 1);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes every pending release in one JDBC batch.
+     */
+    @Scheduled(fixedDelayString = "${renting.return.write-behind-interval:500}")
+    @PreDestroy
+    public void flushAll() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            write(new ArrayList<>(pending.entrySet()), 1);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the write-behind counters.
+     *
+     * @return The number of queued and written releases, of writes that conflicted and were rebased, of releases
+     *         dropped because their car was deleted, and the current backlog.
+     */
+    public Map<String, Long> stats() {
+        return Map.of("queued", queued.sum(), "written", written.sum(), "conflicts", conflicts.sum(),
+                "dropped", dropped.sum(), "pending", (long) pending.size());
+    }
+
+    private void write(List<Map.Entry<String, PendingRelease>> batch, int attempt) {
+        int[][] counts;
+        try {
+            counts = jdbcTemplate.batchUpdate(RELEASE_SQL, batch, batch.size(), (ps, entry) -> {
+                PendingRelease release = entry.getValue();
+                ps.setDouble(1, release.lat());
+                ps.setDouble(2, release.lng());
+                ps.setInt(3, release.power());
+                ps.setString(4, entry.getKey());
+                ps.setLong(5, release.version());
+            });
+        } catch (DataAccessException e) {
+            // Kept for the next flush
+            log.error("Writing {} pending car releases failed", batch.size(), e);
+            return;
+        }
+        List<Map.Entry<String, PendingRelease>> rebased = new ArrayList<>();
+        int i = 0;
+        for (int[] chunk : counts) {
+            for (int count : chunk) {
+                Map.Entry<String, PendingRelease> entry = batch.get(i++);
+                PendingRelease release = entry.getValue();
+                // Drivers that rewrite batches report SUCCESS_NO_INFO (-2) rather than a row count
+                if (count == 0) {
+                    conflicts.increment();
+                    entityCache.evictCar(entry.getKey());
+                    PendingRelease retry = rebase(entry.getKey(), release);
+                    if (retry != null) {
+                        rebased.add(Map.entry(entry.getKey(), retry));
+                    }
+                    continue;
+                }
+                written.increment();
+                // A release queued while the batch was written is now based on the version just written
+                pending.computeIfPresent(entry.getKey(), (no, current) -> current == release ? null
+                        : new PendingRelease(current.lat(), current.lng(), current.power(), release.version() + 1));
+            }
+        }
+        if (rebased.isEmpty()) {
+            return;
+        }
+        if (attempt < MAX_ATTEMPTS) {
+            write(rebased, attempt + 1);
+        } else {
+            log.warn("{} car releases kept conflicting, they are left for the next flush", rebased.size());
+        }
+    }
+
+    /**
+     * Bases the pending release of a car, which may have been replaced while it was written, on the version
+     * the car has now.
+     *
+     * @return The rebased release, or null if there is nothing left to write.
+     */
+    private PendingRelease rebase(String no, PendingRelease release) {
+        List<Long> versions;
+        try {
+            versions = jdbcTemplate.queryForList(VERSION_SQL, Long.class, no);
+        } catch (DataAccessException e) {
+            // Kept for the next flush, which conflicts and rebases again
+            log.error("Reading the version of car {} failed", no, e);
+            return null;
+        }
+        if (versions.isEmpty()) {
+            dropped.increment();
+            log.warn("Car {} was deleted since it was returned, its returned position was not written", no);
+            pending.remove(no, release);
+            return null;
+        }
+        long version = versions.get(0);
+        return pending.computeIfPresent(no, (key, current) ->
+                new PendingRelease(current.lat(), current.lng(), current.power(), version));
+    }
+
+    private record PendingRelease(double lat, double lng, int power, long version) {
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * The ChargeStationIndex class holds the current ChargeStationTree and swaps it atomically on rebuild.
+ * Readers always see a complete tree, either the previous one or the new one.
+ */
+package com.example.demo.service;
+
+import com.example.demo.model.ChargeStation;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+@Component
+public class ChargeStationIndex {
+    private volatile ChargeStationTree tree = new ChargeStationTree(Collections.emptyList());
+
+    /**
+     * Builds a new tree from the given stations and publishes it.
+     *
+     * @param stations The complete set of charge stations.
+     */
+    public void rebuild(Collection<ChargeStation> stations) {
+        tree = new ChargeStationTree(stations);
+    }
+
+    /**
+     * Retrieves the stations inside the given bounding box.
+     *
+     * @param minLatitude  The minimum latitude.
+     * @param maxLatitude  The maximum latitude.
+     * @param minLongitude The minimum longitude.
+     * @param maxLongitude The maximum longitude.
+     * @return The list of stations inside the bounding box.
+     */
+    public List<ChargeStation> findInSquare(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        return tree.findInSquare(minLatitude, maxLatitude, minLongitude, maxLongitude);
+    }
+
+    /**
+     * Retrieves the n stations closest to the given position, nearest first.
+     *
+     * @param latitude  The latitude.
+     * @param longitude The longitude.
+     * @param n         The maximum number of stations to return.
+     * @return The list of closest stations.
+     */
+    public List<ChargeStation> findNearest(double latitude, double longitude, int n) {
+        return tree.findNearest(latitude, longitude, n);
+    }
+
+    /**
+     * Returns the number of indexed stations.
+     *
+     * @return The number of stations.
+     */
+    public int size() {
+        return tree.size();
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * The ChargeStationTree class is an immutable, array-backed k-d tree over charge stations.
+ * Coordinates are projected with an equirectangular projection around the mean latitude so that
+ * planar distances approximate ground distances at city scale; final rankings use haversine distance.
+ */
+package com.example.demo.service;
+
+import com.example.demo.model.ChargeStation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+public final class ChargeStationTree {
+    private final ChargeStation[] stations;
+    private final double[] xs;
+    private final double[] ys;
+    private final double lngScale;
+
+    /**
+     * Builds a tree over a copy of the given stations.
+     *
+     * @param stations The charge stations to index.
+     */
+    public ChargeStationTree(Collection<ChargeStation> stations) {
+        ChargeStation[] sorted = stations.toArray(new ChargeStation[0]);
+        double latSum = 0;
+        for (ChargeStation station : sorted) {
+            latSum += station.getLat();
+        }
+        double meanLat = sorted.length == 0 ? 0 : latSum / sorted.length;
+        this.lngScale = Math.cos(Math.toRadians(meanLat));
+        build(sorted, 0, sorted.length, 0);
+        this.stations = sorted;
+        this.xs = new double[sorted.length];
+        this.ys = new double[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            xs[i] = sorted[i].getLng() * lngScale;
+            ys[i] = sorted[i].getLat();
+        }
+    }
+
+    /**
+     * Returns the number of stations in the tree.
+     *
+     * @return The number of stations.
+     */
+    public int size() {
+        return stations.length;
+    }
+
+    /**
+     * Retrieves the stations inside the given bounding box.
+     *
+     * @param minLatitude  The minimum latitude.
+     * @param maxLatitude  The maximum latitude.
+     * @param minLongitude The minimum longitude.
+     * @param maxLongitude The maximum longitude.
+     * @return The list of stations inside the bounding box.
+     */
+    public List<ChargeStation> findInSquare(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        List<ChargeStation> result = new ArrayList<>();
+        range(0, stations.length, 0, minLongitude * lngScale, maxLongitude * lngScale, minLatitude, maxLatitude, result);
+        return result;
+    }
+
+    /**
+     * Retrieves the n stations closest to the given position, nearest first.
+     *
+     * @param latitude  The latitude.
+     * @param longitude The longitude.
+     * @param n         The maximum number of stations to return.
+     * @return The list of closest stations ranked by haversine distance.
+     */
+    public List<ChargeStation> findNearest(double latitude, double longitude, int n) {
+        int k = Math.min(n, stations.length);
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        int[] best = new int[k];
+        double[] bestDistance = new double[k];
+        Arrays.fill(bestDistance, Double.POSITIVE_INFINITY);
+        nearest(0, stations.length, 0, longitude * lngScale, latitude, best, bestDistance);
+        Integer[] order = new Integer[k];
+        double[] meters = new double[k];
+        for (int i = 0; i < k; i++) {
+            order[i] = i;
+            ChargeStation station = stations[best[i]];
+            meters[i] = distance.haversine(latitude, longitude, station.getLat(), station.getLng());
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> meters[i]));
+        List<ChargeStation> result = new ArrayList<>(k);
+        for (int i : order) {
+            result.add(stations[best[i]]);
+        }
+        return result;
+    }
+
+    private void build(ChargeStation[] nodes, int lo, int hi, int depth) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        Comparator<ChargeStation> axis = depth % 2 == 0
+                ? Comparator.comparingDouble(ChargeStation::getLng)
+                : Comparator.comparingDouble(ChargeStation::getLat);
+        Arrays.sort(nodes, lo, hi, axis);
+        int mid = (lo + hi) >>> 1;
+        build(nodes, lo, mid, depth + 1);
+        build(nodes, mid + 1, hi, depth + 1);
+    }
+
+    private void range(int lo, int hi, int depth, double minX, double maxX, double minY, double maxY, List<ChargeStation> result) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double x = xs[mid];
+        double y = ys[mid];
+        if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+            result.add(stations[mid]);
+        }
+        double split = depth % 2 == 0 ? x : y;
+        double min = depth % 2 == 0 ? minX : minY;
+        double max = depth % 2 == 0 ? maxX : maxY;
+        if (min <= split) {
+            range(lo, mid, depth + 1, minX, maxX, minY, maxY, result);
+        }
+        if (max >= split) {
+            range(mid + 1, hi, depth + 1, minX, maxX, minY, maxY, result);
+        }
+    }
+
+    private void nearest(int lo, int hi, int depth, double x, double y, int[] best, double[] bestDistance) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double dx = xs[mid] - x;
+        double dy = ys[mid] - y;
+        insert(mid, dx * dx + dy * dy, best, bestDistance);
+        double delta = depth % 2 == 0 ? x - xs[mid] : y - ys[mid];
+        if (delta < 0) {
+            nearest(lo, mid, depth + 1, x, y, best, bestDistance);
+            if (delta * delta < bestDistance[bestDistance.length - 1]) {
+                nearest(mid + 1, hi, depth + 1, x, y, best, bestDistance);
+            }
+        } else {
+            nearest(mid + 1, hi, depth + 1, x, y, best, bestDistance);
+            if (delta * delta < bestDistance[bestDistance.length - 1]) {
+                nearest(lo, mid, depth + 1, x, y, best, bestDistance);
+            }
+        }
+    }
+
+    /**
+     * Inserts a candidate into the sorted best arrays, dropping the worst one; n is small so insertion sort wins.
+     */
+    private static void insert(int node, double squaredDistance, int[] best, double[] bestDistance) {
+        int i = bestDistance.length - 1;
+        if (squaredDistance >= bestDistance[i]) {
+            return;
+        }
+        while (i > 0 && bestDistance[i - 1] > squaredDistance) {
+            best[i] = best[i - 1];
+            bestDistance[i] = bestDistance[i - 1];
+            i--;
+        }
+        best[i] = node;
+        bestDistance[i] = squaredDistance;
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * The DemandForecaster class keeps a demand heatmap of the service area on a uniform grid: per cell, the
+ * rate of rents started and of cars returned, and the number of available cars, to forecast the cells
+ * that will run out of cars.
+ * Rates are exponentially decayed counts with forward decay: an event at time t adds e^((t - L) / window)
+ * to its cell, where L is a landmark time, and a count is read by scaling it by e^(-(now - L) / window).
+ * Every event is one array update, whatever its age, and the landmark is moved forward, rescaling every
+ * cell, only once every LANDMARK_WINDOWS windows. Rents and returns come from the event log, so a rebuild
+ * replays them with their own timestamps; available cars are counted from the changes of the car index.
+ */
+package com.example.demo.service;
+
+import com.example.demo.model.Car;
+import com.example.demo.response.DemandCell;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+public class DemandForecaster implements EventProjector {
+    // Bounds the memory of the grid and the size of a heatmap; larger areas get coarser cells
+    private static final int MAX_CELLS = 1 << 16;
+    // Keeps the scaled counts far below the range of a double
+    private static final int LANDMARK_WINDOWS = 32;
+    private static final double MILLIS_PER_HOUR = 3_600_000;
+
+    private final CarSpatialIndex carIndex;
+    private final double minLat;
+    private final double maxLat;
+    private final double minLng;
+    private final double maxLng;
+    private final double cellSize;
+    private final int rows;
+    private final int cols;
+    private final double windowMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock: decayed counts scaled to the landmark
+    private final double[] rents;
+    private final double[] returns;
+    private long landmark;
+    private final AtomicIntegerArray available;
+
+    /**
+     * Creates the forecaster over the bounding box of the service area.
+     *
+     * @param carIndex        The car index, whose changes update the available cars.
+     * @param geofenceService The service area.
+     * @param cellSize        The requested edge length of a grid cell in degrees.
+     * @param window          The time constant of the decay: events this old weigh 1/e of new ones.
+     */
+    @Autowired
+    public DemandForecaster(CarSpatialIndex carIndex, GeofenceService geofenceService,
+                            @Value("${demand.cell-size:0.005}") double cellSize,
+                            @Value("${demand.window:PT1H}") Duration window) {
+        if (cellSize <= 0 || window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("Cell size and window must be positive");
+        }
+        Geofence geofence = geofenceService.getGeofence();
+        this.carIndex = carIndex;
+        this.minLat = geofence.getMinLat();
+        this.maxLat = geofence.getMaxLat();
+        this.minLng = geofence.getMinLng();
+        this.maxLng = geofence.getMaxLng();
+        double size = cellSize;
+        while (Math.ceil((maxLat - minLat) / size) * Math.ceil((maxLng - minLng) / size) > MAX_CELLS) {
+            size *= 2;
+        }
+        this.cellSize = size;
+        this.rows = Math.max(1, (int) Math.ceil((maxLat - minLat) / size));
+        this.cols = Math.max(1, (int) Math.ceil((maxLng - minLng) / size));
+        this.windowMillis = window.toMillis();
+        this.rents = new double[rows * cols];
+        this.returns = new double[rows * cols];
+        this.available = new AtomicIntegerArray(rows * cols);
+        this.landmark = System.currentTimeMillis();
+    }
+
+    @PostConstruct
+    public void register() {
+        carIndex.addListener(this::onChange);
+    }
+
+    /**
+     * Replaces the available car counts with those of the given cars.
+     *
+     * @param fleet The cars to count.
+     */
+    public void load(Iterable<Car> fleet) {
+        for (int cell = 0; cell < available.length(); cell++) {
+            available.set(cell, 0);
+        }
+        for (Car car : fleet) {
+            onChange(null, car);
+        }
+    }
+
+    private void onChange(Car previous, Car current) {
+        if (previous != null && CarSpatialIndex.isAvailable(previous)) {
+            int cell = cellAt(previous.getLat(), previous.getLng());
+            if (cell >= 0) {
+                available.decrementAndGet(cell);
+            }
+        }
+        if (CarSpatialIndex.isAvailable(current)) {
+            int cell = cellAt(current.getLat(), current.getLng());
+            if (cell >= 0) {
+                available.incrementAndGet(cell);
+            }
+        }
+    }
+
+    @Override
+    public void apply(RentalEvent event) {
+        double[] counts = switch (event.type()) {
+            case RENT -> rents;
+            case RETURN -> returns;
+            default -> null;
+        };
+        int cell = cellAt(event.lat(), event.lng());
+        if (counts == null || cell < 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (event.timestamp() - landmark > LANDMARK_WINDOWS * windowMillis) {
+                moveLandmark(event.timestamp());
+            }
+            counts[cell] += Math.exp((event.timestamp() - landmark) / windowMillis);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets the rents and returns. The available cars, which come from the car index, are kept.
+     */
+    @Override
+    public void reset() {
+        lock.lock();
+        try {
+            Arrays.fill(rents, 0);
+            Arrays.fill(returns, 0);
+            landmark = System.currentTimeMillis();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void moveLandmark(long time) {
+        double scale = Math.exp(-(time - landmark) / windowMillis);
+        for (int cell = 0; cell < rents.length; cell++) {
+            rents[cell] *= scale;
+            returns[cell] *= scale;
+        }
+        landmark = time;
+    }
+
+    /**
+     * Retrieves every cell with demand or available cars.
+     *
+     * @param horizon The time ahead the shortfall of each cell is forecast for.
+     * @return The cells, in grid order.
+     */
+    public List<DemandCell> heatmap(Duration horizon) {
+        List<DemandCell> cells = forecast(horizon, System.currentTimeMillis());
+        cells.removeIf(cell -> cell.getAvailable() == 0 && cell.getRentsPerHour() == 0 && cell.getReturnsPerHour() == 0);
+        return cells;
+    }
+
+    /**
+     * Retrieves the cells expected to run short of cars: those where the rents expected within the horizon
+     * exceed the available cars plus the returns expected within it.
+     *
+     * @param horizon      The time ahead to forecast for.
+     * @param minShortfall The smallest number of missing cars to report a cell for.
+     * @param limit        The maximum number of cells to return.
+     * @return The cells, largest shortfall first.
+     */
+    public List<DemandCell> shortages(Duration horizon, double minShortfall, int limit) {
+        return forecast(horizon, System.currentTimeMillis()).stream()
+                .filter(cell -> cell.getShortfall() >= minShortfall && cell.getShortfall() > 0)
+                .sorted(Comparator.comparingDouble(DemandCell::getShortfall).reversed())
+                .limit(Math.max(0, limit))
+                .toList();
+    }
+
+    List<DemandCell> forecast(Duration horizon, long now) {
+        double[] rentCounts;
+        double[] returnCounts;
+        double scale;
+        lock.lock();
+        try {
+            rentCounts = rents.clone();
+            returnCounts = returns.clone();
+            scale = Math.exp(-(now - landmark) / windowMillis);
+        } finally {
+            lock.unlock();
+        }
+        // A decayed count over a window of w hours estimates w hours of events
+        double perHour = scale * MILLIS_PER_HOUR / windowMillis;
+        double hours = horizon.toMillis() / MILLIS_PER_HOUR;
+        List<DemandCell> cells = new ArrayList<>(rentCounts.length);
+        for (int cell = 0; cell < rentCounts.length; cell++) {
+            double rentRate = rentCounts[cell] * perHour;
+            double returnRate = returnCounts[cell] * perHour;
+            int cars = available.get(cell);
+            cells.add(new DemandCell(minLat + (cell / cols + 0.5) * cellSize, minLng + (cell % cols + 0.5) * cellSize,
+                    rentRate, returnRate, cars, (rentRate - returnRate) * hours - cars));
+        }
+        return cells;
+    }
+
+    /**
+     * Returns the edge length of a grid cell, which may be coarser than requested for a large service area.
+     *
+     * @return The cell size in degrees.
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    private int cellAt(double lat, double lng) {
+        if (!(lat >= minLat && lat <= maxLat && lng >= minLng && lng <= maxLng)) {
+            return -1;
+        }
+        int row = Math.min(rows - 1, (int) ((lat - minLat) / cellSize));
+        int col = Math.min(cols - 1, (int) ((lng - minLng) / cellSize));
+        return row * cols + col;
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * The DispatchOptimizer class plans the tour of a repairer through the cars that need charging.
+ * The cars nearest to the repairer are taken from the no-power work queue, a tour is built with the
+ * nearest-neighbour heuristic from several first cars in parallel on a dedicated fork-join pool, and each
+ * tour is improved with 2-opt moves within a time budget. The shortest tour wins, and the nearest charge
+ * station is inserted each time the repairer has used up its capacity.
+ * Planning distances use an equirectangular projection, which is accurate at city scale; the reported
+ * tour length is measured with the haversine formula.
+ */
+package com.example.demo.service;
+
+import com.example.demo.model.Car;
+import com.example.demo.model.ChargeStation;
+import com.example.demo.response.RouteResponse;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+@Component
+public class DispatchOptimizer {
+    public static final int MAX_STOPS = 500;
+    // Number of different first cars tried in parallel
+    private static final int STARTS = 8;
+
+    @Autowired
+    private RepairQueues repairQueues;
+    @Autowired
+    private ChargeStationIndex stationIndex;
+    private final ForkJoinPool pool;
+    private final long timeBudgetNanos;
+
+    /**
+     * Creates the optimizer and its worker pool.
+     *
+     * @param parallelism The number of worker threads, or 0 for one per processor.
+     * @param timeBudget  The time allowed for improving the tours of one plan.
+     */
+    @Autowired
+    public DispatchOptimizer(@Value("${dispatch.parallelism:0}") int parallelism,
+                             @Value("${dispatch.time-budget:PT0.2S}") Duration timeBudget) {
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.timeBudgetNanos = timeBudget.toNanos();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Plans a tour from the given position through the nearest cars with no power.
+     *
+     * @param latitude  The latitude of the repairer.
+     * @param longitude The longitude of the repairer.
+     * @param limit     The maximum number of cars to visit.
+     * @param capacity  The number of cars the repairer can charge before refilling at a station, or 0 for no limit.
+     * @return The planned stops and the length of the tour in meters.
+     */
+    public RouteResponse plan(double latitude, double longitude, int limit, int capacity) {
+        long start = System.nanoTime();
+        List<Car> cars = nearestCandidates(latitude, longitude, Math.max(0, Math.min(limit, MAX_STOPS)));
+        int[] order = cars.isEmpty() ? new int[0] : optimize(project(latitude, longitude, cars), start + timeBudgetNanos);
+        List<RouteResponse.Stop> stops = new ArrayList<>(order.length);
+        double meters = 0;
+        double lat = latitude;
+        double lng = longitude;
+        int charged = 0;
+        // order[0] is the repairer's own position
+        for (int i = 1; i < order.length; i++) {
+            if (capacity > 0 && charged == capacity) {
+                List<ChargeStation> station = stationIndex.findNearest(lat, lng, 1);
+                if (!station.isEmpty()) {
+                    ChargeStation refill = station.get(0);
+                    meters += distance.haversine(lat, lng, refill.getLat(), refill.getLng());
+                    stops.add(new RouteResponse.Stop(RouteResponse.Stop.STATION, refill.getNo(), refill.getLat(), refill.getLng(), null));
+                    lat = refill.getLat();
+                    lng = refill.getLng();
+                }
+                charged = 0;
+            }
+            Car car = cars.get(order[i] - 1);
+            meters += distance.haversine(lat, lng, car.getLat(), car.getLng());
+            stops.add(new RouteResponse.Stop(RouteResponse.Stop.CAR, car.getNo(), car.getLat(), car.getLng(), car.getPower()));
+            lat = car.getLat();
+            lng = car.getLng();
+            charged++;
+        }
+        return new RouteResponse(stops, meters, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private List<Car> nearestCandidates(double latitude, double longitude, int limit) {
+        if (limit == 0) {
+            return List.of();
+        }
+        Comparator<Car> byDistance = Comparator.comparingDouble(car -> distance.haversine(latitude, longitude, car.getLat(), car.getLng()));
+        // Max-heap holding the nearest cars seen so far
+        PriorityQueue<Car> nearest = new PriorityQueue<>(limit, byDistance.reversed());
+        for (Car car : repairQueues.allLowPower(RepairQueues.NO_POWER_LEVEL)) {
+            if (car.isRiding()) {
+                continue;
+            }
+            nearest.add(car);
+            if (nearest.size() > limit) {
+                nearest.poll();
+            }
+        }
+        return new ArrayList<>(nearest);
+    }
+
+    /**
+     * Projects the repairer and the cars onto a plane in meters; point 0 is the repairer.
+     */
+    private static double[][] project(double latitude, double longitude, List<Car> cars) {
+        double metersPerDegree = distance.metersPerDegree();
+        double lngScale = metersPerDegree * Math.cos(Math.toRadians(latitude));
+        double[][] points = new double[cars.size() + 1][];
+        points[0] = new double[]{0, 0};
+        for (int i = 0; i < cars.size(); i++) {
+            Car car = cars.get(i);
+            points[i + 1] = new double[]{(car.getLng() - longitude) * lngScale, (car.getLat() - latitude) * metersPerDegree};
+        }
+        return points;
+    }
+
+    private int[] optimize(double[][] points, long deadline) {
+        int size = points.length;
+        double[][] matrix = new double[size][size];
+        return pool.submit(() -> {
+            IntStream.range(0, size).parallel().forEach(i -> {
+                for (int j = 0; j < size; j++) {
+                    matrix[i][j] = Math.hypot(points[i][0] - points[j][0], points[i][1] - points[j][1]);
+                }
+            });
+            int[] firstCars = IntStream.range(1, size).boxed()
+                    .sorted(Comparator.comparingDouble(i -> matrix[0][i]))
+                    .limit(STARTS).mapToInt(Integer::intValue).toArray();
+            return IntStream.of(firstCars).parallel()
+                    .mapToObj(first -> twoOpt(matrix, nearestNeighbour(matrix, first), deadline))
+                    .min(Comparator.comparingDouble(tour -> length(matrix, tour)))
+                    .orElseThrow();
+        }).join();
+    }
+
+    /**
+     * Builds an open tour starting at point 0, going to the given first point and then always to the nearest unvisited point.
+     */
+    static int[] nearestNeighbour(double[][] matrix, int first) {
+        int size = matrix.length;
+        int[] tour = new int[size];
+        boolean[] visited = new boolean[size];
+        visited[0] = true;
+        tour[1] = first;
+        visited[first] = true;
+        for (int position = 2; position < size; position++) {
+            int from = tour[position - 1];
+            int next = -1;
+            for (int candidate = 1; candidate < size; candidate++) {
+                if (!visited[candidate] && (next < 0 || matrix[from][candidate] < matrix[from][next])) {
+                    next = candidate;
+                }
+            }
+            tour[position] = next;
+            visited[next] = true;
+        }
+        return tour;
+    }
+
+    /**
+     * Improves an open tour with a fixed start by reversing segments while that shortens it, until no
+     * reversal helps or the deadline passes.
+     */
+    static int[] twoOpt(double[][] matrix, int[] tour, long deadline) {
+        int last = tour.length - 1;
+        boolean improved = true;
+        while (improved && System.nanoTime() < deadline) {
+            improved = false;
+            for (int i = 1; i < last; i++) {
+                for (int j = i + 1; j <= last; j++) {
+                    double delta = matrix[tour[i - 1]][tour[j]] - matrix[tour[i - 1]][tour[i]];
+                    if (j < last) {
+                        delta += matrix[tour[i]][tour[j + 1]] - matrix[tour[j]][tour[j + 1]];
+                    }
+                    if (delta < -1e-9) {
+                        reverse(tour, i, j);
+                        improved = true;
+                    }
+                }
+            }
+        }
+        return tour;
+    }
+
+    static double length(double[][] matrix, int[] tour) {
+        double length = 0;
+        for (int i = 1; i < tour.length; i++) {
+            length += matrix[tour[i - 1]][tour[i]];
+        }
+        return length;
+    }
+
+    private static void reverse(int[] tour, int from, int to) {
+        while (from < to) {
+            int swap = tour[from];
+            tour[from++] = tour[to];
+            tour[to--] = swap;
+        }
+    }
+}
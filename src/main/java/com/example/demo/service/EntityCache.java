@@ -0,0 +1,316 @@
+/**
+ * The EntityCache class is a size-bounded read-through cache in front of the car, user and renter lookups.
+ * Services read through it and put the saved entity back whenever they write, so a cached entry is
+ * always the last state written by this instance.
+ * Entries are private detached copies and every read returns a fresh copy, so an entity managed by one
+ * request's persistence context is never shared with, or flushed by, another request.
+ * Misses are loaded outside the cache's own locking: a loader waiting for a database connection must not
+ * block the readers of other keys, some of which may hold a connection inside their transaction.
+ * A load registers a token for its key, and every put or eviction of the key drops it: a load whose token
+ * is gone when it finishes may have read a state older than the write, so it returns it without caching it.
+ */
+package com.example.demo.service;
+
+import com.example.demo.model.Car;
+import com.example.demo.model.RentRecord;
+import com.example.demo.model.Renter;
+import com.example.demo.model.UserInfo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+@Component
+public class EntityCache {
+    private final Cache<String, Car> cars;
+    private final Cache<Long, UserInfo> users;
+    private final Cache<String, Long> userIds;
+    private final Cache<Long, Renter> renters;
+    // Per cache, the token of the load in flight for each key
+    private final Map<String, Object> carLoads = new ConcurrentHashMap<>();
+    private final Map<Long, Object> userLoads = new ConcurrentHashMap<>();
+    private final Map<Long, Object> renterLoads = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the caches.
+     *
+     * @param maxSize          The maximum number of entries of each cache.
+     * @param expireAfterWrite How long an entry is trusted before it is read again from the database.
+     */
+    @Autowired
+    public EntityCache(@Value("${cache.entity.max-size:10000}") long maxSize,
+                       @Value("${cache.entity.expire-after-write:PT10M}") Duration expireAfterWrite) {
+        this.cars = build(maxSize, expireAfterWrite);
+        this.users = build(maxSize, expireAfterWrite);
+        this.userIds = build(maxSize, expireAfterWrite);
+        this.renters = build(maxSize, expireAfterWrite);
+    }
+
+    private static <K, V> Cache<K, V> build(long maxSize, Duration expireAfterWrite) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached car, loading it when absent. Missing cars are not cached.
+     *
+     * @param no     The car number.
+     * @param loader The database lookup.
+     * @return The car, or null if not found.
+     */
+    public Car getCar(String no, Function<String, Car> loader) {
+        return no == null ? null : copy(load(cars, carLoads, no, key -> copy(loader.apply(key))));
+    }
+
+    /**
+     * Stores the last saved state of a car.
+     *
+     * @param car The saved car.
+     */
+    public void putCar(Car car) {
+        carLoads.remove(car.getNo());
+        cars.put(car.getNo(), copy(car));
+    }
+
+    /**
+     * Drops a car so that it is read again from the database.
+     *
+     * @param no The car number.
+     */
+    public void evictCar(String no) {
+        carLoads.remove(no);
+        cars.invalidate(no);
+    }
+
+    /**
+     * Drops the given cars so that they are read again from the database.
+     *
+     * @param fleet The cars that changed outside the services.
+     */
+    public void evictCars(Iterable<Car> fleet) {
+        for (Car car : fleet) {
+            carLoads.remove(car.getNo());
+            cars.invalidate(car.getNo());
+        }
+    }
+
+    /**
+     * Returns the cached user, loading it when absent. Missing users are not cached.
+     *
+     * @param id     The user ID.
+     * @param loader The database lookup.
+     * @return The user, or null if not found.
+     */
+    public UserInfo getUser(Long id, Function<Long, UserInfo> loader) {
+        if (id == null) {
+            return null;
+        }
+        UserInfo user = load(users, userLoads, id, key -> copy(loader.apply(key)));
+        if (user != null) {
+            userIds.put(user.getUsername(), id);
+        }
+        return copy(user);
+    }
+
+    /**
+     * Returns the cached user with the given username, loading it when absent. A user whose ID is not known
+     * yet is loaded without being cached, since the load cannot be guarded against writes of that ID; only
+     * the ID is remembered, so that the next lookup caches the user.
+     *
+     * @param username The username.
+     * @param loader   The database lookup.
+     * @return The user, or null if not found.
+     */
+    public UserInfo getUserByName(String username, Function<String, UserInfo> loader) {
+        if (username == null) {
+            return null;
+        }
+        Long id = userIds.getIfPresent(username);
+        if (id != null) {
+            UserInfo user = load(users, userLoads, id, key -> {
+                UserInfo loaded = loader.apply(username);
+                // The username may belong to another user by now
+                return loaded != null && key.equals(loaded.getId()) ? copy(loaded) : null;
+            });
+            if (user != null && username.equals(user.getUsername())) {
+                return copy(user);
+            }
+        }
+        UserInfo user = loader.apply(username);
+        if (user != null) {
+            userIds.put(username, user.getId());
+        }
+        return user;
+    }
+
+    /**
+     * Returns the user if it is cached.
+     *
+     * @param id The user ID.
+     * @return The user, or null if not cached.
+     */
+    public UserInfo findUser(Long id) {
+        return copy(users.getIfPresent(id));
+    }
+
+    /**
+     * Stores the last saved state of a user.
+     *
+     * @param user The saved user.
+     */
+    public void putUser(UserInfo user) {
+        userLoads.remove(user.getId());
+        users.put(user.getId(), copy(user));
+        userIds.put(user.getUsername(), user.getId());
+    }
+
+    /**
+     * Drops a user so that it is read again from the database.
+     *
+     * @param id The user ID.
+     */
+    public void evictUser(Long id) {
+        userLoads.remove(id);
+        users.invalidate(id);
+    }
+
+    /**
+     * Returns the cached renter, loading it when absent. Missing renters are not cached.
+     *
+     * @param userId The user ID.
+     * @param loader The database lookup.
+     * @return The renter, or null if not found.
+     */
+    public Renter getRenter(Long userId, Function<Long, Renter> loader) {
+        return userId == null ? null : copy(load(renters, renterLoads, userId, key -> copy(loader.apply(key))));
+    }
+
+    /**
+     * Returns the renter if it is cached.
+     *
+     * @param userId The user ID.
+     * @return The renter, or null if not cached.
+     */
+    public Renter findRenter(Long userId) {
+        return copy(renters.getIfPresent(userId));
+    }
+
+    /**
+     * Stores the last saved state of a renter.
+     *
+     * @param renter The saved renter.
+     */
+    public void putRenter(Renter renter) {
+        renterLoads.remove(renter.getUserId());
+        renters.put(renter.getUserId(), copy(renter));
+    }
+
+    /**
+     * Drops a renter so that it is read again from the database.
+     *
+     * @param userId The user ID.
+     */
+    public void evictRenter(Long userId) {
+        renterLoads.remove(userId);
+        renters.invalidate(userId);
+    }
+
+    /**
+     * Returns the hit and miss statistics of every cache, keyed by cache name.
+     *
+     * @return The cache statistics.
+     */
+    public Map<String, Map<String, Number>> stats() {
+        Map<String, Map<String, Number>> stats = new LinkedHashMap<>();
+        stats.put("cars", describe(cars));
+        stats.put("users", describe(users));
+        stats.put("userIds", describe(userIds));
+        stats.put("renters", describe(renters));
+        return stats;
+    }
+
+    private <K, V> V load(Cache<K, V> cache, Map<K, Object> loads, K key, Function<K, V> loader) {
+        V cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        // Replaces the token of a concurrent load of the key, which then does not cache its result
+        Object token = new Object();
+        loads.put(key, token);
+        V loaded = null;
+        try {
+            loaded = loader.apply(key);
+        } finally {
+            if (loaded == null) {
+                loads.remove(key, token);
+            }
+        }
+        if (loaded == null) {
+            return null;
+        }
+        V result = loaded;
+        // Atomic with the removal of the token by a write of the key, so a write either drops the token first or replaces what is put
+        loads.computeIfPresent(key, (k, current) -> {
+            if (current != token) {
+                return current;
+            }
+            cache.asMap().putIfAbsent(key, result);
+            return null;
+        });
+        return loaded;
+    }
+
+    private static Map<String, Number> describe(Cache<?, ?> cache) {
+        CacheStats cacheStats = cache.stats();
+        Map<String, Number> description = new LinkedHashMap<>();
+        description.put("size", cache.estimatedSize());
+        description.put("hitCount", cacheStats.hitCount());
+        description.put("missCount", cacheStats.missCount());
+        description.put("hitRate", cacheStats.hitRate());
+        description.put("evictionCount", cacheStats.evictionCount());
+        return description;
+    }
+
+    private static Car copy(Car car) {
+        if (car == null) {
+            return null;
+        }
+        return new Car(car.getNo(), car.getLat(), car.getLng(), car.getPower(), car.getCarStatus(), car.isRiding(), car.getVersion());
+    }
+
+    private static UserInfo copy(UserInfo user) {
+        if (user == null) {
+            return null;
+        }
+        return new UserInfo(user.getId(), user.getUsername(), user.getPassword(), user.getCardNumber(), user.getSafeNumber(),
+                user.getPhoneNumber(), user.getEmail(), user.getIsRenter(), user.getCouponCount(), user.getTokensValidAfter());
+    }
+
+    private static Renter copy(Renter renter) {
+        if (renter == null) {
+            return null;
+        }
+        return new Renter(renter.getUserId(), copy(renter.getCurrentRenting()), renter.isRenting(), copy(renter.getCurrentCar()),
+                renter.getVersion());
+    }
+
+    private static RentRecord copy(RentRecord record) {
+        if (record == null) {
+            return null;
+        }
+        return new RentRecord(record.getId(), record.getUserid(), record.getStart_lat(), record.getStart_lng(),
+                record.getEnd_lat(), record.getEnd_lng(), record.getStartTime(), record.getEndTime(), record.getTotalMinutes(),
+                record.getChargeCount(), record.getDistance(), record.getBill(), record.isUsedCoupon());
+    }
+}
@@ -0,0 +1,412 @@
+/**
+ * The EventLog class is a local append-only log of rental events, stored in fixed-size memory-mapped segment
+ * files. An append is a copy into the mapped segment under a short lock, with no system call; a background
+ * task forces the written range to disk every sync interval, so one fsync covers every event appended since
+ * the previous one. A record is its payload length, a CRC32 of the payload, its sequence number and the
+ * payload, with the length written last: after a crash the log is read up to the first record that is
+ * missing or fails its checksum, and appending resumes there.
+ * The database stays the authority for renters, cars and records; the log is written after each commit and
+ * is the source the projections are built and rebuilt from. Each instance keeps its own log of the changes
+ * it made.
+ * Only the latest segments are kept: when the log rolls over past the retention, the oldest segment file is
+ * deleted, which bounds both the disk and address space of the log and the replay at startup. Its mapping is
+ * released once the last reader drops it.
+ */
+package com.example.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+@Component
+public class EventLog {
+    private static final Logger log = LoggerFactory.getLogger(EventLog.class);
+    // Payload length, payload CRC32 and sequence number
+    private static final int HEADER = 4 + 4 + 8;
+    // Written where a record did not fit, telling readers to go on with the next segment
+    private static final int END_OF_SEGMENT = -1;
+    private static final int MIN_SEGMENT_SIZE = 4096;
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int retentionSegments;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder undecodable = new LongAdder();
+    private final LongAdder syncFailures = new LongAdder();
+    private final ScheduledExecutorService syncer;
+    private final FileChannel lockChannel;
+    private final FileLock directoryLock;
+    // Guarded by appendLock
+    private long nextSequence;
+    // The end of the last complete record, published after every append
+    private volatile Position end;
+    private volatile Position synced;
+
+    /**
+     * Opens the log, recovering the segments already in the directory.
+     *
+     * @param directory    The directory of the segment files.
+     * @param segmentSize       The size of a segment file.
+     * @param syncInterval      How often appended events are forced to disk.
+     * @param retentionSegments The number of segment files kept, 0 to keep them all.
+     */
+    @Autowired
+    public EventLog(@Value("${events.dir:data/events}") String directory,
+                    @Value("${events.segment-size:64MB}") DataSize segmentSize,
+                    @Value("${events.sync-interval:PT0.01S}") Duration syncInterval,
+                    @Value("${events.retention-segments:16}") int retentionSegments) {
+        if (segmentSize.toBytes() < MIN_SEGMENT_SIZE || segmentSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be between 4KB and 2GB");
+        }
+        if (retentionSegments < 0) {
+            throw new IllegalArgumentException("Retention must not be negative");
+        }
+        this.directory = Paths.get(directory);
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.retentionSegments = retentionSegments;
+        try {
+            Files.createDirectories(this.directory);
+            lockChannel = FileChannel.open(this.directory.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            directoryLock = lockChannel.tryLock();
+            if (directoryLock == null) {
+                throw new IllegalStateException("Event log " + this.directory + " is used by another process");
+            }
+            recover();
+        } catch (OverlappingFileLockException e) {
+            throw new IllegalStateException("Event log " + this.directory + " is already open", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open event log " + this.directory, e);
+        }
+        synced = end;
+        syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-log-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = Math.max(1, syncInterval.toNanos());
+        syncer.scheduleWithFixedDelay(this::sync, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            segments.add(map(Integer.parseInt(name.substring(0, name.length() - SUFFIX.length())), file));
+        }
+        if (segments.isEmpty()) {
+            segments.add(map(0, segmentPath(0)));
+        }
+        // The retention may have been lowered since the log was written
+        retire();
+        Position position = new Position(segments.get(0).index(), 0);
+        long lastSequence = -1;
+        Segment segment = null;
+        while (true) {
+            if (segment == null || segment.index() != position.segment()) {
+                segment = segment(position.segment());
+            }
+            int offset = position.offset();
+            int length = offset + HEADER <= segmentSize ? segment.buffer().getInt(offset) : END_OF_SEGMENT;
+            if (length == END_OF_SEGMENT && position.segment() < lastSegment().index()) {
+                position = new Position(position.segment() + 1, 0);
+                continue;
+            }
+            if (length <= 0 || offset + HEADER + length > segmentSize
+                    || segment.buffer().getInt(offset + 4) != crc(segment.buffer(), offset + HEADER, length)) {
+                break;
+            }
+            lastSequence = segment.buffer().getLong(offset + 8);
+            position = new Position(position.segment(), offset + HEADER + length);
+        }
+        // A torn record after the last complete one is overwritten by the next append; segments past a damaged
+        // one cannot be reached by readers and are dropped
+        while (lastSegment().index() > position.segment()) {
+            Segment unreachable = segments.remove(segments.size() - 1);
+            log.warn("Dropping event log segment {} after a damaged record in segment {}", unreachable.path(), position.segment());
+            unreachable.channel().close();
+            Files.delete(unreachable.path());
+        }
+        nextSequence = lastSequence + 1;
+        end = position;
+        log.info("Event log {} opened with {} event(s) in {} segment(s)", directory, nextSequence, segments.size());
+    }
+
+    /**
+     * Appends an event. The event is visible to readers when this returns and is forced to disk within the
+     * sync interval. A failure to write is logged and counted, and never thrown, because the change the
+     * event describes has already been committed.
+     *
+     * @param event The event.
+     * @return The sequence number of the event, or -1 if it could not be written.
+     */
+    public long append(RentalEvent event) {
+        byte[] payload = event.encode();
+        if (HEADER + payload.length > segmentSize) {
+            throw new IllegalArgumentException("Event does not fit in a segment");
+        }
+        appendLock.lock();
+        try {
+            Position at = end;
+            Segment segment = lastSegment();
+            if (at.offset() + HEADER + payload.length > segmentSize) {
+                if (at.offset() + 4 <= segmentSize) {
+                    segment.buffer().putInt(at.offset(), END_OF_SEGMENT);
+                }
+                segment.buffer().force();
+                segment = map(segment.index() + 1, segmentPath(segment.index() + 1));
+                segments.add(segment);
+                retire();
+                at = new Position(segment.index(), 0);
+            }
+            long sequence = nextSequence++;
+            MappedByteBuffer buffer = segment.buffer();
+            buffer.put(at.offset() + HEADER, payload);
+            buffer.putLong(at.offset() + 8, sequence);
+            buffer.putInt(at.offset() + 4, crc(payload));
+            buffer.putInt(at.offset(), payload.length);
+            end = new Position(segment.index(), at.offset() + HEADER + payload.length);
+            return sequence;
+        } catch (IOException | UncheckedIOException e) {
+            dropped.increment();
+            log.error("Cannot append {} event of car {} to the event log", event.type(), event.carNo(), e);
+            return -1;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Deletes the oldest segments past the retention
+    private void retire() throws IOException {
+        while (retentionSegments > 0 && segments.size() > retentionSegments) {
+            Segment oldest = segments.remove(0);
+            oldest.channel().close();
+            Files.delete(oldest.path());
+            log.info("Deleted event log segment {} past the retention of {} segment(s)", oldest.path(), retentionSegments);
+        }
+    }
+
+    /**
+     * Returns the position of the first event in the log.
+     *
+     * @return The position.
+     */
+    public Position start() {
+        return new Position(segments.get(0).index(), 0);
+    }
+
+    /**
+     * Returns the position after the last event appended.
+     *
+     * @return The position.
+     */
+    public Position end() {
+        return end;
+    }
+
+    /**
+     * Reads events in order from a position. A position in a segment deleted by the retention reads on from the
+     * start of the log. An event that cannot be decoded is logged, counted and skipped.
+     *
+     * @param from     The position to read from, returned by start or by a previous read.
+     * @param max      The maximum number of events to read.
+     * @param consumer The consumer of the events.
+     * @return The position after the last event read.
+     */
+    public Position read(Position from, int max, Consumer<RentalEvent> consumer) {
+        Position limit = end;
+        Position first = start();
+        Position position = from.compareTo(first) < 0 ? first : from;
+        Segment segment = null;
+        int count = 0;
+        while (count < max && position.compareTo(limit) < 0) {
+            if (segment == null || segment.index() != position.segment()) {
+                segment = segment(position.segment());
+                if (segment == null) {
+                    // Deleted by the retention since the read started
+                    position = start();
+                    continue;
+                }
+            }
+            int offset = position.offset();
+            int length = offset + HEADER <= segmentSize ? segment.buffer().getInt(offset) : END_OF_SEGMENT;
+            if (length == END_OF_SEGMENT) {
+                position = new Position(position.segment() + 1, 0);
+                continue;
+            }
+            long sequence = segment.buffer().getLong(offset + 8);
+            // A slice reads the payload without moving the shared buffer's position
+            ByteBuffer payload = segment.buffer().slice(offset + HEADER, length);
+            RentalEvent event = null;
+            try {
+                event = RentalEvent.decode(sequence, payload);
+            } catch (RuntimeException e) {
+                undecodable.increment();
+                log.error("Skipping event {} at {} that cannot be decoded", sequence, position, e);
+            }
+            position = new Position(position.segment(), offset + HEADER + length);
+            count++;
+            if (event != null) {
+                consumer.accept(event);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Returns the sequence number the next appended event will get, which is the number of events logged.
+     *
+     * @return The next sequence number.
+     */
+    public long nextSequence() {
+        appendLock.lock();
+        try {
+            return nextSequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the size, position and error counters of the log.
+     *
+     * @return The statistics.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("directory", directory.toAbsolutePath().toString());
+        stats.put("events", nextSequence());
+        stats.put("segments", segments.size());
+        stats.put("segmentSize", segmentSize);
+        stats.put("retentionSegments", retentionSegments);
+        stats.put("start", start());
+        stats.put("end", end);
+        stats.put("synced", synced);
+        stats.put("dropped", dropped.sum());
+        stats.put("undecodable", undecodable.sum());
+        stats.put("syncFailures", syncFailures.sum());
+        return stats;
+    }
+
+    /**
+     * Forces the events appended since the last sync to disk.
+     */
+    public void sync() {
+        Position target = end;
+        Position from = synced;
+        if (target.equals(from)) {
+            return;
+        }
+        try {
+            // Earlier segments were forced when the log moved past them, and so was a segment the retention removed
+            Segment segment = segment(target.segment());
+            if (segment != null) {
+                int offset = from.segment() == target.segment() ? from.offset() : 0;
+                segment.buffer().force(offset, target.offset() - offset);
+            }
+            synced = target;
+        } catch (RuntimeException e) {
+            // Anything thrown out of the scheduled task would cancel every later sync
+            syncFailures.increment();
+            log.error("Cannot sync the event log", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        syncer.shutdown();
+        appendLock.lock();
+        try {
+            sync();
+            for (Segment segment : segments) {
+                segment.channel().close();
+            }
+            directoryLock.release();
+            lockChannel.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private Segment map(int index, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(index, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%010d%s", index, SUFFIX));
+    }
+
+    // Scans a snapshot of the segments, since the retention may remove the oldest one at any time
+    private Segment segment(int index) {
+        for (Segment segment : segments) {
+            if (segment.index() == index) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    private Segment lastSegment() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * A position in the log: a segment and a byte offset inside it.
+     */
+    public record Position(int segment, int offset) implements Comparable<Position> {
+        @Override
+        public int compareTo(Position other) {
+            return segment != other.segment ? Integer.compare(segment, other.segment) : Integer.compare(offset, other.offset);
+        }
+    }
+
+    private record Segment(int index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * The EventProjections class keeps the read models up to date with the event log. A single background thread
+ * follows the end of the log and applies new events in batches to every projector, so the projectors need
+ * no locking of their own and the write path never waits for them. A rebuild clears the projectors and
+ * replays the whole log on the same thread.
+ * A batch that cannot be read is logged and counted, and the rest of its segment is skipped, so a damaged
+ * segment cannot stop the projections for good. Events deleted by the log's retention before they were
+ * applied are counted as missed.
+ */
+package com.example.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class EventProjections {
+    private static final Logger log = LoggerFactory.getLogger(EventProjections.class);
+    private static final int BATCH_SIZE = 1000;
+
+    private final EventLog eventLog;
+    private final List<EventProjector> projectors;
+    private final ScheduledExecutorService projector;
+    // Written by the projection thread only
+    private EventLog.Position position;
+    private volatile long appliedSequence = -1;
+    private volatile long rebuilds;
+    private volatile long failures;
+    private volatile long readFailures;
+    private volatile long missedSegments;
+
+    /**
+     * Replays the log into the projectors and starts following it.
+     *
+     * @param eventLog   The event log.
+     * @param projectors The projectors to keep up to date.
+     * @param interval   How often the log is polled for new events.
+     */
+    @Autowired
+    public EventProjections(EventLog eventLog, List<EventProjector> projectors,
+                            @Value("${events.projection-interval:PT0.01S}") Duration interval) {
+        this.eventLog = eventLog;
+        this.projectors = projectors;
+        this.position = eventLog.start();
+        this.projector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-projections");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = Math.max(1, interval.toNanos());
+        projector.scheduleWithFixedDelay(this::catchUp, 0, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Clears the projectors and replays the whole log into them. Until the replay reaches the end of the log,
+     * the projections answer from the part replayed so far.
+     */
+    public void rebuild() {
+        projector.execute(() -> {
+            projectors.forEach(EventProjector::reset);
+            position = eventLog.start();
+            appliedSequence = -1;
+            rebuilds++;
+            catchUp();
+        });
+    }
+
+    /**
+     * Returns the sequence number of the last event applied to the projectors and how far they lag the log.
+     *
+     * @return The statistics.
+     */
+    public Map<String, Object> stats() {
+        long applied = appliedSequence;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("applied", applied);
+        stats.put("lag", eventLog.nextSequence() - 1 - applied);
+        stats.put("rebuilds", rebuilds);
+        stats.put("failures", failures);
+        stats.put("readFailures", readFailures);
+        stats.put("missedSegments", missedSegments);
+        stats.put("projectors", projectors.stream().map(p -> p.getClass().getSimpleName()).toList());
+        return stats;
+    }
+
+    @PreDestroy
+    public void close() {
+        projector.shutdownNow();
+    }
+
+    // Runs on the projection thread only
+    private void catchUp() {
+        while (position.compareTo(eventLog.end()) < 0) {
+            EventLog.Position start = eventLog.start();
+            if (position.compareTo(start) < 0) {
+                missedSegments += start.segment() - position.segment();
+                log.warn("Event log segments {} to {} were deleted before they were projected", position.segment(), start.segment() - 1);
+                position = start;
+            }
+            try {
+                position = eventLog.read(position, BATCH_SIZE, this::apply);
+            } catch (RuntimeException e) {
+                // Thrown out of the scheduled task, it would cancel every later poll
+                readFailures++;
+                log.error("Cannot read the event log at {}, skipping the rest of segment {}", position, position.segment(), e);
+                position = new EventLog.Position(position.segment() + 1, 0);
+            }
+        }
+    }
+
+    private void apply(RentalEvent event) {
+        for (EventProjector projector : projectors) {
+            try {
+                projector.apply(event);
+            } catch (RuntimeException e) {
+                // Skipped rather than retried, so one bad event cannot stop the projections for good
+                failures++;
+                log.error("{} cannot apply event {}", projector.getClass().getSimpleName(), event.sequence(), e);
+            }
+        }
+        appliedSequence = event.sequence();
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.demo.service;
+
+/**
+ * A read model built from the event log. Events are applied one at a time, in log order, on the projection
+ * thread; readers on other threads must only see complete states.
+ */
+public interface EventProjector {
+
+    /**
+     * Applies the next event of the log.
+     *
+     * @param event The event.
+     */
+    void apply(RentalEvent event);
+
+    /**
+     * Drops the whole state, before the log is replayed from its start.
+     */
+    void reset();
+}
@@ -0,0 +1,60 @@
+/**
+ * The FleetPositionProjection class is the last known position, power and status of every car, built from
+ * the event log. Only cars with events since the log was started are listed.
+ */
+package com.example.demo.service;
+
+import com.example.demo.model.CarStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class FleetPositionProjection implements EventProjector {
+    private final Map<String, Position> positions = new ConcurrentHashMap<>();
+
+    @Override
+    public void apply(RentalEvent event) {
+        Position last = positions.get(event.carNo());
+        Position next = switch (event.type()) {
+            case RENT -> last == null
+                    ? new Position(event.lat(), event.lng(), null, null, true, event.timestamp())
+                    : new Position(last.lat(), last.lng(), last.power(), last.status(), true, event.timestamp());
+            case RETURN, CHARGE -> new Position(event.lat(), event.lng(), event.power(),
+                    last == null ? null : last.status(), false, event.timestamp());
+            case STATUS -> last == null
+                    ? new Position(null, null, null, event.carStatus(), false, event.timestamp())
+                    : new Position(last.lat(), last.lng(), last.power(), event.carStatus(), last.riding(), event.timestamp());
+        };
+        positions.put(event.carNo(), next);
+    }
+
+    @Override
+    public void reset() {
+        positions.clear();
+    }
+
+    /**
+     * Retrieves the last known state of a car.
+     *
+     * @param carNo The car number.
+     * @return The state, or null if the car has no events.
+     */
+    public Position find(String carNo) {
+        return positions.get(carNo);
+    }
+
+    /**
+     * The last known state of a car. Fields no event has reported yet are null.
+     *
+     * @param lat       The latitude.
+     * @param lng       The longitude.
+     * @param power     The power level.
+     * @param status    The status.
+     * @param riding    Whether the car is being ridden.
+     * @param updatedAt When the state was last changed, in epoch milliseconds.
+     */
+    public record Position(Double lat, Double lng, Integer power, CarStatus status, boolean riding, long updatedAt) {
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * The FleetUpdatePublisher class pushes car changes to WebSocket subscribers, one STOMP topic per grid cell.
+ * Changes reported by the car index are coalesced per car and sent once per tick, so a car changed
+ * several times within a tick produces at most one delta per topic.
+ * Two families of topics are fed from the same changes:
+ * /topic/cars/{cell} follows the cars offered to renters, and
+ * /topic/fleet/{cell} follows every car whatever its state, for repair staff.
+ */
+package com.example.demo.service;
+
+import com.example.demo.model.Car;
+import com.example.demo.response.FleetDelta;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+@Component
+public class FleetUpdatePublisher {
+    public static final String CARS_TOPIC = "/topic/cars/";
+    public static final String FLEET_TOPIC = "/topic/fleet/";
+    // Limits how many topics one viewport can ask for
+    private static final int MAX_VIEWPORT_CELLS = 400;
+
+    @Autowired
+    private CarSpatialIndex carIndex;
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+    // Car number -> state at the start of the tick and latest state
+    private final Map<String, Change> pending = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void register() {
+        carIndex.addListener(this::onChange);
+    }
+
+    private void onChange(Car previous, Car current) {
+        pending.merge(current.getNo(), new Change(previous, current),
+                (queued, next) -> new Change(queued.previous(), next.current()));
+    }
+
+    /**
+     * Sends the changes queued since the last tick, one message per topic.
+     */
+    @Scheduled(fixedDelayString = "${fleet.push.tick:250}")
+    public void publish() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<String, List<FleetDelta>> messages = new HashMap<>();
+        for (String no : pending.keySet()) {
+            // Removed atomically, so a change merged in afterwards stays queued for the next tick
+            Change change = pending.remove(no);
+            if (change == null) {
+                continue;
+            }
+            diff(change, CARS_TOPIC, CarSpatialIndex::isAvailable, messages);
+            diff(change, FLEET_TOPIC, Objects::nonNull, messages);
+        }
+        for (Map.Entry<String, List<FleetDelta>> message : messages.entrySet()) {
+            messagingTemplate.convertAndSend(message.getKey(), message.getValue());
+        }
+    }
+
+    /**
+     * Returns the topics of the grid cells overlapping the given bounding box.
+     *
+     * @param prefix       The topic family, CARS_TOPIC or FLEET_TOPIC.
+     * @param minLatitude  The minimum latitude.
+     * @param maxLatitude  The maximum latitude.
+     * @param minLongitude The minimum longitude.
+     * @param maxLongitude The maximum longitude.
+     * @return The topic names, or null if the box covers too many cells.
+     */
+    public List<String> topicsIn(String prefix, double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        List<Long> keys = carIndex.cellsIn(minLatitude, maxLatitude, minLongitude, maxLongitude, MAX_VIEWPORT_CELLS);
+        if (keys == null) {
+            return null;
+        }
+        List<String> topics = new ArrayList<>(keys.size());
+        for (long key : keys) {
+            topics.add(topic(prefix, key));
+        }
+        return topics;
+    }
+
+    private void diff(Change change, String prefix, Predicate<Car> visible, Map<String, List<FleetDelta>> messages) {
+        Car before = change.previous() != null && visible.test(change.previous()) ? change.previous() : null;
+        Car after = visible.test(change.current()) ? change.current() : null;
+        if (before == null && after == null) {
+            return;
+        }
+        String beforeTopic = before == null ? null : topic(prefix, before);
+        String afterTopic = after == null ? null : topic(prefix, after);
+        if (beforeTopic != null && beforeTopic.equals(afterTopic)) {
+            if (!sameState(before, after)) {
+                add(messages, afterTopic, FleetDelta.MOVE, after);
+            }
+            return;
+        }
+        if (beforeTopic != null) {
+            add(messages, beforeTopic, FleetDelta.REMOVE, before);
+        }
+        if (afterTopic != null) {
+            add(messages, afterTopic, FleetDelta.ADD, after);
+        }
+    }
+
+    private static boolean sameState(Car before, Car after) {
+        return before.getLat() == after.getLat() && before.getLng() == after.getLng() && before.getPower() == after.getPower()
+                && before.getCarStatus() == after.getCarStatus() && before.isRiding() == after.isRiding();
+    }
+
+    private static void add(Map<String, List<FleetDelta>> messages, String topic, String type, Car car) {
+        messages.computeIfAbsent(topic, key -> new ArrayList<>()).add(new FleetDelta(type, car));
+    }
+
+    private String topic(String prefix, Car car) {
+        return topic(prefix, carIndex.cellKey(car.getLat(), car.getLng()));
+    }
+
+    private static String topic(String prefix, long key) {
+        return prefix + CarSpatialIndex.row(key) + "_" + CarSpatialIndex.col(key);
+    }
+
+    private record Change(Car previous, Car current) {
+    }
+}
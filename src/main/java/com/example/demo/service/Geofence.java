@@ -0,0 +1,353 @@
+/**
+ * The Geofence class is an immutable set of zone polygons with a precomputed grid over their bounding box.
+ * Every grid cell is classified once as fully inside a zone, fully outside all zones, or crossed by a zone
+ * boundary, so a containment check is an array lookup except in boundary cells, which fall back to an exact
+ * point-in-polygon test. Coordinates are degrees; polygons may be concave and are closed implicitly.
+ */
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class Geofence {
+    static final byte OUTSIDE = 0;
+    static final byte INSIDE = 1;
+    static final byte EDGE = 2;
+    // Bounds the memory of the grid; larger areas get coarser cells
+    private static final int MAX_CELLS = 1 << 20;
+    // Points this close to a zone boundary, in degrees, are on it: about a tenth of a millimetre
+    private static final double BOUNDARY_TOLERANCE = 1e-9;
+
+    private final List<Zone> zones;
+    private final double minLat;
+    private final double maxLat;
+    private final double minLng;
+    private final double maxLng;
+    private final double cellSize;
+    private final int rows;
+    private final int cols;
+    private final byte[] grid;
+    private final int[] insideCells;
+
+    /**
+     * Builds the grid for the given zones.
+     *
+     * @param zones    The zone polygons, at least one.
+     * @param cellSize The requested edge length of a grid cell in degrees.
+     */
+    public Geofence(List<Zone> zones, double cellSize) {
+        if (zones.isEmpty()) {
+            throw new IllegalArgumentException("At least one zone is required");
+        }
+        this.zones = List.copyOf(zones);
+        double lowLat = Double.MAX_VALUE, highLat = -Double.MAX_VALUE, lowLng = Double.MAX_VALUE, highLng = -Double.MAX_VALUE;
+        for (Zone zone : zones) {
+            for (int i = 0; i < zone.lats().length; i++) {
+                lowLat = Math.min(lowLat, zone.lats()[i]);
+                highLat = Math.max(highLat, zone.lats()[i]);
+                lowLng = Math.min(lowLng, zone.lngs()[i]);
+                highLng = Math.max(highLng, zone.lngs()[i]);
+            }
+        }
+        this.minLat = lowLat;
+        this.maxLat = highLat;
+        this.minLng = lowLng;
+        this.maxLng = highLng;
+        double size = cellSize;
+        while (cellCount(size) > MAX_CELLS) {
+            size *= 2;
+        }
+        this.cellSize = size;
+        this.rows = Math.max(1, (int) Math.ceil((maxLat - minLat) / size));
+        this.cols = Math.max(1, (int) Math.ceil((maxLng - minLng) / size));
+        this.grid = new byte[rows * cols];
+        markEdges();
+        List<Integer> inside = new ArrayList<>();
+        for (int cell = 0; cell < grid.length; cell++) {
+            if (grid[cell] != EDGE && anyZoneContains(cellLat(cell, 0.5), cellLng(cell, 0.5))) {
+                grid[cell] = INSIDE;
+                inside.add(cell);
+            }
+        }
+        this.insideCells = inside.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Checks if a position lies inside any zone. Points on a boundary are inside.
+     *
+     * @param lat The latitude.
+     * @param lng The longitude.
+     * @return true if the position is inside a zone, false otherwise.
+     */
+    public boolean contains(double lat, double lng) {
+        int cell = cellAt(lat, lng);
+        if (cell < 0) {
+            return false;
+        }
+        byte type = grid[cell];
+        return type == INSIDE || (type == EDGE && anyZoneContains(lat, lng));
+    }
+
+    /**
+     * Returns the index of the first zone containing a position.
+     *
+     * @param lat The latitude.
+     * @param lng The longitude.
+     * @return The index of the zone in {@link #getZones()}, or -1 if the position is outside every zone.
+     */
+    public int zoneAt(double lat, double lng) {
+        int cell = cellAt(lat, lng);
+        if (cell < 0 || grid[cell] == OUTSIDE) {
+            return -1;
+        }
+        if (grid[cell] == INSIDE && zones.size() == 1) {
+            return 0;
+        }
+        for (int i = 0; i < zones.size(); i++) {
+            if (zones.get(i).contains(lat, lng)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the fully inside cell nearest to a position.
+     *
+     * @param lat The latitude.
+     * @param lng The longitude.
+     * @return The cell index, or -1 if no cell is fully inside a zone.
+     */
+    public int nearestInsideCell(double lat, double lng) {
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int cell : insideCells) {
+            double dLat = cellLat(cell, 0.5) - lat;
+            double dLng = cellLng(cell, 0.5) - lng;
+            double squared = dLat * dLat + dLng * dLng;
+            if (squared < bestDistance) {
+                bestDistance = squared;
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns a latitude inside a cell.
+     *
+     * @param cell     The cell index.
+     * @param fraction The position within the cell, from 0 at its southern edge to 1 at its northern edge.
+     * @return The latitude.
+     */
+    public double cellLat(int cell, double fraction) {
+        return minLat + (cell / cols + fraction) * cellSize;
+    }
+
+    /**
+     * Returns a longitude inside a cell.
+     *
+     * @param cell     The cell index.
+     * @param fraction The position within the cell, from 0 at its western edge to 1 at its eastern edge.
+     * @return The longitude.
+     */
+    public double cellLng(int cell, double fraction) {
+        return minLng + (cell % cols + fraction) * cellSize;
+    }
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    public double getMinLng() {
+        return minLng;
+    }
+
+    public double getMaxLng() {
+        return maxLng;
+    }
+
+    public List<Zone> getZones() {
+        return zones;
+    }
+
+    byte cellType(double lat, double lng) {
+        int cell = cellAt(lat, lng);
+        return cell < 0 ? OUTSIDE : grid[cell];
+    }
+
+    private long cellCount(double size) {
+        return (long) Math.ceil((maxLat - minLat) / size) * (long) Math.ceil((maxLng - minLng) / size);
+    }
+
+    private int cellAt(double lat, double lng) {
+        if (!(lat >= minLat && lat <= maxLat && lng >= minLng && lng <= maxLng)) {
+            return -1;
+        }
+        int row = Math.min(rows - 1, (int) ((lat - minLat) / cellSize));
+        int col = Math.min(cols - 1, (int) ((lng - minLng) / cellSize));
+        return row * cols + col;
+    }
+
+    /**
+     * Marks every cell crossed by a zone boundary, visiting only the cells in the bounding box of each segment.
+     */
+    private void markEdges() {
+        for (Zone zone : zones) {
+            double[] lats = zone.lats();
+            double[] lngs = zone.lngs();
+            for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+                int lowRow = clampRow(Math.min(lats[i], lats[j]));
+                int highRow = clampRow(Math.max(lats[i], lats[j]));
+                int lowCol = clampCol(Math.min(lngs[i], lngs[j]));
+                int highCol = clampCol(Math.max(lngs[i], lngs[j]));
+                for (int row = lowRow; row <= highRow; row++) {
+                    for (int col = lowCol; col <= highCol; col++) {
+                        double south = minLat + row * cellSize;
+                        double west = minLng + col * cellSize;
+                        if (segmentCrosses(lngs[j], lats[j], lngs[i], lats[i], west, south, west + cellSize, south + cellSize)) {
+                            grid[row * cols + col] = EDGE;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private int clampRow(double lat) {
+        return Math.max(0, Math.min(rows - 1, (int) ((lat - minLat) / cellSize)));
+    }
+
+    private int clampCol(double lng) {
+        return Math.max(0, Math.min(cols - 1, (int) ((lng - minLng) / cellSize)));
+    }
+
+    private boolean anyZoneContains(double lat, double lng) {
+        for (Zone zone : zones) {
+            if (zone.contains(lat, lng)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the segment from (x1, y1) to (x2, y2) touches the rectangle, by Liang-Barsky clipping.
+     */
+    static boolean segmentCrosses(double x1, double y1, double x2, double y2,
+                                  double minX, double minY, double maxX, double maxY) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {x1 - minX, maxX - x1, y1 - minY, maxY - y1};
+        double enter = 0;
+        double exit = 1;
+        for (int k = 0; k < 4; k++) {
+            if (p[k] == 0) {
+                if (q[k] < 0) {
+                    return false;
+                }
+            } else {
+                double t = q[k] / p[k];
+                if (p[k] < 0) {
+                    enter = Math.max(enter, t);
+                } else {
+                    exit = Math.min(exit, t);
+                }
+            }
+        }
+        return enter <= exit;
+    }
+
+    /**
+     * A named zone polygon.
+     *
+     * @param name The zone name.
+     * @param lats The latitudes of the vertices.
+     * @param lngs The longitudes of the vertices.
+     */
+    public record Zone(String name, double[] lats, double[] lngs) {
+        public Zone {
+            if (lats.length != lngs.length || lats.length < 3) {
+                throw new IllegalArgumentException("Zone " + name + " needs at least three vertices");
+            }
+        }
+
+        /**
+         * Parses a polygon written as "lat lng, lat lng, ...".
+         *
+         * @param name    The zone name.
+         * @param polygon The vertices.
+         * @return The zone.
+         */
+        public static Zone parse(String name, String polygon) {
+            String[] vertices = polygon.trim().split("\\s*,\\s*");
+            double[] lats = new double[vertices.length];
+            double[] lngs = new double[vertices.length];
+            for (int i = 0; i < vertices.length; i++) {
+                String[] coordinates = vertices[i].trim().split("\\s+");
+                if (coordinates.length != 2) {
+                    throw new IllegalArgumentException("Zone " + name + " has a malformed vertex: " + vertices[i]);
+                }
+                lats[i] = Double.parseDouble(coordinates[0]);
+                lngs[i] = Double.parseDouble(coordinates[1]);
+            }
+            return new Zone(name, lats, lngs);
+        }
+
+        public double minLat() {
+            return Arrays.stream(lats).min().orElseThrow();
+        }
+
+        public double maxLat() {
+            return Arrays.stream(lats).max().orElseThrow();
+        }
+
+        public double minLng() {
+            return Arrays.stream(lngs).min().orElseThrow();
+        }
+
+        public double maxLng() {
+            return Arrays.stream(lngs).max().orElseThrow();
+        }
+
+        /**
+         * Checks if a position lies inside the polygon by counting boundary crossings of a ray.
+         * Points on the boundary are inside: the ray alone would leave out those on northern and eastern edges.
+         *
+         * @param lat The latitude.
+         * @param lng The longitude.
+         * @return true if the position is inside or on the boundary, false otherwise.
+         */
+        public boolean contains(double lat, double lng) {
+            for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+                if (onSegment(lat, lng, lats[j], lngs[j], lats[i], lngs[i])) {
+                    return true;
+                }
+            }
+            boolean inside = false;
+            for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+                if ((lats[i] > lat) != (lats[j] > lat)
+                        && lng < (lngs[j] - lngs[i]) * (lat - lats[i]) / (lats[j] - lats[i]) + lngs[i]) {
+                    inside = !inside;
+                }
+            }
+            return inside;
+        }
+
+        private static boolean onSegment(double lat, double lng, double lat1, double lng1, double lat2, double lng2) {
+            if (lat < Math.min(lat1, lat2) - BOUNDARY_TOLERANCE || lat > Math.max(lat1, lat2) + BOUNDARY_TOLERANCE
+                    || lng < Math.min(lng1, lng2) - BOUNDARY_TOLERANCE || lng > Math.max(lng1, lng2) + BOUNDARY_TOLERANCE) {
+                return false;
+            }
+            // The cross product is the distance from the line times the length of the segment
+            double cross = (lat2 - lat1) * (lng - lng1) - (lng2 - lng1) * (lat - lat1);
+            return Math.abs(cross) <= BOUNDARY_TOLERANCE * Math.hypot(lat2 - lat1, lng2 - lng1);
+        }
+    }
+}
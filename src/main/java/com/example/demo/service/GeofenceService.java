@@ -0,0 +1,61 @@
+/**
+ * The GeofenceService class holds the service-area geofence built from the configured zones, and answers
+ * whether a position is inside the service area.
+ */
+package com.example.demo.service;
+
+import com.example.demo.config.GeofenceProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class GeofenceService {
+    private static final Logger log = LoggerFactory.getLogger(GeofenceService.class);
+    // The original service area, used when no zone is configured
+    static final String DEFAULT_ZONE = "25.026708 121.511162, 25.026708 121.567045, 25.068277 121.567045, 25.068277 121.511162";
+
+    private final Geofence geofence;
+
+    /**
+     * Builds the geofence from the configured zones.
+     *
+     * @param properties The geofence configuration.
+     */
+    @Autowired
+    public GeofenceService(GeofenceProperties properties) {
+        List<Geofence.Zone> zones = new ArrayList<>();
+        for (GeofenceProperties.ZoneProperties zone : properties.getZones()) {
+            zones.add(Geofence.Zone.parse(zone.getName(), zone.getPolygon()));
+        }
+        if (zones.isEmpty()) {
+            zones.add(Geofence.Zone.parse("default", DEFAULT_ZONE));
+        }
+        this.geofence = new Geofence(zones, properties.getCellSize());
+        log.info("Geofence built with {} zone(s)", zones.size());
+    }
+
+    /**
+     * Checks if a position lies inside the service area.
+     *
+     * @param lat The latitude.
+     * @param lng The longitude.
+     * @return true if the position is inside a zone, false otherwise.
+     */
+    public boolean contains(double lat, double lng) {
+        return geofence.contains(lat, lng);
+    }
+
+    /**
+     * Returns the geofence.
+     *
+     * @return The geofence.
+     */
+    public Geofence getGeofence() {
+        return geofence;
+    }
+}
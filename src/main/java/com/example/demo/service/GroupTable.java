@@ -0,0 +1,155 @@
+/**
+ * The GroupTable class accumulates trip measures by group key during one aggregation. Keys of up to
+ * MAX_DIMENSIONS longs are mapped to dense group numbers with open addressing, and the measures of each
+ * group are kept in primitive arrays indexed by group number. A table is used by one thread at a time.
+ */
+package com.example.demo.service;
+
+import java.util.Arrays;
+
+final class GroupTable {
+    static final int MAX_DIMENSIONS = 3;
+
+    private final int dimensions;
+    // Group number + 1 by hash slot, 0 for an empty slot
+    private int[] slots = new int[64];
+    private long[] keys;
+    private int groups;
+    long[] trips;
+    long[] revenue;
+    long[] minutes;
+    long[] distance;
+    long[] coupons;
+
+    GroupTable(int dimensions) {
+        this.dimensions = dimensions;
+        int capacity = 32;
+        keys = new long[capacity * Math.max(1, dimensions)];
+        trips = new long[capacity];
+        revenue = new long[capacity];
+        minutes = new long[capacity];
+        distance = new long[capacity];
+        coupons = new long[capacity];
+    }
+
+    /**
+     * Returns the number of a group, adding the group if it is new.
+     *
+     * @param key0 The first part of the key, ignored when there is no dimension.
+     * @param key1 The second part of the key, ignored with fewer than two dimensions.
+     * @param key2 The third part of the key, ignored with fewer than three dimensions.
+     * @return The group number.
+     */
+    int groupOf(long key0, long key1, long key2) {
+        if (dimensions == 0) {
+            if (groups == 0) {
+                groups = 1;
+            }
+            return 0;
+        }
+        int mask = slots.length - 1;
+        int slot = hash(key0, key1, key2) & mask;
+        while (true) {
+            int group = slots[slot] - 1;
+            if (group < 0) {
+                return add(slot, key0, key1, key2);
+            }
+            if (matches(group, key0, key1, key2)) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Adds a trip to a group.
+     */
+    void add(int group, int tripMinutes, int tripDistance, int bill, int coupon) {
+        trips[group]++;
+        revenue[group] += bill;
+        minutes[group] += tripMinutes;
+        distance[group] += tripDistance;
+        coupons[group] += coupon;
+    }
+
+    /**
+     * Adds the groups of another table to this one.
+     *
+     * @param other The other table, with the same dimensions.
+     * @return This table.
+     */
+    GroupTable merge(GroupTable other) {
+        for (int from = 0; from < other.groups; from++) {
+            int to = groupOf(other.key(from, 0), other.key(from, 1), other.key(from, 2));
+            trips[to] += other.trips[from];
+            revenue[to] += other.revenue[from];
+            minutes[to] += other.minutes[from];
+            distance[to] += other.distance[from];
+            coupons[to] += other.coupons[from];
+        }
+        return this;
+    }
+
+    int size() {
+        return groups;
+    }
+
+    long key(int group, int dimension) {
+        return dimension < dimensions ? keys[group * dimensions + dimension] : 0;
+    }
+
+    private int add(int slot, long key0, long key1, long key2) {
+        int group = groups++;
+        if (group == trips.length) {
+            int capacity = group * 2;
+            keys = Arrays.copyOf(keys, capacity * dimensions);
+            trips = Arrays.copyOf(trips, capacity);
+            revenue = Arrays.copyOf(revenue, capacity);
+            minutes = Arrays.copyOf(minutes, capacity);
+            distance = Arrays.copyOf(distance, capacity);
+            coupons = Arrays.copyOf(coupons, capacity);
+        }
+        int at = group * dimensions;
+        keys[at] = key0;
+        if (dimensions > 1) {
+            keys[at + 1] = key1;
+        }
+        if (dimensions > 2) {
+            keys[at + 2] = key2;
+        }
+        slots[slot] = group + 1;
+        // Kept at most half full so probe sequences stay short
+        if (groups * 2 > slots.length) {
+            rehash();
+        }
+        return group;
+    }
+
+    private boolean matches(int group, long key0, long key1, long key2) {
+        int at = group * dimensions;
+        return keys[at] == key0 && (dimensions < 2 || keys[at + 1] == key1) && (dimensions < 3 || keys[at + 2] == key2);
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int group = 0; group < groups; group++) {
+            int slot = hash(key(group, 0), key(group, 1), key(group, 2)) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = group + 1;
+        }
+    }
+
+    private int hash(long key0, long key1, long key2) {
+        long h = key0 * 0x9E3779B97F4A7C15L;
+        if (dimensions > 1) {
+            h = (h ^ (h >>> 29) ^ key1) * 0xBF58476D1CE4E5B9L;
+        }
+        if (dimensions > 2) {
+            h = (h ^ (h >>> 29) ^ key2) * 0x94D049BB133111EBL;
+        }
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * The IdempotencyCache class makes retried commands safe. A client sends the same Idempotency-Key with every
+ * attempt of a command, and only the first attempt is executed; later attempts with the key get the result
+ * of the first from memory, waiting for it if the first is still running. Keys are scoped to a user and an
+ * operation, kept for a bounded time and in a bounded number, and a key reused for a different request is
+ * rejected rather than answered with the result of another command.
+ * An attempt that fails with an exception is not remembered, so the client can retry it.
+ */
+package com.example.demo.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+@Component
+public class IdempotencyCache {
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final Cache<Key, Attempt> attempts;
+    private final LongAdder replays = new LongAdder();
+
+    /**
+     * Creates the cache.
+     *
+     * @param maxSize The maximum number of remembered keys.
+     * @param ttl     How long a key is remembered after its first attempt.
+     */
+    @Autowired
+    public IdempotencyCache(@Value("${idempotency.max-size:100000}") long maxSize,
+                            @Value("${idempotency.ttl:PT10M}") Duration ttl) {
+        this.attempts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Executes a command once per idempotency key.
+     *
+     * @param userId    The user issuing the command.
+     * @param operation The name of the command.
+     * @param requestId The idempotency key, or null to execute the command unconditionally.
+     * @param request   The request of the command, compared with the request of the first attempt.
+     * @param action    The command.
+     * @param <T>       The result type.
+     * @return The result of the first attempt with the key.
+     * @throws InvalidIdempotencyKeyException If the key is too long or was used for a different request.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Long userId, String operation, String requestId, Object request, Supplier<T> action) {
+        if (requestId == null) {
+            return action.get();
+        }
+        if (requestId.isEmpty() || requestId.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException("Idempotency key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        Key key = new Key(userId, operation, requestId);
+        Attempt attempt = new Attempt(request, new CompletableFuture<>());
+        Attempt first = attempts.asMap().putIfAbsent(key, attempt);
+        if (first != null) {
+            if (!Objects.equals(first.request(), request)) {
+                throw new InvalidIdempotencyKeyException("Idempotency key was used for a different request");
+            }
+            replays.increment();
+            return (T) await(first.result());
+        }
+        T result;
+        try {
+            result = action.get();
+        } catch (RuntimeException | Error e) {
+            // Forgotten before waiting duplicates are released, so a later retry executes again
+            attempts.asMap().remove(key, attempt);
+            attempt.result().completeExceptionally(e);
+            throw e;
+        }
+        attempt.result().complete(result);
+        return result;
+    }
+
+    /**
+     * Returns the number of attempts answered with the result of an earlier attempt.
+     *
+     * @return The count since startup.
+     */
+    public long getReplayCount() {
+        return replays.sum();
+    }
+
+    private static Object await(CompletableFuture<Object> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record Key(Long userId, String operation, String requestId) {
+    }
+
+    private record Attempt(Object request, CompletableFuture<Object> result) {
+    }
+
+    /**
+     * Thrown when an idempotency key cannot be used for a request.
+     */
+    public static class InvalidIdempotencyKeyException extends RuntimeException {
+        public InvalidIdempotencyKeyException(String message) {
+            super(message);
+        }
+    }
+}
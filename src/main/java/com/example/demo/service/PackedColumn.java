@@ -0,0 +1,93 @@
+/**
+ * The PackedColumn class is an immutable column of ints compressed with frame-of-reference encoding: every
+ * value is stored as its difference from the smallest value, in the narrowest of 0, 8, 16 or 32 bits that
+ * holds the range of the column. Coordinates of a city, trip durations and bills fit in 16 bits or fewer.
+ * Decoding is a single loop over a primitive array, which the JIT compiles to vector instructions.
+ */
+package com.example.demo.service;
+
+import java.util.Arrays;
+
+final class PackedColumn {
+    private final int size;
+    private final int base;
+    private final byte[] bytes;
+    private final short[] shorts;
+    private final int[] ints;
+
+    private PackedColumn(int size, int base, byte[] bytes, short[] shorts, int[] ints) {
+        this.size = size;
+        this.base = base;
+        this.bytes = bytes;
+        this.shorts = shorts;
+        this.ints = ints;
+    }
+
+    /**
+     * Packs the first values of an array.
+     *
+     * @param values The values.
+     * @param size   The number of values to pack.
+     * @return The packed column.
+     */
+    static PackedColumn pack(int[] values, int size) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        long range = size == 0 ? 0 : (long) max - min;
+        if (range == 0) {
+            return new PackedColumn(size, size == 0 ? 0 : min, null, null, null);
+        }
+        if (range <= 0xFF) {
+            byte[] packed = new byte[size];
+            for (int i = 0; i < size; i++) {
+                packed[i] = (byte) (values[i] - min);
+            }
+            return new PackedColumn(size, min, packed, null, null);
+        }
+        if (range <= 0xFFFF) {
+            short[] packed = new short[size];
+            for (int i = 0; i < size; i++) {
+                packed[i] = (short) (values[i] - min);
+            }
+            return new PackedColumn(size, min, null, packed, null);
+        }
+        return new PackedColumn(size, 0, null, null, Arrays.copyOf(values, size));
+    }
+
+    /**
+     * Decodes the column.
+     *
+     * @param out The array to decode into, at least as long as the column.
+     */
+    void decode(int[] out) {
+        int base = this.base;
+        if (bytes != null) {
+            byte[] packed = bytes;
+            for (int i = 0; i < size; i++) {
+                out[i] = base + (packed[i] & 0xFF);
+            }
+        } else if (shorts != null) {
+            short[] packed = shorts;
+            for (int i = 0; i < size; i++) {
+                out[i] = base + (packed[i] & 0xFFFF);
+            }
+        } else if (ints != null) {
+            System.arraycopy(ints, 0, out, 0, size);
+        } else {
+            Arrays.fill(out, 0, size, base);
+        }
+    }
+
+    /**
+     * Returns the memory taken by the packed values.
+     *
+     * @return The size in bytes.
+     */
+    long sizeInBytes() {
+        return bytes != null ? bytes.length : shorts != null ? 2L * shorts.length : ints != null ? 4L * ints.length : 0;
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * The PricingEngine class prices returned rides with the current tariff.
+ * The tariff is compiled once whenever it changes and swapped in with a single volatile write, so a return
+ * always prices with one complete tariff, never a mix of an old and a new one, and never waits for a reload.
+ * Without loaded rules the tariff is built from the pricing properties, which default to the original
+ * pricing of 3 per whole distance unit with a 10% coupon discount.
+ */
+package com.example.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class PricingEngine {
+    private static final Logger log = LoggerFactory.getLogger(PricingEngine.class);
+
+    private final Geofence geofence;
+    private final List<String> zoneNames;
+    private final Tariff.Rule baseRule;
+    private volatile Tariff tariff;
+
+    /**
+     * Creates the engine with the tariff of the pricing properties.
+     *
+     * @param geofenceService The service-area geofence, whose zones the rules can refer to.
+     * @param perDistance     The price of a whole distance unit.
+     * @param perMinute       The price of a minute.
+     * @param unlockFee       The fixed price of a ride.
+     * @param couponPercent   The discount of a coupon in percent.
+     */
+    @Autowired
+    public PricingEngine(GeofenceService geofenceService,
+                         @Value("${pricing.per-distance:3}") double perDistance,
+                         @Value("${pricing.per-minute:0}") double perMinute,
+                         @Value("${pricing.unlock-fee:0}") double unlockFee,
+                         @Value("${pricing.coupon-percent:10}") int couponPercent) {
+        this.geofence = geofenceService.getGeofence();
+        List<String> names = new ArrayList<>();
+        for (Geofence.Zone zone : geofence.getZones()) {
+            names.add(zone.name());
+        }
+        this.zoneNames = List.copyOf(names);
+        this.baseRule = new Tariff.Rule(null, null, null, perDistance, perMinute, unlockFee);
+        this.tariff = new Tariff(zoneNames, couponPercent, List.of(baseRule));
+    }
+
+    /**
+     * Prices a ride from the zone and the hour it started in.
+     *
+     * @param startTime    The start time of the ride.
+     * @param startLat     The latitude the ride started at.
+     * @param startLng     The longitude the ride started at.
+     * @param distance     The distance traveled.
+     * @param totalMinutes The duration of the ride in minutes.
+     * @param usedCoupon   Whether a coupon was used.
+     * @return The bill.
+     */
+    public int bill(LocalDateTime startTime, double startLat, double startLng, double distance, long totalMinutes, boolean usedCoupon) {
+        return tariff.bill(geofence.zoneAt(startLat, startLng), startTime.getHour(), distance, totalMinutes, usedCoupon);
+    }
+
+    /**
+     * Compiles new rules on top of the pricing properties and makes them the current tariff.
+     *
+     * @param couponPercent The discount of a coupon in percent, or null to keep the current one.
+     * @param rules         The rules, applied in order after the base rates.
+     * @return The new tariff.
+     * @throws IllegalArgumentException If a rule refers to an unknown zone or has an invalid hour or rate.
+     */
+    public Tariff load(Integer couponPercent, List<Tariff.Rule> rules) {
+        List<Tariff.Rule> all = new ArrayList<>();
+        all.add(baseRule);
+        if (rules != null) {
+            all.addAll(rules);
+        }
+        Tariff compiled = new Tariff(zoneNames, couponPercent == null ? tariff.getCouponPercent() : couponPercent, all);
+        tariff = compiled;
+        log.info("Tariff loaded with {} rule(s)", all.size());
+        return compiled;
+    }
+
+    /**
+     * Returns the current tariff.
+     *
+     * @return The tariff.
+     */
+    public Tariff getTariff() {
+        return tariff;
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * The RecordIdSet class is a set of rent record IDs kept as a bitmap split into fixed-size pages, allocated
+ * only for the ranges of IDs in use. Record IDs are dense, so the set costs about one bit per record, and
+ * it takes any long ID rather than stopping at Integer.MAX_VALUE. A set is used under its owner's lock.
+ */
+package com.example.demo.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+final class RecordIdSet {
+    private static final int PAGE_BITS = 16;
+    private static final int WORDS_PER_PAGE = (1 << PAGE_BITS) / Long.SIZE;
+
+    // Page number, the ID without its low PAGE_BITS bits -> the bits of the IDs of the page
+    private final Map<Long, long[]> pages = new HashMap<>();
+    private long size;
+
+    /**
+     * Adds an ID to the set.
+     *
+     * @param id The ID.
+     * @return false if the ID was already in the set.
+     */
+    boolean add(long id) {
+        long[] page = pages.computeIfAbsent(id >> PAGE_BITS, number -> new long[WORDS_PER_PAGE]);
+        int bit = (int) (id & ((1 << PAGE_BITS) - 1));
+        long mask = 1L << (bit & 63);
+        if ((page[bit >>> 6] & mask) != 0) {
+            return false;
+        }
+        page[bit >>> 6] |= mask;
+        size++;
+        return true;
+    }
+
+    /**
+     * Returns the number of IDs in the set.
+     *
+     * @return The size.
+     */
+    long size() {
+        return size;
+    }
+}
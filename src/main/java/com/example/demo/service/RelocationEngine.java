@@ -0,0 +1,194 @@
+/**
+ * The RelocationEngine class picks the spot a car is moved to after it has been charged.
+ * Positions are sampled directly inside the jitter window clipped to the geofence bounds, with a bounded
+ * number of attempts to land inside a zone and a fallback to the nearest cell fully inside one, so every
+ * call takes a bounded number of steps and allocates nothing.
+ * In random mode the car stays within JITTER degrees of where it was, as before. In least-covered mode
+ * it is moved into the grid cell of its own zone with the fewest available cars, scanning only the cells
+ * of that zone's bounding box.
+ * Random numbers come from ThreadLocalRandom, or from a SplittableRandom when relocation.seed is set
+ * so that relocations can be replayed.
+ */
+package com.example.demo.service;
+
+import com.example.demo.model.Car;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.random.RandomGenerator;
+
+@Component
+public class RelocationEngine {
+    // Edge length of the square a car is moved within in random mode
+    public static final double JITTER = 0.001;
+    // Samples drawn before falling back to a cell known to be inside the service area
+    private static final int MAX_ATTEMPTS = 8;
+
+    private final CarSpatialIndex carIndex;
+    private final Geofence geofence;
+    private final boolean leastCovered;
+    private final SplittableRandom seeded;
+    // SplittableRandom is not thread-safe
+    private final ReentrantLock seededLock = new ReentrantLock();
+
+    /**
+     * Creates a relocation engine.
+     *
+     * @param carIndex        The car index, used to find the least-covered cell.
+     * @param geofenceService The service area cars must stay in.
+     * @param mode            "random" to move cars close to where they are, "least-covered" to move them where cars are missing.
+     * @param seed            The seed making relocations reproducible, or empty for unseeded randomness.
+     */
+    @Autowired
+    public RelocationEngine(CarSpatialIndex carIndex, GeofenceService geofenceService,
+                            @Value("${relocation.mode:random}") String mode, @Value("${relocation.seed:}") Long seed) {
+        this.carIndex = carIndex;
+        this.geofence = geofenceService.getGeofence();
+        this.leastCovered = "least-covered".equalsIgnoreCase(mode);
+        this.seeded = seed == null ? null : new SplittableRandom(seed);
+    }
+
+    /**
+     * Moves a car to its new spot.
+     *
+     * @param car The car to move.
+     */
+    public void relocate(Car car) {
+        if (seeded == null) {
+            relocate(car, ThreadLocalRandom.current());
+            return;
+        }
+        seededLock.lock();
+        try {
+            relocate(car, seeded);
+        } finally {
+            seededLock.unlock();
+        }
+    }
+
+    private void relocate(Car car, RandomGenerator random) {
+        if (leastCovered && moveToLeastCoveredCell(car, random)) {
+            return;
+        }
+        double half = JITTER / 2;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            double lat = sample(car.getLat(), half, geofence.getMinLat(), geofence.getMaxLat(), random.nextDouble());
+            double lng = sample(car.getLng(), half, geofence.getMinLng(), geofence.getMaxLng(), random.nextDouble());
+            if (geofence.contains(lat, lng)) {
+                car.setLat(lat);
+                car.setLng(lng);
+                return;
+            }
+        }
+        int cell = geofence.nearestInsideCell(car.getLat(), car.getLng());
+        if (cell >= 0) {
+            car.setLat(geofence.cellLat(cell, random.nextDouble()));
+            car.setLng(geofence.cellLng(cell, random.nextDouble()));
+        }
+    }
+
+    private boolean moveToLeastCoveredCell(Car car, RandomGenerator random) {
+        int zoneIndex = geofence.zoneAt(car.getLat(), car.getLng());
+        if (zoneIndex < 0) {
+            // A car outside every zone goes to the zone closest to it
+            int cell = geofence.nearestInsideCell(car.getLat(), car.getLng());
+            zoneIndex = cell < 0 ? -1 : geofence.zoneAt(geofence.cellLat(cell, 0.5), geofence.cellLng(cell, 0.5));
+            if (zoneIndex < 0) {
+                return false;
+            }
+        }
+        Geofence.Zone zone = geofence.getZones().get(zoneIndex);
+        double minLat = zone.minLat();
+        double maxLat = zone.maxLat();
+        double minLng = zone.minLng();
+        double maxLng = zone.maxLng();
+        double cellSize = carIndex.getCellSize();
+        int minRow = carIndex.cellIndex(minLat);
+        int maxRow = carIndex.cellIndex(maxLat);
+        int minCol = carIndex.cellIndex(minLng);
+        int maxCol = carIndex.cellIndex(maxLng);
+        int bestRow = 0;
+        int bestCol = 0;
+        int bestCount = Integer.MAX_VALUE;
+        int ties = 0;
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                // Cells whose centre is outside the zone are not candidates
+                if (geofence.zoneAt(centre(row, cellSize, minLat, maxLat), centre(col, cellSize, minLng, maxLng)) != zoneIndex) {
+                    continue;
+                }
+                int count = carIndex.availableCount(CarSpatialIndex.key(row, col));
+                if (count < bestCount) {
+                    bestCount = count;
+                    bestRow = row;
+                    bestCol = col;
+                    ties = 1;
+                } else if (count == bestCount && random.nextInt(++ties) == 0) {
+                    // Reservoir sampling spreads cars over equally empty cells
+                    bestRow = row;
+                    bestCol = col;
+                }
+            }
+        }
+        if (bestCount == Integer.MAX_VALUE) {
+            return false;
+        }
+        double south = Math.max(minLat, bestRow * cellSize);
+        double north = Math.min(maxLat, (bestRow + 1) * cellSize);
+        double west = Math.max(minLng, bestCol * cellSize);
+        double east = Math.min(maxLng, (bestCol + 1) * cellSize);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            double lat = sampleRange(south, north, random.nextDouble());
+            double lng = sampleRange(west, east, random.nextDouble());
+            if (geofence.zoneAt(lat, lng) == zoneIndex) {
+                car.setLat(lat);
+                car.setLng(lng);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the centre of a grid cell clipped to [min, max].
+     */
+    private static double centre(int index, double cellSize, double min, double max) {
+        return (Math.max(min, index * cellSize) + Math.min(max, (index + 1) * cellSize)) / 2;
+    }
+
+    /**
+     * Samples a coordinate uniformly within half on either side of center, clipped to [min, max].
+     * When the window lies entirely outside [min, max], a window of the same width at the nearest edge is used.
+     *
+     * @param center The current coordinate.
+     * @param half   Half the width of the window.
+     * @param min    The lowest allowed coordinate.
+     * @param max    The highest allowed coordinate.
+     * @param u      A uniform random number in [0, 1).
+     * @return The sampled coordinate, always within [min, max].
+     */
+    static double sample(double center, double half, double min, double max, double u) {
+        double low = Math.max(min, center - half);
+        double high = Math.min(max, center + half);
+        if (low > high) {
+            if (center < min) {
+                low = min;
+                high = Math.min(max, min + 2 * half);
+            } else {
+                low = Math.max(min, max - 2 * half);
+                high = max;
+            }
+        }
+        return sampleRange(low, high, u);
+    }
+
+    private static double sampleRange(double low, double high, double u) {
+        double value = low + u * (high - low);
+        // Guards against rounding past the upper bound
+        return Math.min(value, high);
+    }
+}
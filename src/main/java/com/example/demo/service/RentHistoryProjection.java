@@ -0,0 +1,99 @@
+/**
+ * The RentHistoryProjection class is the latest rides of every renter, built from the event log.
+ * A ride is listed from the event that started it and completed by the event that ended it. Only the
+ * latest rides of each renter are kept, so the projection stays bounded however long the log grows.
+ */
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class RentHistoryProjection implements EventProjector {
+    private final Map<Long, List<Ride>> rides = new ConcurrentHashMap<>();
+
+    @Value("${events.history-per-user:100}")
+    private int maxRides = 100;
+
+    @Override
+    public void apply(RentalEvent event) {
+        switch (event.type()) {
+            case RENT -> rides.compute(event.userId(), (id, list) -> append(list, new Ride(event.recordId(), event.carNo(),
+                    event.lat(), event.lng(), event.timestamp(), null, null, null, 0, 0, 0, false)));
+            case RETURN -> rides.computeIfPresent(event.userId(), (id, list) -> complete(list, event));
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        rides.clear();
+    }
+
+    /**
+     * Retrieves the latest rides of a renter, latest first.
+     *
+     * @param userId The user ID.
+     * @return The rides, empty if the renter has no events.
+     */
+    public List<Ride> find(Long userId) {
+        List<Ride> list = rides.get(userId);
+        if (list == null) {
+            return List.of();
+        }
+        List<Ride> latestFirst = new ArrayList<>(list);
+        Collections.reverse(latestFirst);
+        return latestFirst;
+    }
+
+    // Lists are replaced rather than changed, so readers always see a complete list
+    private List<Ride> append(List<Ride> list, Ride ride) {
+        List<Ride> next = new ArrayList<>(list == null ? List.of() : list);
+        next.add(ride);
+        if (next.size() > maxRides) {
+            next.remove(0);
+        }
+        return List.copyOf(next);
+    }
+
+    private static List<Ride> complete(List<Ride> list, RentalEvent event) {
+        List<Ride> next = new ArrayList<>(list);
+        for (int i = next.size() - 1; i >= 0; i--) {
+            Ride ride = next.get(i);
+            if (ride.recordId() == event.recordId()) {
+                next.set(i, new Ride(ride.recordId(), ride.carNo(), ride.startLat(), ride.startLng(), ride.startTime(),
+                        event.lat(), event.lng(), event.timestamp(), event.distance(), event.totalMinutes(), event.bill(),
+                        event.usedCoupon()));
+                return List.copyOf(next);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * A ride of a renter. The end fields are null while the ride is going on.
+     *
+     * @param recordId     The rent record of the ride.
+     * @param carNo        The car.
+     * @param startLat     The latitude the ride started at.
+     * @param startLng     The longitude the ride started at.
+     * @param startTime    The start time in epoch milliseconds.
+     * @param endLat       The latitude the ride ended at.
+     * @param endLng       The longitude the ride ended at.
+     * @param endTime      The end time in epoch milliseconds.
+     * @param distance     The distance traveled.
+     * @param totalMinutes The duration in minutes.
+     * @param bill         The bill.
+     * @param usedCoupon   Whether a coupon was used.
+     */
+    public record Ride(long recordId, String carNo, double startLat, double startLng, long startTime, Double endLat,
+                       Double endLng, Long endTime, double distance, long totalMinutes, int bill, boolean usedCoupon) {
+    }
+}
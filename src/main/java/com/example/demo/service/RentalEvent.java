@@ -0,0 +1,142 @@
+/**
+ * The RentalEvent class is one change of the fleet as written to the event log: a car rented, returned,
+ * charged or given a new status. Every event carries the state the change left behind, so a projection
+ * can be built from the events alone. Events are encoded in a compact fixed binary layout.
+ */
+package com.example.demo.service;
+
+import com.example.demo.model.CarStatus;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public record RentalEvent(long sequence, Type type, long timestamp, long userId, String carNo, long recordId,
+                          double lat, double lng, int power, CarStatus carStatus, double distance, long totalMinutes,
+                          int bill, int chargeCount, boolean usedCoupon) {
+    // Stands for "none" in the user and record fields
+    public static final long NONE = -1;
+    private static final CarStatus[] STATUSES = CarStatus.values();
+    private static final int FIXED_SIZE = 1 + 8 + 8 + 8 + 8 + 8 + 4 + 1 + 8 + 8 + 4 + 4 + 1 + 2;
+
+    public enum Type {
+        RENT, RETURN, CHARGE, STATUS
+    }
+
+    /**
+     * Creates the event of a car rented by a user.
+     *
+     * @param userId    The renter.
+     * @param carNo     The car number.
+     * @param recordId  The rent record opened for the ride.
+     * @param lat       The latitude the ride starts at.
+     * @param lng       The longitude the ride starts at.
+     * @param timestamp The start time in epoch milliseconds.
+     * @return The event.
+     */
+    public static RentalEvent rented(long userId, String carNo, long recordId, double lat, double lng, long timestamp) {
+        return new RentalEvent(NONE, Type.RENT, timestamp, userId, carNo, recordId, lat, lng, 0, null, 0, 0, 0, 0, false);
+    }
+
+    /**
+     * Creates the event of a car returned and paid for.
+     *
+     * @param userId       The renter.
+     * @param carNo        The car number.
+     * @param recordId     The rent record closed by the return.
+     * @param lat          The latitude of the return location.
+     * @param lng          The longitude of the return location.
+     * @param power        The power level of the car.
+     * @param distance     The distance traveled.
+     * @param totalMinutes The duration of the ride in minutes.
+     * @param bill         The bill.
+     * @param chargeCount  The number of times the car was charged.
+     * @param usedCoupon   Whether a coupon was used.
+     * @param timestamp    The end time in epoch milliseconds.
+     * @return The event.
+     */
+    public static RentalEvent returned(long userId, String carNo, long recordId, double lat, double lng, int power,
+                                       double distance, long totalMinutes, int bill, int chargeCount, boolean usedCoupon,
+                                       long timestamp) {
+        return new RentalEvent(NONE, Type.RETURN, timestamp, userId, carNo, recordId, lat, lng, power, null, distance,
+                totalMinutes, bill, chargeCount, usedCoupon);
+    }
+
+    /**
+     * Creates the event of a car charged and moved by a repairer.
+     *
+     * @param carNo     The car number.
+     * @param lat       The latitude the car was moved to.
+     * @param lng       The longitude the car was moved to.
+     * @param power     The power level of the car.
+     * @param timestamp The time of the charge in epoch milliseconds.
+     * @return The event.
+     */
+    public static RentalEvent charged(String carNo, double lat, double lng, int power, long timestamp) {
+        return new RentalEvent(NONE, Type.CHARGE, timestamp, NONE, carNo, NONE, lat, lng, power, null, 0, 0, 0, 0, false);
+    }
+
+    /**
+     * Creates the event of a car given a new status.
+     *
+     * @param carNo     The car number.
+     * @param status    The new status.
+     * @param timestamp The time of the change in epoch milliseconds.
+     * @return The event.
+     */
+    public static RentalEvent statusChanged(String carNo, CarStatus status, long timestamp) {
+        return new RentalEvent(NONE, Type.STATUS, timestamp, NONE, carNo, NONE, 0, 0, 0, status, 0, 0, 0, 0, false);
+    }
+
+    /**
+     * Encodes the event without its sequence number, which the log stores itself.
+     *
+     * @return The encoded event.
+     */
+    public byte[] encode() {
+        byte[] no = carNo.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(FIXED_SIZE + no.length);
+        buffer.put((byte) type.ordinal())
+                .putLong(timestamp)
+                .putLong(userId)
+                .putLong(recordId)
+                .putDouble(lat)
+                .putDouble(lng)
+                .putInt(power)
+                .put((byte) (carStatus == null ? -1 : carStatus.ordinal()))
+                .putDouble(distance)
+                .putLong(totalMinutes)
+                .putInt(bill)
+                .putInt(chargeCount)
+                .put((byte) (usedCoupon ? 1 : 0))
+                .putShort((short) no.length)
+                .put(no);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes an event written by encode.
+     *
+     * @param sequence The sequence number the log assigned to the event.
+     * @param buffer   The encoded event.
+     * @return The event.
+     */
+    public static RentalEvent decode(long sequence, ByteBuffer buffer) {
+        Type type = Type.values()[buffer.get()];
+        long timestamp = buffer.getLong();
+        long userId = buffer.getLong();
+        long recordId = buffer.getLong();
+        double lat = buffer.getDouble();
+        double lng = buffer.getDouble();
+        int power = buffer.getInt();
+        byte status = buffer.get();
+        double distance = buffer.getDouble();
+        long totalMinutes = buffer.getLong();
+        int bill = buffer.getInt();
+        int chargeCount = buffer.getInt();
+        boolean usedCoupon = buffer.get() == 1;
+        byte[] no = new byte[buffer.getShort()];
+        buffer.get(no);
+        return new RentalEvent(sequence, type, timestamp, userId, new String(no, StandardCharsets.UTF_8), recordId, lat, lng,
+                power, status < 0 ? null : STATUSES[status], distance, totalMinutes, bill, chargeCount, usedCoupon);
+    }
+}
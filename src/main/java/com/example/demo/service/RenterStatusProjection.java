@@ -0,0 +1,50 @@
+/**
+ * The RenterStatusProjection class is the current rental status of every renter, built from the event log.
+ */
+package com.example.demo.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class RenterStatusProjection implements EventProjector {
+    private final Map<Long, Status> statuses = new ConcurrentHashMap<>();
+
+    @Override
+    public void apply(RentalEvent event) {
+        switch (event.type()) {
+            case RENT -> statuses.put(event.userId(), new Status(true, event.carNo(), event.recordId(), event.timestamp()));
+            case RETURN -> statuses.put(event.userId(), new Status(false, null, null, event.timestamp()));
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        statuses.clear();
+    }
+
+    /**
+     * Retrieves the rental status of a renter.
+     *
+     * @param userId The user ID.
+     * @return The status, or null if the renter has no events.
+     */
+    public Status find(Long userId) {
+        return statuses.get(userId);
+    }
+
+    /**
+     * The rental status of a renter.
+     *
+     * @param renting  Whether the renter is riding a car.
+     * @param carNo    The car being ridden, or null.
+     * @param recordId The rent record of the ride, or null.
+     * @param since    When the status began, in epoch milliseconds.
+     */
+    public record Status(boolean renting, String carNo, Long recordId, long since) {
+    }
+}
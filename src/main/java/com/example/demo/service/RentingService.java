@@ -10,24 +10,62 @@ import com.example.demo.repository.CarRepository;
 import com.example.demo.repository.ChargeStationRepository;
 import com.example.demo.repository.RentRecordRepository;
 import com.example.demo.repository.RenterRepository;
+import io.micrometer.observation.annotation.Observed;
 import org.springframework.beans.factory.annotation.Autowired;
+import com.example.demo.response.RecordPageResponse;
+import com.example.demo.response.RentSummary;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.query.Param;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import com.example.demo.service.distance;
 
 @Service
 public class RentingService {
+    private static final int MAX_RECORD_PAGE = 100;
+    private static final Base64.Encoder CURSOR_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder CURSOR_DECODER = Base64.getUrlDecoder();
+
     @Autowired
     private RenterRepository renterRepo;
     @Autowired
     private CarRepository carRepo;
     @Autowired
     private RentRecordRepository rentRecordRepo;
+    @Autowired
+    private CarSpatialIndex carIndex;
+    @Autowired
+    private EntityCache entityCache;
+    @Autowired
+    private ServiceMetrics metrics;
+    @Autowired
+    private CarLockManager carLocks;
+    @Autowired
+    private CarWriteBehind writeBehind;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private PricingEngine pricingEngine;
+    @Autowired
+    private EventLog eventLog;
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
     /**
      * Finds and returns the renter with the specified user ID.
@@ -36,7 +74,7 @@ public class RentingService {
      * @return The found renter, or null if not found.
      */
     public Renter findRenter(Long userId) {
-        return renterRepo.findByUserId(userId);
+        return entityCache.getRenter(userId, renterRepo::findByUserId);
     }
 
     /**
@@ -49,6 +87,64 @@ public class RentingService {
         return rentRecordRepo.findById(userId);
     }
 
+    /**
+     * Retrieves one page of the rent records of the specified user, latest first.
+     * Pages are addressed by the start time and ID of the last record of the previous page, so every
+     * page is a range scan of the (userid, start_time, id) index however far back it is.
+     *
+     * @param userId The user ID.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param size   The maximum number of records on the page.
+     * @return The page of rent records and the cursor of the next page, which is null on the last page.
+     * @throws IllegalArgumentException If the cursor is malformed.
+     */
+    public RecordPageResponse getRentRecordPage(Long userId, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_RECORD_PAGE));
+        // One extra record tells whether there is a next page without counting
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<RentRecord> records;
+        if (cursor == null || cursor.isEmpty()) {
+            records = rentRecordRepo.findLatest(userId, limit);
+        } else {
+            String[] position = decodeCursor(cursor);
+            try {
+                records = rentRecordRepo.findBefore(userId, LocalDateTime.parse(position[0]), Long.valueOf(position[1]), limit);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+        if (records.size() <= pageSize) {
+            return new RecordPageResponse(records, null);
+        }
+        records = records.subList(0, pageSize);
+        RentRecord last = records.get(pageSize - 1);
+        String next = CURSOR_ENCODER.encodeToString((last.getStartTime() + "|" + last.getId()).getBytes(StandardCharsets.UTF_8));
+        return new RecordPageResponse(records, next);
+    }
+
+    /**
+     * Retrieves the number of finished rents of the specified user with their total bill, distance and minutes.
+     *
+     * @param userId The user ID.
+     * @return The totals, computed by the database.
+     */
+    public RentSummary getRentSummary(Long userId) {
+        return rentRecordRepo.summarize(userId);
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        String[] position;
+        try {
+            position = new String(CURSOR_DECODER.decode(cursor), StandardCharsets.UTF_8).split("\\|");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        if (position.length != 2) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return position;
+    }
+
     /**
      * Creates a new renter with the specified user ID.
      *
@@ -57,46 +153,87 @@ public class RentingService {
     public void createRenter(Long userId) {
         Renter user = new Renter();
         user.setUserId(userId);
-        renterRepo.save(user);
+        entityCache.putRenter(renterRepo.save(user));
     }
 
     /**
      * Rent a car for the specified user.
+     * The car is claimed with a conditional update, so exactly one of several renters racing for it wins.
+     * The claim, the rent record and the renter are written in one transaction, and the version check on
+     * the renter rejects a concurrent second rent by the same user.
      *
      * @param car  The car to rent.
      * @param user The renter.
+     * @return true if the car was rented, false if it was already in use.
      */
-    public void rent(Car car, Renter user) {
-        user.setCurrentCar(car);
-        RentRecord current_renting_record = new RentRecord();
-        current_renting_record.setStartTime(LocalDateTime.now());
-        current_renting_record.setStart_lng(car.getLng());
-        current_renting_record.setStart_lat(car.getLat());
-        current_renting_record.setUserid(user.getUserId());
-        user.setCurrentRenting(current_renting_record);
+    @Observed(name = "renting.rent", contextualName = "rent")
+    public boolean rent(Car car, Renter user) {
+        Renter saved;
+        try {
+            saved = carLocks.withLock(car.getNo(), () -> {
+                // A return still waiting to be written would make the claim fail
+                writeBehind.flush(car.getNo());
+                Renter rented = transactionTemplate.execute(status -> {
+                    if (carRepo.claim(car.getNo()) == 0) {
+                        return null;
+                    }
+                    RentRecord current_renting_record = new RentRecord();
+                    current_renting_record.setStartTime(LocalDateTime.now());
+                    current_renting_record.setStart_lng(car.getLng());
+                    current_renting_record.setStart_lat(car.getLat());
+                    current_renting_record.setUserid(user.getUserId());
+                    rentRecordRepo.save(current_renting_record);
+                    user.setCurrentCar(car);
+                    user.setCurrentRenting(current_renting_record);
+                    user.setRenting(true);
+                    return renterRepo.save(user);
+                });
+                if (rented != null) {
+                    // Appended under the car lock, so the events of a car are logged in the order they committed
+                    RentRecord record = rented.getCurrentRenting();
+                    eventLog.append(RentalEvent.rented(user.getUserId(), car.getNo(), record.getId(), car.getLat(),
+                            car.getLng(), epochMillis(record.getStartTime())));
+                }
+                return rented;
+            });
+        } catch (RuntimeException e) {
+            // The renter may have been modified by the rolled back transaction
+            entityCache.evictRenter(user.getUserId());
+            throw e;
+        }
+        if (saved == null) {
+            carLocks.recordConflict(car.getNo());
+            entityCache.evictCar(car.getNo());
+            return false;
+        }
+        // Cached after the commit, which is when the new version number is assigned
+        entityCache.putRenter(saved);
+        // The claim bypassed the persistence context, so the cached copy is stale
+        entityCache.evictCar(car.getNo());
         car.setRiding(true);
-        user.setRenting(true);
-        rentRecordRepo.save(current_renting_record);
-        renterRepo.save(user);
+        carIndex.update(car);
+        return true;
     }
 
     /**
-     * Calculates the bill based on the distance traveled and whether a coupon was used.
+     * Calculates the bill of a ride with the current tariff, from the zone and hour the ride started in.
      *
-     * @param distance   The distance traveled.
-     * @param usedCoupon Whether a coupon was used.
+     * @param record       The rent record of the ride.
+     * @param distance     The distance traveled.
+     * @param totalMinutes The duration of the ride in minutes.
+     * @param usedCoupon   Whether a coupon was used.
      * @return The calculated bill amount.
      */
-    public int getBill(double distance, boolean usedCoupon) {
-        int bill = (int) distance * 3;
-        if (usedCoupon) {
-            bill = (int) (bill * 0.9);
-        }
-        return bill;
+    public int getBill(RentRecord record, double distance, long totalMinutes, boolean usedCoupon) {
+        return pricingEngine.bill(record.getStartTime(), record.getStart_lat(), record.getStart_lng(), distance, totalMinutes, usedCoupon);
     }
 
     /**
      * Returns the rented car and completes the payment for the rent.
+     * The coupons, the rent record, the renter and the car are written in one transaction with conditional
+     * updates that need no reads first. A renter or car changed since it was read fails the return with an
+     * optimistic locking failure, and nothing is written. With write-behind enabled the car is written
+     * afterwards in a batch with other returned cars.
      *
      * @param user        The renter.
      * @param distance    The distance traveled.
@@ -105,29 +242,81 @@ public class RentingService {
      * @param usedCoupon  Whether a coupon was used.
      * @param power       The power level of the car.
      * @param chargeCount The number of times the car was charged.
+     * @return true if the car was returned, false if a coupon was used but the user has none left.
      */
-    public void returnAndPay(Renter user, double distance, double lat, double lng, boolean usedCoupon, int power, int chargeCount) {
-        // End rent
+    @Observed(name = "renting.return", contextualName = "return")
+    public boolean returnAndPay(Renter user, double distance, double lat, double lng, boolean usedCoupon, int power, int chargeCount) {
         RentRecord current_renting_record = user.getCurrentRenting();
-        current_renting_record.setEndTime(LocalDateTime.now());
-        current_renting_record.setEnd_lat(lat);
-        current_renting_record.setEnd_lng(lng);
-        current_renting_record.setDistance(distance);
-        Duration duration = Duration.between(current_renting_record.getStartTime(), current_renting_record.getEndTime());
-        current_renting_record.setTotalMinutes(duration.toMinutes());
-        current_renting_record.setBill(getBill(distance, usedCoupon));
-        current_renting_record.setChargeCount(chargeCount);
-        // Return
-        rentRecordRepo.save(current_renting_record);
+        // Read the latest car rather than the copy held by the renter, which may predate a status change
+        String no = user.getCurrentCar().getNo();
+        Car car;
+        try {
+            car = carLocks.withLock(no, () -> {
+                Car latest = entityCache.getCar(no, carRepo::findByNo);
+                LocalDateTime endTime = LocalDateTime.now();
+                long totalMinutes = Duration.between(current_renting_record.getStartTime(), endTime).toMinutes();
+                int bill = getBill(current_renting_record, distance, totalMinutes, usedCoupon);
+                Boolean returned = transactionTemplate.execute(status -> {
+                    if (!accountService.applyCoupons(user.getUserId(), usedCoupon ? 1 : 0, chargeCount)) {
+                        status.setRollbackOnly();
+                        return false;
+                    }
+                    rentRecordRepo.close(current_renting_record.getId(), endTime, lat, lng, distance, totalMinutes,
+                            bill, chargeCount, usedCoupon);
+                    if (renterRepo.endRenting(user.getUserId(), versionOf(user.getVersion())) == 0) {
+                        throw new ObjectOptimisticLockingFailureException(Renter.class, user.getUserId());
+                    }
+                    if (writeBehind.isEnabled()) {
+                        return true;
+                    }
+                    if (carRepo.release(no, lat, lng, power, versionOf(latest.getVersion())) == 0) {
+                        throw new ObjectOptimisticLockingFailureException(Car.class, no);
+                    }
+                    return true;
+                });
+                if (!Boolean.TRUE.equals(returned)) {
+                    return null;
+                }
+                if (writeBehind.isEnabled()) {
+                    writeBehind.release(no, lat, lng, power, versionOf(latest.getVersion()));
+                }
+                eventLog.append(RentalEvent.returned(user.getUserId(), no, current_renting_record.getId(), lat, lng, power,
+                        distance, totalMinutes, bill, chargeCount, usedCoupon, epochMillis(endTime)));
+                latest.setLat(lat);
+                latest.setLng(lng);
+                latest.setPower(power);
+                latest.setRiding(false);
+                latest.setVersion(versionOf(latest.getVersion()) + 1);
+                return latest;
+            });
+        } catch (RuntimeException e) {
+            entityCache.evictRenter(user.getUserId());
+            entityCache.evictCar(no);
+            throw e;
+        }
+        if (car == null) {
+            return false;
+        }
+        if (usedCoupon) {
+            metrics.couponsUsed(1);
+        }
+        // The updates bypassed the persistence context, so the cached copies are brought up to date by hand
         user.setCurrentRenting(null);
         user.setRenting(false);
-        Car car = user.getCurrentCar();
-        car.setLat(lat);
-        car.setLng(lng);
-        car.setPower(power);
-        car.setRiding(false);
         user.setCurrentCar(null);
-        renterRepo.save(user);
-        carRepo.save(car);
+        user.setVersion(versionOf(user.getVersion()) + 1);
+        entityCache.putRenter(user);
+        entityCache.evictUser(user.getUserId());
+        entityCache.putCar(car);
+        carIndex.update(car);
+        return true;
+    }
+
+    private static long epochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static long versionOf(Long version) {
+        return version == null ? 0 : version;
     }
 }
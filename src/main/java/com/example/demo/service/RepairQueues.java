@@ -0,0 +1,203 @@
+/**
+ * The RepairQueues class keeps the fleet sorted into work queues for repairers, by status and by power level.
+ * Every car sits in exactly one bucket per (status, power) pair, and the buckets are updated incrementally
+ * from the changes of the car index, so queues and their counts are read without touching the database.
+ * A page is served by skipping whole buckets by their size and sorting only the buckets the page overlaps.
+ */
+package com.example.demo.service;
+
+import com.example.demo.model.Car;
+import com.example.demo.model.CarStatus;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class RepairQueues {
+    public static final int MAX_POWER = 100;
+    // Cars at or below this power level count as having no power
+    public static final int NO_POWER_LEVEL = 20;
+    private static final int COUNT_BUCKET_WIDTH = 10;
+    private static final CarStatus[] STATUSES = CarStatus.values();
+
+    @Autowired
+    private CarSpatialIndex carIndex;
+    // [status][power] -> cars by number
+    private final Map<String, Car>[][] buckets;
+
+    @SuppressWarnings("unchecked")
+    public RepairQueues() {
+        buckets = new Map[STATUSES.length][MAX_POWER + 1];
+        for (Map<String, Car>[] byPower : buckets) {
+            for (int power = 0; power <= MAX_POWER; power++) {
+                byPower[power] = new ConcurrentHashMap<>();
+            }
+        }
+    }
+
+    @PostConstruct
+    public void register() {
+        carIndex.addListener(this::onChange);
+    }
+
+    /**
+     * Replaces the content of the queues with the given cars.
+     *
+     * @param fleet The cars to queue.
+     */
+    public void load(Iterable<Car> fleet) {
+        for (Map<String, Car>[] byPower : buckets) {
+            for (Map<String, Car> bucket : byPower) {
+                bucket.clear();
+            }
+        }
+        for (Car car : fleet) {
+            onChange(null, car);
+        }
+    }
+
+    private void onChange(Car previous, Car current) {
+        if (previous != null && previous.getCarStatus() != null) {
+            bucket(previous).remove(previous.getNo());
+        }
+        if (current.getCarStatus() != null) {
+            bucket(current).put(current.getNo(), current);
+        }
+    }
+
+    /**
+     * Retrieves one page of the cars at or below a power level, lowest power first.
+     * Cars with the same power are ordered by distance from the given position, or by car number without one.
+     *
+     * @param maxPower  The highest power level to include.
+     * @param latitude  The latitude of the repairer, or null.
+     * @param longitude The longitude of the repairer, or null.
+     * @param page      The zero-based page number.
+     * @param size      The page size.
+     * @return The cars of the page.
+     */
+    public List<Car> lowPower(int maxPower, Double latitude, Double longitude, int page, int size) {
+        return page(STATUSES, maxPower, latitude, longitude, page, size);
+    }
+
+    /**
+     * Retrieves one page of the cars with a status, lowest power first.
+     * Cars with the same power are ordered by distance from the given position, or by car number without one.
+     *
+     * @param status    The car status.
+     * @param latitude  The latitude of the repairer, or null.
+     * @param longitude The longitude of the repairer, or null.
+     * @param page      The zero-based page number.
+     * @param size      The page size.
+     * @return The cars of the page.
+     */
+    public List<Car> byStatus(CarStatus status, Double latitude, Double longitude, int page, int size) {
+        return page(new CarStatus[]{status}, MAX_POWER, latitude, longitude, page, size);
+    }
+
+    /**
+     * Retrieves every car at or below a power level, lowest power first.
+     *
+     * @param maxPower The highest power level to include.
+     * @return The cars.
+     */
+    public List<Car> allLowPower(int maxPower) {
+        return page(STATUSES, maxPower, null, null, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retrieves every car with a status, lowest power first.
+     *
+     * @param status The car status.
+     * @return The cars.
+     */
+    public List<Car> allByStatus(CarStatus status) {
+        return page(new CarStatus[]{status}, MAX_POWER, null, null, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the live number of cars of any status at or below a power level.
+     *
+     * @param maxPower The highest power level counted.
+     * @return The number of cars.
+     */
+    public int lowPowerCount(int maxPower) {
+        int count = 0;
+        for (Map<String, Car>[] byPower : buckets) {
+            for (int power = 0; power <= Math.min(maxPower, MAX_POWER); power++) {
+                count += byPower[power].size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the live number of cars per status and per power range.
+     *
+     * @return The counts by status and by power range of ten levels.
+     */
+    public Map<String, Object> counts() {
+        Map<String, Integer> byStatus = new LinkedHashMap<>();
+        int[] byPowerRange = new int[MAX_POWER / COUNT_BUCKET_WIDTH + 1];
+        for (CarStatus status : STATUSES) {
+            int total = 0;
+            for (int power = 0; power <= MAX_POWER; power++) {
+                int size = buckets[status.ordinal()][power].size();
+                total += size;
+                byPowerRange[power / COUNT_BUCKET_WIDTH] += size;
+            }
+            byStatus.put(status.name(), total);
+        }
+        Map<String, Integer> byPower = new LinkedHashMap<>();
+        for (int range = 0; range < byPowerRange.length; range++) {
+            int low = range * COUNT_BUCKET_WIDTH;
+            int high = Math.min(MAX_POWER, low + COUNT_BUCKET_WIDTH - 1);
+            byPower.put(low == high ? String.valueOf(low) : low + "-" + high, byPowerRange[range]);
+        }
+        Map<String, Object> counts = new LinkedHashMap<>();
+        counts.put("byStatus", byStatus);
+        counts.put("byPower", byPower);
+        return counts;
+    }
+
+    private List<Car> page(CarStatus[] statuses, int maxPower, Double latitude, Double longitude, int page, int size) {
+        List<Car> result = new ArrayList<>();
+        if (page < 0 || size <= 0) {
+            return result;
+        }
+        long skip = (long) page * size;
+        Comparator<Car> order = latitude == null || longitude == null
+                ? Comparator.comparing(Car::getNo)
+                : Comparator.comparingDouble(car -> distance.haversine(latitude, longitude, car.getLat(), car.getLng()));
+        for (int power = 0; power <= Math.min(maxPower, MAX_POWER) && result.size() < size; power++) {
+            int bucketSize = 0;
+            for (CarStatus status : statuses) {
+                bucketSize += buckets[status.ordinal()][power].size();
+            }
+            if (skip >= bucketSize) {
+                skip -= bucketSize;
+                continue;
+            }
+            List<Car> level = new ArrayList<>(bucketSize);
+            for (CarStatus status : statuses) {
+                level.addAll(buckets[status.ordinal()][power].values());
+            }
+            level.sort(order);
+            int from = (int) Math.min(skip, level.size());
+            skip = 0;
+            result.addAll(level.subList(from, Math.min(level.size(), from + size - result.size())));
+        }
+        return result;
+    }
+
+    private Map<String, Car> bucket(Car car) {
+        return buckets[car.getCarStatus().ordinal()][Math.max(0, Math.min(MAX_POWER, car.getPower()))];
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * The ServiceMetrics class publishes the business counters and gauges of the service through Micrometer.
+ * Gauges read the in-memory structures when metrics are scraped, so they cost nothing on the request path,
+ * and the double-rent conflicts and session lookups are read from the counters their components already keep.
+ */
+package com.example.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ServiceMetrics {
+    private final Counter loginFailures;
+    private final Counter tokenFailures;
+    private final Counter couponsUsed;
+
+    /**
+     * Registers the meters.
+     *
+     * @param registry     The meter registry.
+     * @param sessionStore The session store, whose live sessions, lookups and removals are measured.
+     * @param carIndex     The car index, whose riding cars are measured.
+     * @param repairQueues The repair queues, whose cars with no power are measured.
+     * @param carLocks     The car locks, whose double-rent conflicts are counted.
+     * @param idempotency  The idempotency cache, whose replayed attempts are counted.
+     */
+    @Autowired
+    public ServiceMetrics(MeterRegistry registry, SessionStore sessionStore, CarSpatialIndex carIndex,
+                          RepairQueues repairQueues, CarLockManager carLocks, IdempotencyCache idempotency) {
+        this.loginFailures = Counter.builder("auth.failures")
+                .description("Rejected logins and requests with an invalid token")
+                .tag("reason", "login")
+                .register(registry);
+        this.tokenFailures = Counter.builder("auth.failures")
+                .description("Rejected logins and requests with an invalid token")
+                .tag("reason", "token")
+                .register(registry);
+        this.couponsUsed = Counter.builder("coupons.used")
+                .description("Coupons spent on returned rides")
+                .register(registry);
+        FunctionCounter.builder("renting.conflicts", carLocks, CarLockManager::getConflictCount)
+                .description("Rents that lost the race for a car to another renter")
+                .register(registry);
+        FunctionCounter.builder("idempotency.replays", idempotency, IdempotencyCache::getReplayCount)
+                .description("Retried rents and returns answered with the result of the first attempt")
+                .register(registry);
+        FunctionCounter.builder("sessions.lookups", sessionStore, SessionStore::getHitCount)
+                .description("Token checks against the session store")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("sessions.lookups", sessionStore, SessionStore::getMissCount)
+                .description("Token checks against the session store")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("sessions.removed", sessionStore, SessionStore::getExpirationCount)
+                .description("Sessions dropped without a logout")
+                .tag("cause", "expired")
+                .register(registry);
+        FunctionCounter.builder("sessions.removed", sessionStore, SessionStore::getEvictionCount)
+                .description("Sessions dropped without a logout")
+                .tag("cause", "evicted")
+                .register(registry);
+        Gauge.builder("sessions.live", sessionStore, SessionStore::size)
+                .description("Sessions held by this instance, including expired ones not yet swept")
+                .register(registry);
+        Gauge.builder("cars.riding", carIndex, CarSpatialIndex::ridingCount)
+                .description("Cars being ridden")
+                .register(registry);
+        Gauge.builder("cars.low.power", repairQueues, queues -> queues.lowPowerCount(RepairQueues.NO_POWER_LEVEL))
+                .description("Cars at or below the no-power level")
+                .register(registry);
+    }
+
+    /**
+     * Counts a login rejected for an unknown user or a wrong password.
+     */
+    public void loginFailed() {
+        loginFailures.increment();
+    }
+
+    /**
+     * Counts a request rejected for a missing or invalid token.
+     */
+    public void tokenRejected() {
+        tokenFailures.increment();
+    }
+
+    /**
+     * Counts spent coupons.
+     *
+     * @param count The number of coupons spent.
+     */
+    public void couponsUsed(int count) {
+        couponsUsed.increment(count);
+    }
+}
@@ -0,0 +1,301 @@
+/**
+ * The SessionStore class keeps the authentication token of every logged-in user.
+ * Lookups are lock-free reads of a ConcurrentHashMap; sessions expire after a fixed time to live
+ * or after a period of inactivity, are swept in the background, and the store is bounded in size.
+ * When the store is full, a login evicts a session chosen by the CLOCK algorithm: sessions wait in a queue
+ * in login order, and the one at its head is dropped unless it was used since its last visit, in which case
+ * it goes back to the tail. This approximates least recently used in constant amortized time, and leaves
+ * the read path untouched.
+ */
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+@Component
+public class SessionStore {
+    // Last-access timestamps are only rewritten when they are older than this, to keep hot reads from bouncing cache lines
+    private static final long TOUCH_GRANULARITY_MILLIS = 1000;
+
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final long idleTimeoutMillis;
+    private final int maxSize;
+    private final LongSupplier clock;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    // Guarded by evictionLock: the user IDs in the order the eviction visits them, with IDs of removed sessions left until visited
+    private final LinkedHashSet<Long> evictionQueue = new LinkedHashSet<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a session store.
+     *
+     * @param ttl         The maximum lifetime of a session.
+     * @param idleTimeout The maximum time a session may stay unused.
+     * @param maxSize     The maximum number of live sessions.
+     */
+    @Autowired
+    public SessionStore(@Value("${account.session.ttl:PT12H}") Duration ttl,
+                        @Value("${account.session.idle-timeout:PT2H}") Duration idleTimeout,
+                        @Value("${account.session.max-size:100000}") int maxSize) {
+        this(ttl, idleTimeout, maxSize, System::currentTimeMillis);
+    }
+
+    SessionStore(Duration ttl, Duration idleTimeout, int maxSize, LongSupplier clock) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be positive");
+        }
+        this.ttlMillis = ttl.toMillis();
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.maxSize = maxSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the token of the user's live session, creating a session if there is none.
+     *
+     * @param userID The user ID.
+     * @return The authentication token.
+     */
+    public String login(Long userID) {
+        return login(userID, null);
+    }
+
+    /**
+     * Returns the token of the user's live session, creating a session if there is none,
+     * and remembers the role of the user so that role checks need no database read.
+     *
+     * @param userID   The user ID.
+     * @param isRenter Whether the user is a renter, or null if unknown.
+     * @return The authentication token.
+     */
+    public String login(Long userID, Boolean isRenter) {
+        long now = clock.getAsLong();
+        // Generated outside compute: SecureRandom synchronizes and can block, which must not happen under the map's bin lock
+        String token = UUID.randomUUID().toString();
+        Session session = sessions.compute(userID, (id, existing) ->
+                existing != null && !existing.isExpired(now, ttlMillis, idleTimeoutMillis)
+                        ? existing.withRole(isRenter)
+                        : new Session(token, now, isRenter));
+        // Only a session created by this call holds the token generated above
+        if (session.token == token) {
+            enqueue(userID);
+        }
+        if (sessions.size() > maxSize) {
+            evictIdlest(userID);
+        }
+        return session.token;
+    }
+
+    /**
+     * Checks if the token belongs to a live session of the user and refreshes its idle timer.
+     *
+     * @param userID The user ID.
+     * @param token  The authentication token.
+     * @return true if the session is live and the token matches, false otherwise.
+     */
+    public boolean isAuthenticated(Long userID, String token) {
+        if (userID == null || token == null) {
+            misses.increment();
+            return false;
+        }
+        Session session = sessions.get(userID);
+        if (session == null) {
+            misses.increment();
+            return false;
+        }
+        long now = clock.getAsLong();
+        if (session.isExpired(now, ttlMillis, idleTimeoutMillis)) {
+            if (sessions.remove(userID, session)) {
+                expirations.increment();
+            }
+            misses.increment();
+            return false;
+        }
+        if (!session.token.equals(token)) {
+            misses.increment();
+            return false;
+        }
+        session.touch(now);
+        hits.increment();
+        return true;
+    }
+
+    /**
+     * Returns the role remembered for the user's session.
+     *
+     * @param userID The user ID.
+     * @return true if the user is a renter, false if a repairer, or null if unknown.
+     */
+    public Boolean findRole(Long userID) {
+        Session session = sessions.get(userID);
+        return session == null ? null : session.isRenter;
+    }
+
+    /**
+     * Ends the session of the user.
+     *
+     * @param userID The user ID.
+     * @return true if a live session was ended, false otherwise.
+     */
+    public boolean logout(Long userID) {
+        Session session = sessions.remove(userID);
+        return session != null && !session.isExpired(clock.getAsLong(), ttlMillis, idleTimeoutMillis);
+    }
+
+    /**
+     * Removes every expired session.
+     */
+    @Scheduled(fixedDelayString = "${account.session.sweep-interval:60000}")
+    public void sweep() {
+        long now = clock.getAsLong();
+        for (Map.Entry<Long, Session> entry : sessions.entrySet()) {
+            if (entry.getValue().isExpired(now, ttlMillis, idleTimeoutMillis) && sessions.remove(entry.getKey(), entry.getValue())) {
+                expirations.increment();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of sessions currently held, including expired ones not yet swept.
+     *
+     * @return The number of sessions.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns the number of successful authentications.
+     *
+     * @return The count since startup.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of failed authentications.
+     *
+     * @return The count since startup.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of sessions removed because they expired.
+     *
+     * @return The count since startup.
+     */
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    /**
+     * Returns the number of sessions dropped because the store was full.
+     *
+     * @return The count since startup.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private void enqueue(Long userID) {
+        evictionLock.lock();
+        try {
+            evictionQueue.add(userID);
+            // Keeps the IDs of logged out and swept sessions from piling up, in amortized constant time
+            if (evictionQueue.size() > 2 * sessions.size()) {
+                evictionQueue.removeIf(id -> !sessions.containsKey(id));
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Drops sessions other than the one just created until the store is back to its size, taking them from
+     * the head of the eviction queue and giving those used since their last visit a second chance.
+     */
+    private void evictIdlest(Long keep) {
+        evictionLock.lock();
+        try {
+            // Two passes: the first may only clear the marks of used sessions; sessions being created concurrently are not queued yet
+            int visits = 2 * evictionQueue.size() + 1;
+            long now = clock.getAsLong();
+            while (sessions.size() > maxSize && !evictionQueue.isEmpty() && visits-- > 0) {
+                Iterator<Long> head = evictionQueue.iterator();
+                Long userID = head.next();
+                head.remove();
+                Session session = sessions.get(userID);
+                if (session == null) {
+                    continue;
+                }
+                if (userID.equals(keep) || session.lastAccess != session.visitedAccess) {
+                    session.visitedAccess = session.lastAccess;
+                    evictionQueue.add(userID);
+                } else if (sessions.remove(userID, session)) {
+                    if (session.isExpired(now, ttlMillis, idleTimeoutMillis)) {
+                        expirations.increment();
+                    } else {
+                        evictions.increment();
+                    }
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static final class Session {
+        private final String token;
+        private final long createdAt;
+        private final Boolean isRenter;
+        private volatile long lastAccess;
+        // Guarded by evictionLock: the last access seen by the eviction, to tell if the session was used since
+        private long visitedAccess;
+
+        private Session(String token, long now, Boolean isRenter) {
+            this(token, now, now, isRenter);
+        }
+
+        private Session(String token, long createdAt, long lastAccess, Boolean isRenter) {
+            this.token = token;
+            this.createdAt = createdAt;
+            this.lastAccess = lastAccess;
+            this.visitedAccess = lastAccess;
+            this.isRenter = isRenter;
+        }
+
+        private Session withRole(Boolean role) {
+            return role == null || role.equals(isRenter) ? this : new Session(token, createdAt, lastAccess, role);
+        }
+
+        private boolean isExpired(long now, long ttlMillis, long idleTimeoutMillis) {
+            return now - createdAt >= ttlMillis || now - lastAccess >= idleTimeoutMillis;
+        }
+
+        private void touch(long now) {
+            if (now - lastAccess >= TOUCH_GRANULARITY_MILLIS) {
+                lastAccess = now;
+            }
+        }
+    }
+}
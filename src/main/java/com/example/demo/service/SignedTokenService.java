@@ -0,0 +1,217 @@
+/**
+ * The SignedTokenService class issues and verifies self-describing authentication tokens.
+ * A token carries the user ID, the role and the expiry time and is signed with HMAC-SHA256,
+ * so any instance sharing the secret can verify it without shared session state.
+ * Logout stores a per-user "tokens valid after" time in the database, where every instance sees it; tokens
+ * issued at or before that time are rejected. Instances cache the time briefly, so a logout takes effect on
+ * the other instances within the refresh interval.
+ */
+package com.example.demo.service;
+
+import com.example.demo.repository.UserInfoRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+@Component
+public class SignedTokenService {
+    private static final Logger log = LoggerFactory.getLogger(SignedTokenService.class);
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final long MAX_CACHED_USERS = 100_000;
+
+    private final Mac prototype;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final AtomicLong lastIssuedAt = new AtomicLong();
+    private final RevocationStore store;
+    // User ID -> the stored "tokens valid after" time, 0 if none
+    private final Cache<Long, Long> validAfter;
+
+    /**
+     * Creates a token service.
+     *
+     * @param secret       The shared signing secret; a random one is generated when empty, which only suits a single instance.
+     * @param ttl          The lifetime of an issued token.
+     * @param refresh      How long a user's revocation time is trusted before it is read again from the database.
+     * @param userInfoRepo The repository the revocation times are stored in.
+     */
+    @Autowired
+    public SignedTokenService(@Value("${account.token.secret:}") String secret,
+                              @Value("${account.token.ttl:PT12H}") Duration ttl,
+                              @Value("${account.token.revocation-refresh:PT5S}") Duration refresh,
+                              UserInfoRepository userInfoRepo) {
+        this(secret, ttl, refresh, System::currentTimeMillis, new RevocationStore() {
+            @Override
+            public Long tokensValidAfter(Long userID) {
+                return userInfoRepo.findTokensValidAfter(userID);
+            }
+
+            @Override
+            public void revoke(Long userID, long time) {
+                userInfoRepo.revokeTokens(userID, time);
+            }
+        });
+    }
+
+    SignedTokenService(String secret, Duration ttl, Duration refresh, LongSupplier clock, RevocationStore store) {
+        byte[] key;
+        if (secret == null || secret.isBlank()) {
+            log.warn("account.token.secret is not set, signed tokens will not be accepted by other instances");
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        } else {
+            key = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            prototype = Mac.getInstance(ALGORITHM);
+            prototype.init(new SecretKeySpec(key, ALGORITHM));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.store = store;
+        this.validAfter = Caffeine.newBuilder()
+                .maximumSize(MAX_CACHED_USERS)
+                .expireAfterWrite(refresh)
+                .build();
+    }
+
+    /**
+     * Issues a signed token for the user.
+     *
+     * @param userID   The user ID.
+     * @param isRenter Whether the user is a renter rather than a repairer.
+     * @return The signed token.
+     */
+    public String issue(Long userID, boolean isRenter) {
+        // Strictly increasing and after the user's last logout, even one made on an instance whose clock is ahead,
+        // so that a login right after a logout is never caught by the revocation
+        long now = Math.max(clock.getAsLong(), tokensValidAfter(userID, true) + 1);
+        long issuedAt = lastIssuedAt.accumulateAndGet(now, (last, candidate) -> Math.max(last + 1, candidate));
+        String payload = userID + ":" + (isRenter ? 1 : 0) + ":" + issuedAt + ":" + (issuedAt + ttlMillis);
+        String encoded = ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        return encoded + "." + ENCODER.encodeToString(sign(encoded));
+    }
+
+    /**
+     * Verifies the signature, expiry and revocation state of a token issued to the user.
+     *
+     * @param userID The user ID the token must belong to.
+     * @param token  The token to verify.
+     * @return The claims carried by the token, or null if it is not valid for this user.
+     */
+    public TokenClaims verify(Long userID, String token) {
+        if (userID == null || token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot < 1) {
+            return null;
+        }
+        String encoded = token.substring(0, dot);
+        try {
+            if (!MessageDigest.isEqual(sign(encoded), DECODER.decode(token.substring(dot + 1)))) {
+                return null;
+            }
+            String[] fields = new String(DECODER.decode(encoded), StandardCharsets.UTF_8).split(":");
+            if (fields.length != 4) {
+                return null;
+            }
+            TokenClaims claims = new TokenClaims(Long.parseLong(fields[0]), "1".equals(fields[1]),
+                    Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+            if (claims.userId() != userID || claims.expiresAt() <= clock.getAsLong()) {
+                return null;
+            }
+            if (claims.issuedAt() <= tokensValidAfter(userID, false)) {
+                return null;
+            }
+            return claims;
+        } catch (IllegalArgumentException e) {
+            // Malformed base64 or numbers
+            return null;
+        }
+    }
+
+    /**
+     * Rejects, on every instance, the given token and every other token issued to its user so far.
+     *
+     * @param claims The claims of a verified token.
+     */
+    public void revoke(TokenClaims claims) {
+        // Covering the token's own issue time keeps the revocation correct when another instance's clock is ahead;
+        // advancing the issue clock guarantees that tokens issued after the logout are newer than the revocation
+        long revokedAt = lastIssuedAt.accumulateAndGet(Math.max(clock.getAsLong(), claims.issuedAt()), Math::max);
+        store.revoke(claims.userId(), revokedAt);
+        validAfter.asMap().merge(claims.userId(), revokedAt, Math::max);
+    }
+
+    private long tokensValidAfter(Long userID, boolean fresh) {
+        if (fresh) {
+            validAfter.invalidate(userID);
+        }
+        return validAfter.get(userID, key -> {
+            Long time = store.tokensValidAfter(key);
+            return time == null ? 0L : time;
+        });
+    }
+
+    private byte[] sign(String encodedPayload) {
+        try {
+            // Mac instances are not thread-safe; cloning the initialised prototype is cheaper than re-initialising
+            Mac mac = (Mac) prototype.clone();
+            return mac.doFinal(encodedPayload.getBytes(StandardCharsets.UTF_8));
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("HMAC provider does not support cloning", e);
+        }
+    }
+
+    /**
+     * The shared storage of the per-user revocation times.
+     */
+    interface RevocationStore {
+        /**
+         * Returns the time at or before which the user's tokens are rejected.
+         *
+         * @param userID The user ID.
+         * @return The time in epoch milliseconds, or null if the user never logged out.
+         */
+        Long tokensValidAfter(Long userID);
+
+        /**
+         * Moves the user's revocation time forward to the given time, keeping a later one.
+         *
+         * @param userID The user ID.
+         * @param time   The time in epoch milliseconds.
+         */
+        void revoke(Long userID, long time);
+    }
+
+    /**
+     * The claims carried by a verified token.
+     *
+     * @param userId    The user ID.
+     * @param renter    Whether the user is a renter rather than a repairer.
+     * @param issuedAt  The issue time in epoch milliseconds.
+     * @param expiresAt The expiry time in epoch milliseconds.
+     */
+    public record TokenClaims(long userId, boolean renter, long issuedAt, long expiresAt) {
+    }
+}
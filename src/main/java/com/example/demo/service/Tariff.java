@@ -0,0 +1,148 @@
+/**
+ * The Tariff class is an immutable pricing table compiled from a list of rules.
+ * Every rule is resolved once for every zone and hour of the day, so pricing a ride is a few array reads
+ * and integer operations without any allocation. Amounts are held in hundredths to keep the arithmetic exact.
+ * Rules are applied in order and a later rule overrides only the rates it sets, so a base rule can be
+ * refined by, for example, a peak-hour rule that only changes the per-minute rate.
+ */
+package com.example.demo.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+public final class Tariff {
+    static final int HOURS = 24;
+    private static final int HUNDREDTHS = 100;
+
+    private final int zoneCount;
+    private final int couponPercent;
+    private final long[] perDistance;
+    private final long[] perMinute;
+    private final long[] unlockFee;
+    private final List<Rule> rules;
+
+    /**
+     * Compiles the rules into a table over every zone and hour.
+     *
+     * @param zoneNames     The names of the geofence zones, in geofence order.
+     * @param couponPercent The discount of a coupon in percent.
+     * @param rules         The rules, the first one setting the rates of every zone and hour.
+     */
+    public Tariff(List<String> zoneNames, int couponPercent, List<Rule> rules) {
+        if (couponPercent < 0 || couponPercent > 100) {
+            throw new IllegalArgumentException("Coupon percent must be between 0 and 100");
+        }
+        // One slot per zone plus one for positions outside every zone
+        this.zoneCount = zoneNames.size() + 1;
+        this.couponPercent = couponPercent;
+        this.perDistance = new long[zoneCount * HOURS];
+        this.perMinute = new long[zoneCount * HOURS];
+        this.unlockFee = new long[zoneCount * HOURS];
+        this.rules = List.copyOf(rules);
+        for (Rule rule : rules) {
+            if (rule.getZone() != null && !zoneNames.contains(rule.getZone())) {
+                throw new IllegalArgumentException("Unknown zone: " + rule.getZone());
+            }
+            int from = hour(rule.getFromHour(), 0);
+            int to = hour(rule.getToHour(), HOURS);
+            for (int zone = 0; zone < zoneCount; zone++) {
+                if (rule.getZone() != null && (zone == zoneCount - 1 || !rule.getZone().equals(zoneNames.get(zone)))) {
+                    continue;
+                }
+                for (int h = 0; h < HOURS; h++) {
+                    // A range whose end is before its start wraps around midnight
+                    boolean matches = from < to ? h >= from && h < to : h >= from || h < to;
+                    if (matches) {
+                        apply(rule, zone * HOURS + h);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Prices a ride. Only whole distance units are charged.
+     *
+     * @param zone         The index of the zone the ride started in, or -1 if outside every zone.
+     * @param hour         The hour of the day the ride started.
+     * @param distance     The distance traveled.
+     * @param totalMinutes The duration of the ride in minutes.
+     * @param usedCoupon   Whether a coupon was used.
+     * @return The bill.
+     */
+    public int bill(int zone, int hour, double distance, long totalMinutes, boolean usedCoupon) {
+        int slot = (zone < 0 ? zoneCount - 1 : zone) * HOURS + hour;
+        long amount = unlockFee[slot] + (long) distance * perDistance[slot] + Math.max(0, totalMinutes) * perMinute[slot];
+        long bill = amount / HUNDREDTHS;
+        if (usedCoupon) {
+            bill = bill * (100 - couponPercent) / 100;
+        }
+        return (int) bill;
+    }
+
+    /**
+     * Returns the discount of a coupon in percent.
+     *
+     * @return The discount.
+     */
+    public int getCouponPercent() {
+        return couponPercent;
+    }
+
+    /**
+     * Returns the rules the table was compiled from.
+     *
+     * @return The rules.
+     */
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    private void apply(Rule rule, int slot) {
+        if (rule.getPerDistance() != null) {
+            perDistance[slot] = hundredths(rule.getPerDistance());
+        }
+        if (rule.getPerMinute() != null) {
+            perMinute[slot] = hundredths(rule.getPerMinute());
+        }
+        if (rule.getUnlockFee() != null) {
+            unlockFee[slot] = hundredths(rule.getUnlockFee());
+        }
+    }
+
+    private static int hour(Integer hour, int fallback) {
+        if (hour == null) {
+            return fallback;
+        }
+        if (hour < 0 || hour > HOURS) {
+            throw new IllegalArgumentException("Hour must be between 0 and 24: " + hour);
+        }
+        return hour;
+    }
+
+    private static long hundredths(double amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Rates cannot be negative: " + amount);
+        }
+        return Math.round(amount * HUNDREDTHS);
+    }
+
+    /**
+     * A pricing rule. A rule without a zone applies everywhere, including outside every zone; a rule without
+     * hours applies all day; a rate left unset keeps the rate of the earlier rules.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Rule {
+        private String zone;
+        private Integer fromHour;
+        private Integer toHour;
+        private Double perDistance;
+        private Double perMinute;
+        private Double unlockFee;
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * The TripSegment class holds up to CAPACITY trips column by column, one int array per column. A segment
+ * is open while trips are appended to it by a single writer, and readers see the trips appended before
+ * they read the size. A full segment is sealed into packed columns and never changes again.
+ */
+package com.example.demo.service;
+
+final class TripSegment {
+    static final int CAPACITY = 1 << 16;
+
+    // Local wall-clock hours since the epoch the trip started in
+    static final int START_HOUR = 0;
+    // Index of the zone the trip started in, or -1
+    static final int ZONE = 1;
+    // Coordinates in millionths of a degree
+    static final int START_LAT = 2;
+    static final int START_LNG = 3;
+    static final int END_LAT = 4;
+    static final int END_LNG = 5;
+    static final int MINUTES = 6;
+    // Distance in thousandths of a distance unit
+    static final int DISTANCE = 7;
+    static final int BILL = 8;
+    static final int COUPON = 9;
+    static final int COLUMNS = 10;
+
+    private final int[][] open;
+    private final PackedColumn[] sealed;
+    private volatile int size;
+
+    private TripSegment(int[][] open, PackedColumn[] sealed, int size) {
+        this.open = open;
+        this.sealed = sealed;
+        this.size = size;
+    }
+
+    /**
+     * Creates an empty open segment.
+     *
+     * @return The segment.
+     */
+    static TripSegment open() {
+        return new TripSegment(new int[COLUMNS][CAPACITY], null, 0);
+    }
+
+    /**
+     * Appends a trip to an open segment. Must not be called concurrently.
+     *
+     * @param row The value of every column.
+     * @return false if the segment is full or sealed.
+     */
+    boolean append(int[] row) {
+        int at = size;
+        if (open == null || at == CAPACITY) {
+            return false;
+        }
+        for (int column = 0; column < COLUMNS; column++) {
+            open[column][at] = row[column];
+        }
+        // Publishes the row written above
+        size = at + 1;
+        return true;
+    }
+
+    /**
+     * Packs the columns of the segment into a sealed copy.
+     *
+     * @return The sealed segment.
+     */
+    TripSegment seal() {
+        int count = size;
+        PackedColumn[] packed = new PackedColumn[COLUMNS];
+        for (int column = 0; column < COLUMNS; column++) {
+            packed[column] = PackedColumn.pack(open[column], count);
+        }
+        return new TripSegment(null, packed, count);
+    }
+
+    /**
+     * Returns the number of trips in the segment.
+     *
+     * @return The number of trips.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Decodes the first trips of a column.
+     *
+     * @param column The column.
+     * @param count  The number of trips, at most the size read before.
+     * @param out    The array to decode into.
+     */
+    void decode(int column, int count, int[] out) {
+        if (sealed != null) {
+            sealed[column].decode(out);
+        } else {
+            System.arraycopy(open[column], 0, out, 0, count);
+        }
+    }
+
+    /**
+     * Returns the memory taken by the values of the segment.
+     *
+     * @return The size in bytes.
+     */
+    long sizeInBytes() {
+        if (sealed == null) {
+            return 4L * COLUMNS * CAPACITY;
+        }
+        long bytes = 0;
+        for (PackedColumn column : sealed) {
+            bytes += column.sizeInBytes();
+        }
+        return bytes;
+    }
+}
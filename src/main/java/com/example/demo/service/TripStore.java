@@ -0,0 +1,497 @@
+/**
+ * The TripStore class is an in-memory columnar store of finished trips for analytics, so that aggregations
+ * over millions of trips never scan the rent_record table of the live workload.
+ * Trips are appended to segments of TripSegment.CAPACITY trips, which are compressed when full. A query
+ * scans every segment in parallel on a dedicated fork-join pool: each column it needs is decoded into a
+ * primitive array, the trips in the time range are selected and grouped with tight loops over those
+ * arrays, and the partial results of the segments are merged.
+ * The store is filled once at startup by a paged scan of the closed rent records in primary key order, and
+ * from then on two ways: by the return events of this instance's event log, joined with the rent event of
+ * the same ride, as soon as they are projected; and by a periodic scan of the records closed since the last
+ * one, which brings in the trips returned through the other instances. A trip reaching the store more than
+ * once is counted once, so every instance converges on the trips of the whole database.
+ */
+package com.example.demo.service;
+
+import com.example.demo.model.RentRecord;
+import com.example.demo.repository.RentRecordRepository;
+import com.example.demo.response.TripAnalyticsResponse;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+@Component
+public class TripStore implements EventProjector {
+    private static final Logger log = LoggerFactory.getLogger(TripStore.class);
+    public static final int MAX_GROUPS = 10000;
+    private static final double MIN_CELL_SIZE = 0.0001;
+    private static final double MAX_CELL_SIZE = 1;
+    private static final List<String> SORTS = List.of("key", "trips", "revenue", "avgBill", "avgMinutes", "avgDistance");
+
+    @Autowired
+    private RentRecordRepository rentRecordRepo;
+    // How far back of the latest end time seen a sync reads again, for returns committed late or stamped by
+    // an instance whose clock is behind
+    @Value("${analytics.sync-overlap:PT1M}")
+    private Duration syncOverlap = Duration.ofMinutes(1);
+    private final Geofence geofence;
+    private final ForkJoinPool pool;
+    private final int importBatch;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // Guarded by appendLock
+    private final RecordIdSet stored = new RecordIdSet();
+    private final int[] row = new int[TripSegment.COLUMNS];
+    private volatile Snapshot snapshot = new Snapshot(List.of(), TripSegment.open());
+    private final AtomicLong imported = new AtomicLong();
+    private volatile boolean importing;
+    // The latest end time seen by a sync, or the start of the import; null before the import
+    private volatile LocalDateTime syncedUpTo;
+    private final AtomicLong synced = new AtomicLong();
+    private volatile boolean closed;
+    // Rides started but not yet returned, used by the projection thread only
+    private final Map<Long, RentalEvent> pending = new HashMap<>();
+    private volatile long unmatched;
+
+    /**
+     * Creates the store and its worker pool.
+     *
+     * @param geofenceService The service-area geofence, whose zones trips are grouped by.
+     * @param parallelism     The number of worker threads, or 0 for one per processor.
+     * @param importBatch     The number of rent records read per query by the startup import.
+     */
+    @Autowired
+    public TripStore(GeofenceService geofenceService,
+                     @Value("${analytics.parallelism:0}") int parallelism,
+                     @Value("${analytics.import-batch:5000}") int importBatch) {
+        this.geofence = geofenceService.getGeofence();
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.importBatch = Math.max(1, importBatch);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        pool.shutdownNow();
+    }
+
+    /**
+     * Starts importing the closed rent records in the background once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startImport() {
+        importing = true;
+        Thread importer = new Thread(this::importClosedRecords, "trip-import");
+        importer.setDaemon(true);
+        importer.start();
+    }
+
+    private void importClosedRecords() {
+        long start = System.nanoTime();
+        // Records closed from now on, whatever their ID, are left to the syncs
+        syncedUpTo = LocalDateTime.now();
+        long after = 0;
+        try {
+            while (!closed) {
+                // Each page is an index range scan on the primary key, read outside any transaction
+                List<RentRecord> page = rentRecordRepo.findClosedAfter(after, PageRequest.of(0, importBatch));
+                for (RentRecord record : page) {
+                    if (add(record)) {
+                        imported.incrementAndGet();
+                    }
+                }
+                if (page.size() < importBatch) {
+                    break;
+                }
+                after = page.get(page.size() - 1).getId();
+            }
+            log.info("Imported {} trip(s) into the trip store in {} ms", imported.get(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.error("Trip import stopped after rent record {}", after, e);
+        } finally {
+            importing = false;
+        }
+    }
+
+    /**
+     * Adds the trips closed through any instance since the last sync. Runs after the startup import only.
+     */
+    @Scheduled(fixedDelayString = "${analytics.sync-interval:60000}", initialDelayString = "${analytics.sync-interval:60000}")
+    public void sync() {
+        LocalDateTime upTo = syncedUpTo;
+        if (importing || closed || upTo == null) {
+            return;
+        }
+        LocalDateTime time = upTo.minus(syncOverlap);
+        long id = 0;
+        try {
+            while (!closed) {
+                // Each page is an index range scan on the end time, so a sync reads only the recent records
+                List<RentRecord> page = rentRecordRepo.findClosedSince(time, id, PageRequest.of(0, importBatch));
+                for (RentRecord record : page) {
+                    if (add(record)) {
+                        synced.incrementAndGet();
+                    }
+                }
+                if (!page.isEmpty()) {
+                    RentRecord last = page.get(page.size() - 1);
+                    time = last.getEndTime();
+                    id = last.getId();
+                }
+                if (page.size() < importBatch) {
+                    break;
+                }
+            }
+            if (time.isAfter(upTo)) {
+                syncedUpTo = time;
+            }
+        } catch (RuntimeException e) {
+            log.error("Trip sync stopped at rent records closed at {}", time, e);
+        }
+    }
+
+    /**
+     * Adds a closed rent record to the store.
+     *
+     * @param record The rent record.
+     * @return false if the trip was already stored.
+     */
+    public boolean add(RentRecord record) {
+        return append(record.getId(), record.getStartTime(), record.getStart_lat(), record.getStart_lng(),
+                record.getEnd_lat(), record.getEnd_lng(), record.getTotalMinutes() == null ? 0 : record.getTotalMinutes(),
+                record.getDistance(), record.getBill(), record.isUsedCoupon());
+    }
+
+    @Override
+    public void apply(RentalEvent event) {
+        switch (event.type()) {
+            case RENT -> pending.put(event.recordId(), event);
+            case RETURN -> {
+                RentalEvent rent = pending.remove(event.recordId());
+                if (rent == null) {
+                    // Started before the event log existed; only the startup import can have the trip
+                    unmatched++;
+                    return;
+                }
+                LocalDateTime startTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(rent.timestamp()), ZoneId.systemDefault());
+                append(event.recordId(), startTime, rent.lat(), rent.lng(), event.lat(), event.lng(), event.totalMinutes(),
+                        event.distance(), event.bill(), event.usedCoupon());
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Forgets the rides in progress. Stored trips are kept, and trips replayed again are not stored twice.
+     */
+    @Override
+    public void reset() {
+        pending.clear();
+    }
+
+    private boolean append(long recordId, LocalDateTime startTime, double startLat, double startLng, double endLat,
+                           double endLng, long totalMinutes, double distance, int bill, boolean usedCoupon) {
+        appendLock.lock();
+        try {
+            if (!stored.add(recordId)) {
+                return false;
+            }
+            row[TripSegment.START_HOUR] = (int) Math.floorDiv(startTime.toEpochSecond(ZoneOffset.UTC), 3600);
+            row[TripSegment.ZONE] = geofence.zoneAt(startLat, startLng);
+            row[TripSegment.START_LAT] = micros(startLat);
+            row[TripSegment.START_LNG] = micros(startLng);
+            row[TripSegment.END_LAT] = micros(endLat);
+            row[TripSegment.END_LNG] = micros(endLng);
+            row[TripSegment.MINUTES] = (int) Math.max(0, Math.min(totalMinutes, Integer.MAX_VALUE));
+            row[TripSegment.DISTANCE] = (int) Math.max(0, Math.min(Math.round(distance * 1000), Integer.MAX_VALUE));
+            row[TripSegment.BILL] = bill;
+            row[TripSegment.COUPON] = usedCoupon ? 1 : 0;
+            Snapshot current = snapshot;
+            if (!current.open().append(row)) {
+                List<TripSegment> sealed = new ArrayList<>(current.sealed());
+                sealed.add(current.open().seal());
+                TripSegment open = TripSegment.open();
+                open.append(row);
+                // Readers see either the full open segment or its sealed copy, never both
+                snapshot = new Snapshot(List.copyOf(sealed), open);
+            }
+            return true;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Aggregates the stored trips by the given dimensions.
+     *
+     * @param groupBy  The dimensions to group by, at most three; none for a single group of all trips.
+     * @param from     The earliest start time of the trips, to the hour, or null for no limit.
+     * @param to       The start time the trips started before, to the hour, or null for no limit.
+     * @param cellSize The edge length in degrees of the cells of the cell dimensions.
+     * @param sort     The order of the groups: key, trips, revenue, avgBill, avgMinutes or avgDistance.
+     * @param limit    The maximum number of groups to return.
+     * @return The measures of the groups.
+     * @throws IllegalArgumentException If the dimensions, cell size or sort order are invalid.
+     */
+    public TripAnalyticsResponse aggregate(List<Dimension> groupBy, LocalDateTime from, LocalDateTime to,
+                                           double cellSize, String sort, int limit) {
+        long start = System.nanoTime();
+        if (groupBy.size() > GroupTable.MAX_DIMENSIONS || groupBy.stream().distinct().count() < groupBy.size()) {
+            throw new IllegalArgumentException("Group by up to " + GroupTable.MAX_DIMENSIONS + " different dimensions");
+        }
+        if (!(cellSize >= MIN_CELL_SIZE && cellSize <= MAX_CELL_SIZE)) {
+            throw new IllegalArgumentException("Cell size must be between " + MIN_CELL_SIZE + " and " + MAX_CELL_SIZE);
+        }
+        Query query = new Query(List.copyOf(groupBy),
+                from == null ? Integer.MIN_VALUE : (int) Math.floorDiv(from.toEpochSecond(ZoneOffset.UTC), 3600),
+                to == null ? Integer.MAX_VALUE : (int) Math.floorDiv(to.toEpochSecond(ZoneOffset.UTC), 3600),
+                (int) Math.round(cellSize * 1_000_000));
+        if (!SORTS.contains(sort)) {
+            throw new IllegalArgumentException("Unknown sort order " + sort);
+        }
+        Snapshot current = snapshot;
+        List<TripSegment> segments = new ArrayList<>(current.sealed());
+        segments.add(current.open());
+        GroupTable table = pool.submit(() -> segments.parallelStream()
+                .map(segment -> aggregate(segment, query))
+                .reduce(GroupTable::merge)
+                .orElseThrow()).join();
+        Comparator<Integer> order = order(sort, table, groupBy.size());
+        long trips = 0;
+        for (int group = 0; group < table.size(); group++) {
+            trips += table.trips[group];
+        }
+        List<TripAnalyticsResponse.Group> groups = IntStream.range(0, table.size()).boxed()
+                .filter(group -> table.trips[group] > 0)
+                .sorted(order)
+                .limit(Math.max(1, Math.min(limit, MAX_GROUPS)))
+                .map(group -> toGroup(table, group, query))
+                .toList();
+        return new TripAnalyticsResponse(groupBy.stream().map(Dimension::getName).toList(), trips,
+                (int) IntStream.range(0, table.size()).filter(group -> table.trips[group] > 0).count(), groups,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private GroupTable aggregate(TripSegment segment, Query query) {
+        int dimensions = query.dimensions().size();
+        GroupTable table = new GroupTable(dimensions);
+        int count = segment.size();
+        if (count == 0) {
+            return table;
+        }
+        int[] hours = decode(segment, TripSegment.START_HOUR, count);
+        // Selection vector of the trips in the time range, built without branches
+        int[] selected = new int[count];
+        int size = 0;
+        int from = query.fromHour();
+        int to = query.toHour();
+        for (int i = 0; i < count; i++) {
+            selected[size] = i;
+            size += hours[i] >= from && hours[i] < to ? 1 : 0;
+        }
+        long[] key0 = dimensions > 0 ? values(segment, count, hours, query.dimensions().get(0), query.cellMicros()) : null;
+        long[] key1 = dimensions > 1 ? values(segment, count, hours, query.dimensions().get(1), query.cellMicros()) : null;
+        long[] key2 = dimensions > 2 ? values(segment, count, hours, query.dimensions().get(2), query.cellMicros()) : null;
+        int[] minutes = decode(segment, TripSegment.MINUTES, count);
+        int[] distance = decode(segment, TripSegment.DISTANCE, count);
+        int[] bill = decode(segment, TripSegment.BILL, count);
+        int[] coupon = decode(segment, TripSegment.COUPON, count);
+        for (int j = 0; j < size; j++) {
+            int i = selected[j];
+            int group = table.groupOf(key0 == null ? 0 : key0[i], key1 == null ? 0 : key1[i], key2 == null ? 0 : key2[i]);
+            table.add(group, minutes[i], distance[i], bill[i], coupon[i]);
+        }
+        return table;
+    }
+
+    private static long[] values(TripSegment segment, int count, int[] hours, Dimension dimension, int cellMicros) {
+        long[] values = new long[count];
+        switch (dimension) {
+            case HOUR -> {
+                for (int i = 0; i < count; i++) {
+                    values[i] = Math.floorMod(hours[i], 24);
+                }
+            }
+            case WEEKDAY -> {
+                // The epoch was a Thursday; 0 is Monday
+                for (int i = 0; i < count; i++) {
+                    values[i] = Math.floorMod(Math.floorDiv(hours[i], 24) + 3, 7);
+                }
+            }
+            case DAY -> {
+                for (int i = 0; i < count; i++) {
+                    values[i] = Math.floorDiv(hours[i], 24);
+                }
+            }
+            case ZONE, COUPON -> {
+                int[] column = decode(segment, dimension == Dimension.ZONE ? TripSegment.ZONE : TripSegment.COUPON, count);
+                for (int i = 0; i < count; i++) {
+                    values[i] = column[i];
+                }
+            }
+            case START_CELL, END_CELL -> {
+                boolean start = dimension == Dimension.START_CELL;
+                int[] lat = decode(segment, start ? TripSegment.START_LAT : TripSegment.END_LAT, count);
+                int[] lng = decode(segment, start ? TripSegment.START_LNG : TripSegment.END_LNG, count);
+                // Row in the high half, column in the low half
+                for (int i = 0; i < count; i++) {
+                    values[i] = ((long) Math.floorDiv(lat[i], cellMicros) << 32) | (Math.floorDiv(lng[i], cellMicros) & 0xFFFFFFFFL);
+                }
+            }
+        }
+        return values;
+    }
+
+    private static int[] decode(TripSegment segment, int column, int count) {
+        int[] values = new int[count];
+        segment.decode(column, count, values);
+        return values;
+    }
+
+    private TripAnalyticsResponse.Group toGroup(GroupTable table, int group, Query query) {
+        Map<String, Object> key = new LinkedHashMap<>();
+        for (int d = 0; d < query.dimensions().size(); d++) {
+            Dimension dimension = query.dimensions().get(d);
+            long value = table.key(group, d);
+            key.put(dimension.getName(), switch (dimension) {
+                case HOUR -> (int) value;
+                case WEEKDAY -> DayOfWeek.of((int) value + 1);
+                case DAY -> LocalDate.ofEpochDay(value);
+                case ZONE -> value < 0 ? "outside" : geofence.getZones().get((int) value).name();
+                case COUPON -> value == 1;
+                case START_CELL, END_CELL -> Map.of(
+                        "lat", (double) ((value >> 32) * query.cellMicros()) / 1_000_000,
+                        "lng", (double) ((long) (int) value * query.cellMicros()) / 1_000_000);
+            });
+        }
+        long trips = table.trips[group];
+        return new TripAnalyticsResponse.Group(key, trips, table.revenue[group], (double) table.revenue[group] / trips,
+                (double) table.minutes[group] / trips, table.distance[group] / 1000.0 / trips, table.distance[group] / 1000.0,
+                (double) table.coupons[group] / trips);
+    }
+
+    private static Comparator<Integer> order(String sort, GroupTable table, int dimensions) {
+        Comparator<Integer> byKey = (a, b) -> compareKeys(table, a, b, dimensions);
+        Comparator<Integer> measure = switch (sort) {
+            case "trips" -> Comparator.comparingLong(group -> table.trips[group]);
+            case "revenue" -> Comparator.comparingLong(group -> table.revenue[group]);
+            case "avgBill" -> Comparator.comparingDouble(group -> (double) table.revenue[group] / table.trips[group]);
+            case "avgMinutes" -> Comparator.comparingDouble(group -> (double) table.minutes[group] / table.trips[group]);
+            case "avgDistance" -> Comparator.comparingDouble(group -> (double) table.distance[group] / table.trips[group]);
+            default -> null;
+        };
+        // Measures largest first, ties and the key order by key
+        return measure == null ? byKey : measure.reversed().thenComparing(byKey);
+    }
+
+    private static int compareKeys(GroupTable table, int a, int b, int dimensions) {
+        for (int d = 0; d < dimensions; d++) {
+            int compared = Long.compare(table.key(a, d), table.key(b, d));
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the size, memory and feed counters of the store.
+     *
+     * @return The statistics.
+     */
+    public Map<String, Object> stats() {
+        Snapshot current = snapshot;
+        long trips = current.open().size();
+        long bytes = current.open().sizeInBytes();
+        for (TripSegment segment : current.sealed()) {
+            trips += segment.size();
+            bytes += segment.sizeInBytes();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trips", trips);
+        stats.put("segments", current.sealed().size() + 1);
+        stats.put("bytes", bytes);
+        stats.put("uncompressedBytes", 4L * TripSegment.COLUMNS * trips);
+        stats.put("importing", importing);
+        stats.put("imported", imported.get());
+        stats.put("synced", synced.get());
+        stats.put("syncedUpTo", syncedUpTo);
+        stats.put("unmatchedReturns", unmatched);
+        return stats;
+    }
+
+    private static int micros(double degrees) {
+        return (int) Math.round(degrees * 1_000_000);
+    }
+
+    /**
+     * A dimension trips can be grouped by.
+     */
+    public enum Dimension {
+        HOUR("hour"),
+        WEEKDAY("weekday"),
+        DAY("day"),
+        ZONE("zone"),
+        START_CELL("startCell"),
+        END_CELL("endCell"),
+        COUPON("coupon");
+
+        private final String name;
+
+        Dimension(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the dimension with a name.
+         *
+         * @param name The name, in any case.
+         * @return The dimension.
+         * @throws IllegalArgumentException If no dimension has the name.
+         */
+        public static Dimension parse(String name) {
+            for (Dimension dimension : values()) {
+                if (dimension.name.toLowerCase(Locale.ROOT).equals(name.trim().toLowerCase(Locale.ROOT))) {
+                    return dimension;
+                }
+            }
+            throw new IllegalArgumentException("Unknown dimension " + name);
+        }
+    }
+
+    private record Snapshot(List<TripSegment> sealed, TripSegment open) {
+    }
+
+    private record Query(List<Dimension> dimensions, int fromHour, int toHour, int cellMicros) {
+    }
+}
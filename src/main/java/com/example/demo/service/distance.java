@@ -1,8 +1,5 @@
 package com.example.demo.service;
 
-import java.io.IOException;
-import java.util.Random;
-import java.util.Random.*;
 /**
  * 
  */
@@ -11,19 +8,31 @@ import java.util.Random.*;
  *
  */
 public class distance{
-	public static Double[] generate(Double lat, Double lng) throws IOException{
-		Double nextLat, nextLng;
-		do
-		{
-			nextLat = lat + (Math.random() - 0.5) * 0.001;
-			nextLng = lng + (Math.random() - 0.5) * 0.001;
-		}while(nextLat < 25.026708 || nextLat > 25.068277 || nextLng < 121.511162 || nextLng > 121.567045);
-		return new Double[]{nextLat, nextLng};
+	private static final double EARTH_RADIUS = 6371000;
+
+	/**
+	 * Computes the great-circle distance between two coordinates.
+	 *
+	 * @param lat1 The latitude of the first point.
+	 * @param lng1 The longitude of the first point.
+	 * @param lat2 The latitude of the second point.
+	 * @param lng2 The longitude of the second point.
+	 * @return The distance in meters.
+	 */
+	public static double haversine(double lat1, double lng1, double lat2, double lng2) {
+		double dLat = Math.toRadians(lat2 - lat1);
+		double dLng = Math.toRadians(lng2 - lng1);
+		double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+				+ Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+		return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
 	}
-	
-	public static void main(String[] args) throws IOException{
-		Double[] arr= generate(25.04, 121.511162);
-		System.out.println(arr[0]);
-		System.out.println(arr[1]);
+
+	/**
+	 * Returns the length in meters of one degree of latitude.
+	 *
+	 * @return The meters per degree of latitude.
+	 */
+	public static double metersPerDegree() {
+		return Math.toRadians(1) * EARTH_RADIUS;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,94 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.repository.UserInfoRepository;
+import com.example.demo.service.AccountService;
+import com.example.demo.service.SessionStore;
+import com.example.demo.service.SignedTokenService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the token check made by every authenticated request, with session and signed tokens,
+ * for growing numbers of logged-in users and from several threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Threads(4)
+public class AccountServiceBenchmark {
+	private static final int REQUESTS = 4096;
+
+	@Param({"10000", "100000", "1000000"})
+	private int users;
+
+	@Param({"session", "signed"})
+	private String tokenMode;
+
+	private AccountService accountService;
+	private final Long[] userIds = new Long[REQUESTS];
+	private final String[] tokens = new String[REQUESTS];
+
+	@Setup
+	public void setUp() {
+		SessionStore sessionStore = new SessionStore(Duration.ofHours(12), Duration.ofHours(2), users);
+		SignedTokenService signedTokenService = new SignedTokenService("benchmark-secret", Duration.ofHours(12),
+				Duration.ofSeconds(5), Fleets.stub(UserInfoRepository.class));
+		accountService = new AccountService();
+		Fleets.inject(accountService, "sessionStore", sessionStore);
+		Fleets.inject(accountService, "signedTokenService", signedTokenService);
+		Fleets.inject(accountService, "tokenMode", tokenMode);
+		String[] issued = new String[users];
+		for (int id = 0; id < users; id++) {
+			issued[id] = "signed".equals(tokenMode)
+					? signedTokenService.issue((long) id, true)
+					: sessionStore.login((long) id, true);
+		}
+		SplittableRandom random = new SplittableRandom(7);
+		for (int i = 0; i < REQUESTS; i++) {
+			int id = random.nextInt(users);
+			userIds[i] = (long) id;
+			tokens[i] = issued[id];
+		}
+	}
+
+	@Benchmark
+	public boolean isAuthenticated(Cursor cursor) {
+		int i = cursor.next();
+		return accountService.isAuthenticated(userIds[i], tokens[i]);
+	}
+
+	/**
+	 * Walks the requests from a different offset in each thread.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int position;
+
+		@Setup
+		public void setUp() {
+			position = ThreadLocalRandom.current().nextInt(REQUESTS);
+		}
+
+		int next() {
+			return position++ & (REQUESTS - 1);
+		}
+	}
+}
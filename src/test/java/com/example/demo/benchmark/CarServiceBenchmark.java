@@ -0,0 +1,69 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.Car;
+import com.example.demo.service.CarService;
+import com.example.demo.service.CarSpatialIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the nearby-cars lookup of the renting page against fleets of growing size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class CarServiceBenchmark {
+	private static final int QUERIES = 1024;
+
+	@Param({"10000", "100000", "1000000"})
+	private int fleetSize;
+
+	@Param({"0.002", "0.01"})
+	private double range;
+
+	private CarService carService;
+	private final double[] lats = new double[QUERIES];
+	private final double[] lngs = new double[QUERIES];
+	private int next;
+
+	@Setup
+	public void setUp() {
+		CarSpatialIndex index = new CarSpatialIndex(0.005);
+		index.load(Fleets.cars(fleetSize, 42));
+		carService = new CarService();
+		Fleets.inject(carService, "carIndex", index);
+		SplittableRandom random = new SplittableRandom(7);
+		for (int i = 0; i < QUERIES; i++) {
+			lats[i] = Fleets.latitude(random);
+			lngs[i] = Fleets.longitude(random);
+		}
+	}
+
+	@Benchmark
+	public List<Car> getNormalCars() {
+		int i = next++ & (QUERIES - 1);
+		return carService.getNormalCars(lats[i], lngs[i], range);
+	}
+
+	@Benchmark
+	public List<Car> getNearestCars() {
+		int i = next++ & (QUERIES - 1);
+		return carService.getNearestCars(lats[i], lngs[i], 10);
+	}
+}
@@ -0,0 +1,113 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.config.ExecutionConfig;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares request throughput on Tomcat's default pool of 200 platform threads with one virtual thread per
+ * request. A request makes five sequential database calls, each holding one of a bounded number of pooled
+ * connections while it waits, as a return does. The requests counter reports requests per second.
+ * The virtual mode needs Java 21 and fails its setup on older versions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ExecutionModeBenchmark {
+	private static final int TOMCAT_THREADS = 200;
+	private static final int CALLS_PER_REQUEST = 5;
+
+	@Param({"platform", "virtual"})
+	private String mode;
+
+	// Requests in flight at once
+	@Param({"200", "2000"})
+	private int clients;
+
+	@Param({"50", "400"})
+	private int connections;
+
+	@Param({"1000"})
+	private long callMicros;
+
+	private ExecutorService executor;
+	private Semaphore pool;
+
+	@Setup
+	public void setUp() {
+		if ("virtual".equals(mode)) {
+			executor = ExecutionConfig.newVirtualThreadPerTaskExecutor();
+			if (executor == null) {
+				throw new IllegalStateException("Virtual threads need Java 21 or later");
+			}
+		} else {
+			executor = Executors.newFixedThreadPool(TOMCAT_THREADS);
+		}
+		pool = new Semaphore(connections, true);
+	}
+
+	@TearDown
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Completed {
+		public long requests;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			requests = 0;
+		}
+	}
+
+	@Benchmark
+	public void serveBatch(Completed completed) throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(clients);
+		for (int i = 0; i < clients; i++) {
+			executor.execute(() -> {
+				try {
+					handle();
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+		done.await();
+		completed.requests += clients;
+	}
+
+	private void handle() {
+		for (int call = 0; call < CALLS_PER_REQUEST; call++) {
+			pool.acquireUninterruptibly();
+			try {
+				LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(callMicros));
+			} finally {
+				pool.release();
+			}
+		}
+	}
+}
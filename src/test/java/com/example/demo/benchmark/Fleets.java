@@ -0,0 +1,93 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.Car;
+import com.example.demo.model.CarStatus;
+import com.example.demo.model.RentRecord;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates reproducible fixtures spread over the default service area, and wires services without Spring.
+ */
+final class Fleets {
+	static final double MIN_LATITUDE = 25.026708;
+	static final double MAX_LATITUDE = 25.068277;
+	static final double MIN_LONGITUDE = 121.511162;
+	static final double MAX_LONGITUDE = 121.567045;
+
+	private Fleets() {
+	}
+
+	/**
+	 * Generates a fleet where most cars are available and the rest are being ridden, broken or repaired.
+	 */
+	static List<Car> cars(int size, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		List<Car> cars = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			int kind = random.nextInt(100);
+			CarStatus status = kind < 90 ? CarStatus.NORMAL : kind < 95 ? CarStatus.BROKEN : CarStatus.REPAIR;
+			cars.add(new Car("CAR" + i, latitude(random), longitude(random), random.nextInt(101), status,
+					kind < 10, 0L));
+		}
+		return cars;
+	}
+
+	/**
+	 * Generates finished rent records of a thousand users.
+	 */
+	static List<RentRecord> records(int size, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+		List<RentRecord> records = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			LocalDateTime startTime = start.plusMinutes(random.nextInt(60 * 24 * 365));
+			long minutes = random.nextInt(180);
+			double distance = random.nextDouble() * 30;
+			records.add(new RentRecord((long) i, (long) random.nextInt(1000), latitude(random), longitude(random),
+					latitude(random), longitude(random), startTime, startTime.plusMinutes(minutes), minutes,
+					random.nextInt(3), distance, (int) distance * 3, random.nextBoolean()));
+		}
+		return records;
+	}
+
+	static double latitude(SplittableRandom random) {
+		return MIN_LATITUDE + random.nextDouble() * (MAX_LATITUDE - MIN_LATITUDE);
+	}
+
+	static double longitude(SplittableRandom random) {
+		return MIN_LONGITUDE + random.nextDouble() * (MAX_LONGITUDE - MIN_LONGITUDE);
+	}
+
+	/**
+	 * Sets an autowired field of a service.
+	 */
+	static void inject(Object target, String name, Object value) {
+		try {
+			Field field = target.getClass().getDeclaredField(name);
+			field.setAccessible(true);
+			field.set(target, value);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot set " + name, e);
+		}
+	}
+
+	/**
+	 * Creates an implementation of an interface, such as a repository, whose methods do nothing and return
+	 * null, false or zero.
+	 */
+	static <T> T stub(Class<T> type) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+			Class<?> returnType = method.getReturnType();
+			if (returnType == boolean.class) {
+				return false;
+			}
+			return returnType.isPrimitive() && returnType != void.class ? 0 : null;
+		}));
+	}
+}
@@ -0,0 +1,56 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.Car;
+import com.example.demo.model.RentRecord;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the serialization of car and rent record lists with the object mapper settings Spring MVC uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class JsonBenchmark {
+	@Param({"10000", "100000", "1000000"})
+	private int size;
+
+	private ObjectMapper objectMapper;
+	private List<Car> cars;
+	private List<RentRecord> records;
+
+	@Setup
+	public void setUp() {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		cars = Fleets.cars(size, 42);
+		records = Fleets.records(size, 42);
+	}
+
+	@Benchmark
+	public byte[] serializeCars() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(cars);
+	}
+
+	@Benchmark
+	public byte[] serializeRentRecords() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(records);
+	}
+}
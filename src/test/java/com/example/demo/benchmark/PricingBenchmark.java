@@ -0,0 +1,113 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.config.GeofenceProperties;
+import com.example.demo.service.GeofenceService;
+import com.example.demo.service.PricingEngine;
+import com.example.demo.service.Tariff;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of pricing returned rides, with the default tariff and with a layered tariff
+ * over several zones, and the time to compile a tariff. Run with -prof gc to check that pricing allocates nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+	private static final int RIDES = 1024;
+
+	private PricingEngine defaultEngine;
+	private PricingEngine zonedEngine;
+	private Tariff tariff;
+	private final LocalDateTime[] startTimes = new LocalDateTime[RIDES];
+	private final double[] lats = new double[RIDES];
+	private final double[] lngs = new double[RIDES];
+	private final double[] distances = new double[RIDES];
+	private final long[] minutes = new long[RIDES];
+
+	@Setup
+	public void setUp() {
+		defaultEngine = new PricingEngine(new GeofenceService(new GeofenceProperties()), 3, 0, 0, 10);
+		GeofenceProperties properties = new GeofenceProperties();
+		properties.setZones(List.of(
+				zone("west", "25.026708 121.511162, 25.026708 121.539, 25.068277 121.539, 25.068277 121.511162"),
+				zone("east", "25.026708 121.539, 25.026708 121.567045, 25.068277 121.567045, 25.068277 121.539")));
+		zonedEngine = new PricingEngine(new GeofenceService(properties), 3, 0, 0, 10);
+		tariff = zonedEngine.load(15, List.of(
+				new Tariff.Rule(null, 22, 6, null, 0.3, null),
+				new Tariff.Rule("west", 7, 10, 4.0, 0.5, 10.0),
+				new Tariff.Rule("east", 17, 20, 4.0, 0.5, 10.0)));
+		SplittableRandom random = new SplittableRandom(42);
+		LocalDateTime midnight = LocalDateTime.of(2024, 1, 1, 0, 0);
+		for (int i = 0; i < RIDES; i++) {
+			startTimes[i] = midnight.plusMinutes(random.nextInt(24 * 60));
+			lats[i] = 25.02 + random.nextDouble() * 0.055;
+			lngs[i] = 121.50 + random.nextDouble() * 0.075;
+			distances[i] = random.nextDouble() * 30;
+			minutes[i] = random.nextInt(180);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RIDES)
+	public void defaultTariff(Blackhole blackhole) {
+		for (int i = 0; i < RIDES; i++) {
+			blackhole.consume(defaultEngine.bill(startTimes[i], lats[i], lngs[i], distances[i], minutes[i], (i & 1) == 0));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RIDES)
+	public void zonedTariff(Blackhole blackhole) {
+		for (int i = 0; i < RIDES; i++) {
+			blackhole.consume(zonedEngine.bill(startTimes[i], lats[i], lngs[i], distances[i], minutes[i], (i & 1) == 0));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RIDES)
+	public void tableLookup(Blackhole blackhole) {
+		for (int i = 0; i < RIDES; i++) {
+			blackhole.consume(tariff.bill(i % 3 - 1, i % 24, distances[i], minutes[i], (i & 1) == 0));
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Tariff compile() {
+		return new Tariff(List.of("west", "east"), 15, tariff.getRules());
+	}
+
+	private static GeofenceProperties.ZoneProperties zone(String name, String polygon) {
+		GeofenceProperties.ZoneProperties zone = new GeofenceProperties.ZoneProperties();
+		zone.setName(name);
+		zone.setPolygon(polygon);
+		return zone;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(PricingBenchmark.class.getSimpleName()).build()).run();
+	}
+}
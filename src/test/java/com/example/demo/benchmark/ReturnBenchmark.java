@@ -0,0 +1,95 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.config.GeofenceProperties;
+import com.example.demo.controller.RentingController;
+import com.example.demo.model.Car;
+import com.example.demo.model.RentRecord;
+import com.example.demo.service.CarSpatialIndex;
+import com.example.demo.service.GeofenceService;
+import com.example.demo.service.PricingEngine;
+import com.example.demo.service.RelocationEngine;
+import com.example.demo.service.RentingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the in-memory steps of returning and charging a car: the service-area check, the bill and the
+ * relocation of a charged car, which in least-covered mode depends on the size of the fleet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class ReturnBenchmark {
+	private static final int RETURNS = 1024;
+
+	@Param({"10000", "100000", "1000000"})
+	private int fleetSize;
+
+	private RentingService rentingService;
+	private GeofenceService geofenceService;
+	private RelocationEngine randomRelocation;
+	private RelocationEngine leastCoveredRelocation;
+	private final RentingController.ReturnForm[] forms = new RentingController.ReturnForm[RETURNS];
+	private List<RentRecord> records;
+	private final Car car = new Car("CAR0", 100, 25.04, 121.54);
+	private int next;
+
+	@Setup
+	public void setUp() {
+		geofenceService = new GeofenceService(new GeofenceProperties());
+		rentingService = new RentingService();
+		Fleets.inject(rentingService, "pricingEngine", new PricingEngine(geofenceService, 3, 0, 0, 10));
+		CarSpatialIndex index = new CarSpatialIndex(0.005);
+		index.load(Fleets.cars(fleetSize, 42));
+		randomRelocation = new RelocationEngine(index, geofenceService, "random", null);
+		leastCoveredRelocation = new RelocationEngine(index, geofenceService, "least-covered", null);
+		records = Fleets.records(RETURNS, 42);
+		SplittableRandom random = new SplittableRandom(7);
+		for (int i = 0; i < RETURNS; i++) {
+			RentingController.ReturnForm form = new RentingController.ReturnForm();
+			// Some returns fall just outside the service area
+			form.setLat(Fleets.latitude(random) + (random.nextInt(10) == 0 ? 0.05 : 0));
+			form.setLng(Fleets.longitude(random));
+			forms[i] = form;
+		}
+	}
+
+	@Benchmark
+	public boolean inRange() {
+		return forms[next++ & (RETURNS - 1)].inRange(geofenceService);
+	}
+
+	@Benchmark
+	public int getBill() {
+		RentRecord record = records.get(next++ & (RETURNS - 1));
+		return rentingService.getBill(record, record.getDistance(), record.getTotalMinutes(), record.isUsedCoupon());
+	}
+
+	@Benchmark
+	public Car relocateRandom() {
+		randomRelocation.relocate(car);
+		return car;
+	}
+
+	@Benchmark
+	public Car relocateLeastCovered() {
+		leastCoveredRelocation.relocate(car);
+		return car;
+	}
+}
@@ -0,0 +1,82 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.config.GeofenceProperties;
+import com.example.demo.model.RentRecord;
+import com.example.demo.response.TripAnalyticsResponse;
+import com.example.demo.service.GeofenceService;
+import com.example.demo.service.TripStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures group-by queries over the trip store, from the revenue per hour and zone to the busiest start
+ * cells, and the memory the packed columns take, which setup prints.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class TripAnalyticsBenchmark {
+	private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+	@Param({"1000000", "5000000"})
+	private int trips;
+
+	@Param({"0"})
+	private int parallelism;
+
+	private TripStore store;
+
+	@Setup
+	public void setUp() {
+		store = new TripStore(new GeofenceService(new GeofenceProperties()), parallelism, 1);
+		SplittableRandom random = new SplittableRandom(42);
+		for (int i = 0; i < trips; i++) {
+			LocalDateTime startTime = START.plusMinutes(random.nextInt(60 * 24 * 365));
+			long minutes = random.nextInt(180);
+			double distance = random.nextInt(30000) / 1000.0;
+			store.add(new RentRecord((long) i, (long) random.nextInt(1000), Fleets.latitude(random), Fleets.longitude(random),
+					Fleets.latitude(random), Fleets.longitude(random), startTime, startTime.plusMinutes(minutes), minutes,
+					0, distance, (int) distance * 3, random.nextInt(10) == 0));
+		}
+		System.out.println("Trip store: " + store.stats());
+	}
+
+	@TearDown
+	public void tearDown() {
+		store.shutdown();
+	}
+
+	@Benchmark
+	public TripAnalyticsResponse total() {
+		return store.aggregate(List.of(), null, null, 0.01, "key", 1);
+	}
+
+	@Benchmark
+	public TripAnalyticsResponse revenuePerHourAndZone() {
+		return store.aggregate(List.of(TripStore.Dimension.HOUR, TripStore.Dimension.ZONE), null, null, 0.01, "key", 1000);
+	}
+
+	@Benchmark
+	public TripAnalyticsResponse minutesByStartCellInAMonth() {
+		return store.aggregate(List.of(TripStore.Dimension.START_CELL), START.plusMonths(6), START.plusMonths(7), 0.001,
+				"avgMinutes", 100);
+	}
+}
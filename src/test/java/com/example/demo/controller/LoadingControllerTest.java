@@ -0,0 +1,64 @@
+package com.example.demo.controller;
+
+import com.example.demo.model.Car;
+import com.example.demo.repository.CarRepository;
+import com.example.demo.repository.ChargeStationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the legacy loading endpoints against H2 in its regular mode, which has none of MySQL's upsert syntax.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class LoadingControllerTest {
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private CarRepository carRepo;
+
+	@Autowired
+	private ChargeStationRepository chargeStationRepo;
+
+	@Test
+	void loadingTheSameCarsTwiceUpdatesThem() throws Exception {
+		mvc.perform(post("/load/car").contentType(MediaType.APPLICATION_JSON)
+						.content("[{\"no\":\"L1\",\"lat\":25.04,\"lng\":121.54,\"power\":10,\"carStatus\":\"NORMAL\",\"riding\":false},"
+								+ "{\"no\":\"L2\",\"lat\":25.05,\"lng\":121.55,\"power\":80,\"carStatus\":\"NORMAL\",\"riding\":false}]"))
+				.andExpect(status().isCreated());
+		mvc.perform(post("/load/car").contentType(MediaType.APPLICATION_JSON)
+						.content("[{\"no\":\"L1\",\"lat\":25.06,\"lng\":121.56,\"power\":90,\"carStatus\":\"REPAIR\",\"riding\":false},"
+								+ "{\"no\":\"L2\",\"lat\":25.05,\"lng\":121.55,\"power\":70,\"carStatus\":\"NORMAL\",\"riding\":false}]"))
+				.andExpect(status().isCreated());
+
+		Car car = carRepo.findByNo("L1");
+		assertEquals(90, car.getPower());
+		assertEquals(25.06, car.getLat());
+		assertEquals("REPAIR", car.getCarStatus().name());
+		// Loading bumps the version, so a rent based on the old state is rejected
+		assertEquals(1L, car.getVersion());
+		assertEquals(70, carRepo.findByNo("L2").getPower());
+	}
+
+	@Test
+	void loadingTheSameChargeStationsTwiceUpdatesThem() throws Exception {
+		mvc.perform(post("/load/chargeStation").contentType(MediaType.APPLICATION_JSON)
+						.content("[{\"no\":\"LS1\",\"lat\":25.041,\"lng\":121.541}]"))
+				.andExpect(status().isCreated());
+		mvc.perform(post("/load/chargeStation").contentType(MediaType.APPLICATION_JSON)
+						.content("[{\"no\":\"LS1\",\"lat\":25.042,\"lng\":121.542}]"))
+				.andExpect(status().isCreated());
+
+		assertEquals(25.042, chargeStationRepo.findAll().stream().filter(station -> "LS1".equals(station.getNo())).findFirst().orElseThrow().getLat());
+	}
+}
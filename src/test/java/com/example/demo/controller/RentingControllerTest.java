@@ -0,0 +1,56 @@
+package com.example.demo.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pages through rent records over HTTP against H2.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class RentingControllerTest {
+
+	@Autowired
+	private MockMvc mvc;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void malformedCursorsAreBadRequests() throws Exception {
+		JsonNode login = signupAndLogin("pager");
+		String path = "/renting/records/" + login.get("id").asLong() + "/page";
+		String token = login.get("token").asText();
+
+		mvc.perform(get(path).header("Authorization", token))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.nextCursor").doesNotExist());
+		for (String cursor : new String[]{"zzz", "bm8tc2VwYXJhdG9y", "eHx5"}) {
+			mvc.perform(get(path).param("cursor", cursor).header("Authorization", token))
+					.andExpect(status().isBadRequest())
+					.andExpect(jsonPath("$.error").value("Invalid cursor"));
+		}
+	}
+
+	private JsonNode signupAndLogin(String username) throws Exception {
+		mvc.perform(post("/account/signup").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"username\":\"" + username + "\",\"password\":\"secret1\",\"cardNumber\":\"1234567812345678\","
+								+ "\"safeNumber\":\"123\",\"phoneNumber\":\"0912345678\",\"email\":\"a@b.c\"}"))
+				.andExpect(status().isOk());
+		String body = mvc.perform(post("/account/login").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"username\":\"" + username + "\",\"password\":\"secret1\"}"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		return objectMapper.readTree(body);
+	}
+}
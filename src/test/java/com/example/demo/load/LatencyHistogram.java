@@ -0,0 +1,70 @@
+package com.example.demo.load;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * A lock-free latency histogram in microseconds with buckets of at most 1/64 of their value,
+ * so percentiles are accurate to under 2% whatever the range of the latencies.
+ */
+final class LatencyHistogram {
+	// Values below 128 get a bucket each; above, each power of two is split into 64 buckets
+	private static final int SUB_BUCKETS = 64;
+	private static final int SUB_BUCKET_BITS = 6;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(SUB_BUCKETS * 60);
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	void record(long micros) {
+		long value = Math.max(0, micros);
+		buckets.incrementAndGet(index(value));
+		max.accumulate(value);
+	}
+
+	long count() {
+		long count = 0;
+		for (int i = 0; i < buckets.length(); i++) {
+			count += buckets.get(i);
+		}
+		return count;
+	}
+
+	long max() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the lowest value of the bucket holding the given percentile.
+	 */
+	long percentile(double percentile) {
+		long count = count();
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < buckets.length(); i++) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return lowestValue(i);
+			}
+		}
+		return max();
+	}
+
+	static int index(long value) {
+		if (value < 2 * SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return SUB_BUCKETS * shift + (int) (value >>> shift);
+	}
+
+	static long lowestValue(int index) {
+		if (index < 2 * SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		return (long) (index - SUB_BUCKETS * shift) << shift;
+	}
+}
@@ -0,0 +1,325 @@
+package com.example.demo.load;
+
+import com.example.demo.model.Car;
+import com.example.demo.model.CarStatus;
+import com.example.demo.model.Renter;
+import com.example.demo.repository.CarRepository;
+import com.example.demo.repository.RentRecordRepository;
+import com.example.demo.repository.RenterRepository;
+import com.example.demo.service.CarService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the rent and return cycle through the HTTP API of a running application backed by an in-memory
+ * database: renters log in, search for cars, rent, ride, return and pay, while repairers charge cars with
+ * no power. Reports latency percentiles and throughput per endpoint and fails on double rents.
+ * <p>
+ * Only runs when asked for, for example:
+ * mvn test -Dtest=RentCycleLoadTest -Dloadtest=true -Dloadtest.renters=2000 -Dloadtest.duration=PT60S
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+		"spring.datasource.hikari.maximum-pool-size=50",
+		"server.tomcat.threads.max=400",
+		"logging.level.root=WARN"})
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class RentCycleLoadTest {
+	private static final int RENTERS = Integer.getInteger("loadtest.renters", 1000);
+	private static final int REPAIRERS = Integer.getInteger("loadtest.repairers", 10);
+	private static final int CARS = Integer.getInteger("loadtest.cars", 5000);
+	private static final Duration DURATION = Duration.parse(System.getProperty("loadtest.duration", "PT30S"));
+	private static final int RIDE_MILLIS = Integer.getInteger("loadtest.ride-millis", 20);
+	private static final int MAX_RETURN_ATTEMPTS = 5;
+	private static final String PASSWORD = "password";
+	private static final double MIN_LATITUDE = 25.026708;
+	private static final double MAX_LATITUDE = 25.068277;
+	private static final double MIN_LONGITUDE = 121.511162;
+	private static final double MAX_LONGITUDE = 121.567045;
+
+	@LocalServerPort
+	private int port;
+	@Autowired
+	private CarService carService;
+	@Autowired
+	private CarRepository carRepo;
+	@Autowired
+	private RenterRepository renterRepo;
+	@Autowired
+	private RentRecordRepository rentRecordRepo;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+	private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+	// Car number -> renter the client believes holds it
+	private final Map<String, Long> holders = new ConcurrentHashMap<>();
+	private final Queue<String> anomalies = new ConcurrentLinkedQueue<>();
+	private final LongAdder rents = new LongAdder();
+	private final LongAdder returns = new LongAdder();
+
+	@Test
+	void rentAndReturnUnderLoad() throws Exception {
+		carRepo.saveAll(fleet());
+		carService.initIndex();
+		ExecutorService pool = Executors.newFixedThreadPool(RENTERS + REPAIRERS);
+		try {
+			List<Future<?>> signups = new ArrayList<>();
+			for (int i = 0; i < RENTERS; i++) {
+				int user = i;
+				signups.add(pool.submit(() -> signup("renter" + user, false)));
+			}
+			for (int i = 0; i < REPAIRERS; i++) {
+				int user = i;
+				signups.add(pool.submit(() -> signup("repairer" + user, true)));
+			}
+			for (Future<?> signup : signups) {
+				signup.get();
+			}
+
+			long deadline = System.nanoTime() + DURATION.toNanos();
+			long start = System.nanoTime();
+			List<Future<?>> users = new ArrayList<>();
+			for (int i = 0; i < RENTERS; i++) {
+				int user = i;
+				users.add(pool.submit(() -> rentCycles("renter" + user, deadline, new SplittableRandom(user))));
+			}
+			for (int i = 0; i < REPAIRERS; i++) {
+				int user = i;
+				users.add(pool.submit(() -> chargeCycles("repairer" + user, deadline, new SplittableRandom(-user - 1))));
+			}
+			for (Future<?> user : users) {
+				user.get();
+			}
+			report((System.nanoTime() - start) / 1e9);
+		} finally {
+			pool.shutdownNow();
+			pool.awaitTermination(10, TimeUnit.SECONDS);
+		}
+		checkDatabase();
+		anomalies.forEach(System.out::println);
+		assertTrue(anomalies.isEmpty(), anomalies.size() + " anomalies, the first: " + anomalies.peek());
+	}
+
+	private Void signup(String username, boolean repairer) throws IOException, InterruptedException {
+		String body = repairer
+				? json(Map.of("username", username, "password", PASSWORD))
+				: json(Map.of("username", username, "password", PASSWORD, "cardNumber", "1234567812345678",
+				"safeNumber", "123", "phoneNumber", "0912345678", "email", username + "@example.com"));
+		Response response = send(repairer ? "POST /account/newRepairer" : "POST /account/signup",
+				post(repairer ? "/account/newRepairer" : "/account/signup", null, body));
+		if (response.status != 200) {
+			throw new IllegalStateException("Signup of " + username + " failed with " + response.status);
+		}
+		return null;
+	}
+
+	private Void rentCycles(String username, long deadline, SplittableRandom random) throws Exception {
+		Session session = login(username);
+		while (System.nanoTime() < deadline) {
+			double lat = latitude(random);
+			double lng = longitude(random);
+			Response nearby = send("GET /renting/cars/nearest", get("/renting/cars/nearest?latitude=" + lat + "&longitude=" + lng + "&k=5"));
+			if (nearby.status != 200 || nearby.body.isEmpty()) {
+				continue;
+			}
+			String carNo = nearby.body.get(random.nextInt(nearby.body.size())).get("no").asText();
+			Response rent = send("POST /renting/rent", post("/renting/rent/" + session.id, session.token, json(Map.of("carNo", carNo))));
+			if (rent.status != 200) {
+				if (rent.status == 403 && rent.text.contains("Already renting")) {
+					anomalies.add(username + " was told it is already renting, but holds no car");
+				}
+				continue;
+			}
+			rents.increment();
+			Long previous = holders.putIfAbsent(carNo, session.id);
+			if (previous != null) {
+				anomalies.add("Double rent of " + carNo + " by users " + previous + " and " + session.id);
+			}
+			if (RIDE_MILLIS > 0) {
+				Thread.sleep(random.nextInt(RIDE_MILLIS));
+			}
+			// The car is released before the request, so a renter winning it right after the return is no anomaly
+			holders.remove(carNo, session.id);
+			String returnForm = json(Map.of("lat", latitude(random), "lng", longitude(random), "distance", random.nextDouble() * 20,
+					"power", random.nextInt(101), "chargeCount", random.nextInt(2), "usedCoupon", false));
+			Response returned = send("POST /renting/return", post("/renting/return/" + session.id, session.token, returnForm));
+			// A repairer charging the car mid-ride makes the return conflict; retrying reads the latest car
+			for (int attempt = 1; returned.status == 409 && attempt < MAX_RETURN_ATTEMPTS; attempt++) {
+				returned = send("POST /renting/return", post("/renting/return/" + session.id, session.token, returnForm));
+			}
+			if (returned.status == 200) {
+				returns.increment();
+			} else {
+				holders.putIfAbsent(carNo, session.id);
+				anomalies.add(username + " could not return " + carNo + ": " + returned.status + " " + returned.text);
+				return null;
+			}
+		}
+		return null;
+	}
+
+	private Void chargeCycles(String username, long deadline, SplittableRandom random) throws Exception {
+		Session session = login(username);
+		while (System.nanoTime() < deadline) {
+			Response queue = send("GET /repairing/queue/noPower", get("/repairing/queue/noPower?size=20"));
+			List<String> idle = new ArrayList<>();
+			if (queue.status == 200) {
+				for (JsonNode car : queue.body) {
+					if (!car.get("riding").asBoolean()) {
+						idle.add(car.get("no").asText());
+					}
+				}
+			}
+			if (idle.isEmpty()) {
+				Thread.sleep(50);
+				continue;
+			}
+			String carNo = idle.get(random.nextInt(idle.size()));
+			send("POST /repairing/charge", post("/repairing/charge/" + session.id, session.token, json(Map.of("carNo", carNo))));
+		}
+		return null;
+	}
+
+	private Session login(String username) throws IOException, InterruptedException {
+		Response response = send("POST /account/login", post("/account/login", null, json(Map.of("username", username, "password", PASSWORD))));
+		if (response.status != 200) {
+			throw new IllegalStateException("Login of " + username + " failed with " + response.status);
+		}
+		return new Session(response.body.get("id").asLong(), response.body.get("token").asText());
+	}
+
+	/**
+	 * Cross-checks the database once every renter has stopped: no renter or car may still be in a ride,
+	 * and every successful rent must have left exactly one rent record.
+	 */
+	private void checkDatabase() {
+		for (Car car : carRepo.findAll()) {
+			if (car.isRiding()) {
+				anomalies.add("Car " + car.getNo() + " is still marked as riding after every renter returned");
+			}
+		}
+		for (Renter renter : renterRepo.findAll()) {
+			if (renter.isRenting()) {
+				anomalies.add("Renter " + renter.getUserId() + " is still renting after returning");
+			}
+		}
+		long records = rentRecordRepo.count();
+		if (records != rents.sum()) {
+			anomalies.add(rents.sum() + " successful rents left " + records + " rent records");
+		}
+	}
+
+	private void report(double seconds) {
+		System.out.printf("%nLoad test: %d renters, %d repairers, %d cars, %.1f s, %d rents, %d returns, %d anomalies%n",
+				RENTERS, REPAIRERS, CARS, seconds, rents.sum(), returns.sum(), anomalies.size());
+		System.out.printf("%-30s %9s %10s %9s %9s %9s %9s  %s%n", "endpoint", "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "statuses");
+		for (Map.Entry<String, Endpoint> entry : new TreeMap<>(endpoints).entrySet()) {
+			Endpoint endpoint = entry.getValue();
+			LatencyHistogram latencies = endpoint.latencies;
+			Map<Integer, Long> statuses = new TreeMap<>();
+			endpoint.statuses.forEach((status, count) -> statuses.put(status, count.sum()));
+			System.out.printf("%-30s %9d %10.1f %9.2f %9.2f %9.2f %9.2f  %s%n", entry.getKey(), latencies.count(),
+					latencies.count() / seconds, latencies.percentile(50) / 1000.0, latencies.percentile(99) / 1000.0,
+					latencies.percentile(99.9) / 1000.0, latencies.max() / 1000.0, statuses);
+		}
+	}
+
+	private Response send(String name, HttpRequest request) throws IOException, InterruptedException {
+		Endpoint endpoint = endpoints.computeIfAbsent(name, key -> new Endpoint());
+		long start = System.nanoTime();
+		HttpResponse<String> response;
+		try {
+			response = client.send(request, HttpResponse.BodyHandlers.ofString());
+		} catch (IOException e) {
+			// Counted as status -1, like a server error the virtual user carries on
+			endpoint.record(-1, System.nanoTime() - start);
+			return new Response(-1, e.toString(), objectMapper.nullNode());
+		}
+		endpoint.record(response.statusCode(), System.nanoTime() - start);
+		String text = response.body();
+		JsonNode body = text.isEmpty() || response.statusCode() != 200 ? objectMapper.nullNode() : objectMapper.readTree(text);
+		return new Response(response.statusCode(), text, body);
+	}
+
+	private HttpRequest get(String path) {
+		return HttpRequest.newBuilder(uri(path)).GET().build();
+	}
+
+	private HttpRequest post(String path, String token, String body) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(uri(path))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(body));
+		if (token != null) {
+			builder.header("Authorization", token);
+		}
+		return builder.build();
+	}
+
+	private URI uri(String path) {
+		return URI.create("http://localhost:" + port + path);
+	}
+
+	private String json(Object value) throws IOException {
+		return objectMapper.writeValueAsString(value);
+	}
+
+	private static List<Car> fleet() {
+		SplittableRandom random = new SplittableRandom(42);
+		List<Car> cars = new ArrayList<>(CARS);
+		for (int i = 0; i < CARS; i++) {
+			cars.add(new Car("LOAD" + i, latitude(random), longitude(random), random.nextInt(101), CarStatus.NORMAL, false, 0L));
+		}
+		return cars;
+	}
+
+	private static double latitude(SplittableRandom random) {
+		return MIN_LATITUDE + random.nextDouble() * (MAX_LATITUDE - MIN_LATITUDE);
+	}
+
+	private static double longitude(SplittableRandom random) {
+		return MIN_LONGITUDE + random.nextDouble() * (MAX_LONGITUDE - MIN_LONGITUDE);
+	}
+
+	private record Session(long id, String token) {
+	}
+
+	private record Response(int status, String text, JsonNode body) {
+	}
+
+	private static final class Endpoint {
+		private final LatencyHistogram latencies = new LatencyHistogram();
+		private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+		void record(int status, long nanos) {
+			latencies.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+			statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package com.example.demo.security;
+
+import com.example.demo.service.SignedTokenService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Authenticates requests with signed tokens over HTTP against H2.
+ */
+@SpringBootTest(properties = "account.token.mode=signed")
+@AutoConfigureMockMvc
+class SignedTokenAuthenticationTest {
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private SignedTokenService signedTokenService;
+
+	@Test
+	void theRoleComesFromTheToken() throws Exception {
+		// No account row exists for these users: the role can only come from the token
+		mvc.perform(post("/events/replay/987655").header("Authorization", signedTokenService.issue(987655L, false)))
+				.andExpect(status().isAccepted());
+		mvc.perform(post("/events/replay/987656").header("Authorization", signedTokenService.issue(987656L, true)))
+				.andExpect(status().isForbidden());
+	}
+
+	@Test
+	void tokensOnlyActForTheirOwnUser() throws Exception {
+		String token = signedTokenService.issue(987657L, false);
+
+		mvc.perform(post("/events/replay/987658").header("Authorization", token)).andExpect(status().isUnauthorized());
+		mvc.perform(post("/events/replay/987657").header("Authorization", token + "x")).andExpect(status().isUnauthorized());
+		mvc.perform(post("/events/replay/987657")).andExpect(status().isUnauthorized());
+	}
+}
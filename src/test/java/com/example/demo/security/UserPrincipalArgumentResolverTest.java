@@ -0,0 +1,78 @@
+package com.example.demo.security;
+
+import com.example.demo.service.SessionStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Authenticates requests with session tokens over HTTP against H2.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserPrincipalArgumentResolverTest {
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private SessionStore sessionStore;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void requestsWithoutAValidTokenAreUnauthorized() throws Exception {
+		JsonNode login = signupAndLogin("resolver-a");
+		long id = login.get("id").asLong();
+
+		mvc.perform(get("/account/info/" + id)).andExpect(status().isUnauthorized());
+		mvc.perform(get("/account/info/" + id).header("Authorization", "bad")).andExpect(status().isUnauthorized());
+		mvc.perform(get("/account/info/" + id).header("Authorization", "")).andExpect(status().isUnauthorized());
+		mvc.perform(get("/account/info/not-a-number").header("Authorization", login.get("token").asText()))
+				.andExpect(status().isUnauthorized());
+		mvc.perform(get("/account/info/" + id).header("Authorization", login.get("token").asText()))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void tokensOnlyActForTheirOwnUser() throws Exception {
+		JsonNode first = signupAndLogin("resolver-b");
+		JsonNode second = signupAndLogin("resolver-c");
+
+		mvc.perform(get("/account/info/" + second.get("id").asLong()).header("Authorization", first.get("token").asText()))
+				.andExpect(status().isUnauthorized());
+	}
+
+	@Test
+	void theRoleComesFromTheSession() throws Exception {
+		JsonNode renter = signupAndLogin("resolver-d");
+		mvc.perform(post("/events/replay/" + renter.get("id").asLong()).header("Authorization", renter.get("token").asText()))
+				.andExpect(status().isForbidden());
+
+		// A session for a user with no account row: only the session can tell that it is a repairer
+		String token = sessionStore.login(987654L, false);
+		mvc.perform(post("/events/replay/987654").header("Authorization", token))
+				.andExpect(status().isAccepted());
+	}
+
+	private JsonNode signupAndLogin(String username) throws Exception {
+		mvc.perform(post("/account/signup").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"username\":\"" + username + "\",\"password\":\"secret1\",\"cardNumber\":\"1234567812345678\","
+								+ "\"safeNumber\":\"123\",\"phoneNumber\":\"0912345678\",\"email\":\"a@b.c\"}"))
+				.andExpect(status().isOk());
+		String body = mvc.perform(post("/account/login").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"username\":\"" + username + "\",\"password\":\"secret1\"}"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		return objectMapper.readTree(body);
+	}
+}
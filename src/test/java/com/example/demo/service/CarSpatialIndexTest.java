@@ -0,0 +1,116 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Car;
+import com.example.demo.model.CarStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CarSpatialIndexTest {
+
+	@Test
+	void findsOnlyAvailableCarsInsideTheBox() {
+		CarSpatialIndex index = new CarSpatialIndex(0.005);
+		Car riding = new Car("B", 100, 25.041, 121.541);
+		riding.setRiding(true);
+		Car broken = new Car("C", 100, 25.042, 121.542);
+		broken.setCarStatus(CarStatus.BROKEN);
+		index.load(List.of(new Car("A", 100, 25.040, 121.540), riding, broken, new Car("D", 100, 25.060, 121.560)));
+
+		List<Car> cars = index.findAvailable(25.03, 25.05, 121.53, 121.55);
+
+		assertEquals(1, cars.size());
+		assertEquals("A", cars.get(0).getNo());
+	}
+
+	@Test
+	void updateMovesCarsBetweenCellsAndAvailability() {
+		CarSpatialIndex index = new CarSpatialIndex(0.005);
+		Car car = new Car("A", 100, 25.040, 121.540);
+		index.load(List.of(car));
+
+		car.setRiding(true);
+		index.update(car);
+		assertTrue(index.findAvailable(25.0, 25.1, 121.5, 121.6).isEmpty());
+
+		car.setRiding(false);
+		car.setLat(25.065);
+		car.setLng(121.565);
+		index.update(car);
+		assertTrue(index.findAvailable(25.03, 25.05, 121.53, 121.55).isEmpty());
+		assertEquals(1, index.findAvailable(25.06, 25.07, 121.56, 121.57).size());
+	}
+
+	@Test
+	void ridingCountFollowsLoadsAndUpdates() {
+		CarSpatialIndex index = new CarSpatialIndex(0.005);
+		Car riding = new Car("A", 100, 25.040, 121.540);
+		riding.setRiding(true);
+		Car car = new Car("B", 100, 25.041, 121.541);
+		index.load(List.of(riding, car));
+		assertEquals(1, index.ridingCount());
+
+		car.setRiding(true);
+		index.update(car);
+		index.update(car);
+		assertEquals(2, index.ridingCount());
+
+		riding.setRiding(false);
+		index.update(riding);
+		assertEquals(1, index.ridingCount());
+		index.load(List.of());
+		assertEquals(0, index.ridingCount());
+	}
+
+	@Test
+	void wideBoxesWalkOccupiedCells() {
+		CarSpatialIndex index = new CarSpatialIndex(0.005);
+		index.load(List.of(new Car("A", 100, 25.040, 121.540), new Car("B", 100, -33.9, 151.2)));
+
+		assertEquals(2, index.findAvailable(-90, 90, -180, 180).size());
+	}
+
+	@Test
+	void nearestCarsAreRankedByDistance() {
+		CarSpatialIndex index = new CarSpatialIndex(0.001);
+		Car riding = new Car("R", 100, 25.0401, 121.5401);
+		riding.setRiding(true);
+		index.load(List.of(new Car("FAR", 100, 25.060, 121.560), new Car("NEAR", 100, 25.041, 121.541),
+				new Car("MID", 100, 25.045, 121.545), riding));
+
+		List<Car> cars = index.findNearestAvailable(25.040, 121.540, 2);
+
+		assertEquals(List.of("NEAR", "MID"), cars.stream().map(Car::getNo).toList());
+		assertEquals(3, index.findNearestAvailable(25.040, 121.540, 10).size());
+	}
+
+	@Test
+	void listenersSeeUpdatesButNotLoads() {
+		CarSpatialIndex index = new CarSpatialIndex(0.005);
+		List<Car[]> changes = new ArrayList<>();
+		index.addListener((previous, current) -> changes.add(new Car[]{previous, current}));
+		Car car = new Car("A", 100, 25.040, 121.540);
+		index.load(List.of(car));
+		assertTrue(changes.isEmpty());
+
+		car.setPower(40);
+		index.update(car);
+
+		assertEquals(1, changes.size());
+		assertEquals(100, changes.get(0)[0].getPower());
+		assertEquals(40, changes.get(0)[1].getPower());
+	}
+
+	@Test
+	void cellsInRefusesOversizedViewports() {
+		CarSpatialIndex index = new CarSpatialIndex(0.005);
+
+		assertEquals(4, index.cellsIn(25.041, 25.046, 121.541, 121.546, 10).size());
+		assertNull(index.cellsIn(25.0, 25.1, 121.5, 121.6, 10));
+	}
+}
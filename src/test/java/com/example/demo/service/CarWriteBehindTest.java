@@ -0,0 +1,64 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Car;
+import com.example.demo.repository.CarRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Writes releases against H2 while other writers change the same cars.
+ */
+@SpringBootTest
+class CarWriteBehindTest {
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private EntityCache entityCache;
+
+	@Autowired
+	private CarRepository carRepo;
+
+	@Test
+	void releaseIsReappliedWhenTheCarChangedMeanwhile() {
+		Car riding = new Car("W1", 40, 25.04, 121.54);
+		riding.setRiding(true);
+		long version = carRepo.save(riding).getVersion();
+		CarWriteBehind writeBehind = new CarWriteBehind(jdbcTemplate, entityCache, true);
+
+		writeBehind.release("W1", 25.05, 121.55, 30, version);
+		// A repairer changes the status before the release is written
+		jdbcTemplate.update("UPDATE car SET car_status = 'REPAIR', version = version + 1 WHERE no = 'W1'");
+		writeBehind.flush("W1");
+
+		Car car = carRepo.findByNo("W1");
+		assertFalse(car.isRiding());
+		assertEquals(25.05, car.getLat());
+		assertEquals(30, car.getPower());
+		assertEquals("REPAIR", car.getCarStatus().name());
+		assertEquals(version + 2, car.getVersion());
+		assertEquals(1L, writeBehind.stats().get("conflicts"));
+		assertEquals(0L, writeBehind.stats().get("pending"));
+	}
+
+	@Test
+	void releaseOfADeletedCarIsDropped() {
+		Car riding = new Car("W2", 40, 25.04, 121.54);
+		riding.setRiding(true);
+		long version = carRepo.save(riding).getVersion();
+		CarWriteBehind writeBehind = new CarWriteBehind(jdbcTemplate, entityCache, true);
+
+		writeBehind.release("W2", 25.05, 121.55, 30, version);
+		jdbcTemplate.update("DELETE FROM car WHERE no = 'W2'");
+		writeBehind.flushAll();
+
+		assertEquals(1L, writeBehind.stats().get("dropped"));
+		assertEquals(0L, writeBehind.stats().get("pending"));
+	}
+}
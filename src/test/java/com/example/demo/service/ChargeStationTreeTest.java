@@ -0,0 +1,36 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ChargeStation;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChargeStationTreeTest {
+
+	@Test
+	void matchesBruteForceSearch() {
+		Random random = new Random(42);
+		List<ChargeStation> stations = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			stations.add(new ChargeStation("S" + i, 25.02 + random.nextDouble() * 0.05, 121.51 + random.nextDouble() * 0.06));
+		}
+		ChargeStationTree tree = new ChargeStationTree(stations);
+
+		List<String> inSquare = tree.findInSquare(25.03, 25.05, 121.52, 121.54).stream().map(ChargeStation::getNo).sorted().toList();
+		List<String> expectedInSquare = stations.stream()
+				.filter(s -> s.getLat() >= 25.03 && s.getLat() <= 25.05 && s.getLng() >= 121.52 && s.getLng() <= 121.54)
+				.map(ChargeStation::getNo).sorted().toList();
+		assertEquals(expectedInSquare, inSquare);
+
+		List<String> nearest = tree.findNearest(25.04, 121.53, 5).stream().map(ChargeStation::getNo).toList();
+		List<String> expectedNearest = stations.stream()
+				.sorted(Comparator.comparingDouble(s -> distance.haversine(25.04, 121.53, s.getLat(), s.getLng())))
+				.limit(5).map(ChargeStation::getNo).toList();
+		assertEquals(expectedNearest, nearest);
+	}
+}
@@ -0,0 +1,77 @@
+package com.example.demo.service;
+
+import com.example.demo.config.GeofenceProperties;
+import com.example.demo.model.Car;
+import com.example.demo.model.CarStatus;
+import com.example.demo.response.DemandCell;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DemandForecasterTest {
+	private static final double LAT = 25.04;
+	private static final double LNG = 121.54;
+
+	private static DemandCell cellAt(List<DemandCell> cells, double lat, double lng, double cellSize) {
+		return cells.stream()
+				.filter(cell -> Math.abs(cell.getLat() - lat) <= cellSize / 2 && Math.abs(cell.getLng() - lng) <= cellSize / 2)
+				.findFirst().orElseThrow();
+	}
+
+	@Test
+	void ratesDecayWithTheAgeOfEvents() {
+		DemandForecaster forecaster = new DemandForecaster(new CarSpatialIndex(0.005), new GeofenceService(new GeofenceProperties()),
+				0.005, Duration.ofHours(1));
+		long now = System.currentTimeMillis();
+		forecaster.apply(RentalEvent.rented(1, "C1", 1, LAT, LNG, now));
+		forecaster.apply(RentalEvent.rented(2, "C2", 2, LAT, LNG, now));
+		forecaster.apply(RentalEvent.rented(3, "C3", 3, LAT, LNG, now - Duration.ofHours(1).toMillis()));
+		forecaster.apply(RentalEvent.returned(1, "C1", 1, LAT, LNG, 50, 1, 10, 3, 0, false, now));
+
+		DemandCell cell = cellAt(forecaster.forecast(Duration.ofHours(1), now), LAT, LNG, forecaster.getCellSize());
+		assertEquals(2 + Math.exp(-1), cell.getRentsPerHour(), 1e-9);
+		assertEquals(1, cell.getReturnsPerHour(), 1e-9);
+
+		DemandCell later = cellAt(forecaster.forecast(Duration.ofHours(1), now + Duration.ofHours(2).toMillis()), LAT, LNG,
+				forecaster.getCellSize());
+		assertEquals((2 + Math.exp(-1)) * Math.exp(-2), later.getRentsPerHour(), 1e-9);
+
+		// Events far apart move the landmark without changing the rates
+		forecaster.apply(RentalEvent.rented(4, "C4", 4, LAT, LNG, now + Duration.ofHours(100).toMillis()));
+		DemandCell moved = cellAt(forecaster.forecast(Duration.ofHours(1), now + Duration.ofHours(100).toMillis()), LAT, LNG,
+				forecaster.getCellSize());
+		assertEquals(1, moved.getRentsPerHour(), 1e-9);
+	}
+
+	@Test
+	void cellsWithMoreRentsThanCarsAreShort() {
+		CarSpatialIndex index = new CarSpatialIndex(0.005);
+		DemandForecaster forecaster = new DemandForecaster(index, new GeofenceService(new GeofenceProperties()), 0.005,
+				Duration.ofHours(1));
+		forecaster.register();
+		forecaster.load(List.of(new Car("C1", LAT, LNG, 100, CarStatus.NORMAL, false, 0L)));
+		index.load(List.of(new Car("C1", LAT, LNG, 100, CarStatus.NORMAL, false, 0L)));
+		index.update(new Car("C2", LAT, LNG, 100, CarStatus.NORMAL, false, 0L));
+		index.update(new Car("C3", 25.06, 121.56, 100, CarStatus.NORMAL, false, 0L));
+		// A rented car is no longer available
+		index.update(new Car("C1", LAT, LNG, 100, CarStatus.NORMAL, true, 0L));
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 5; i++) {
+			forecaster.apply(RentalEvent.rented(i, "C" + i, i, LAT, LNG, now));
+		}
+
+		List<DemandCell> cells = forecaster.forecast(Duration.ofHours(1), now);
+		assertEquals(1, cellAt(cells, LAT, LNG, forecaster.getCellSize()).getAvailable());
+		assertEquals(1, cellAt(cells, 25.06, 121.56, forecaster.getCellSize()).getAvailable());
+
+		List<DemandCell> shortages = forecaster.shortages(Duration.ofHours(1), 1, 10);
+		assertEquals(1, shortages.size());
+		assertEquals(4, shortages.get(0).getShortfall(), 0.01);
+		assertTrue(forecaster.shortages(Duration.ofMinutes(6), 1, 10).isEmpty());
+		assertEquals(2, forecaster.heatmap(Duration.ofHours(1)).size());
+	}
+}
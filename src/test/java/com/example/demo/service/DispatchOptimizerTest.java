@@ -0,0 +1,57 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DispatchOptimizerTest {
+
+	@Test
+	void twoOptUntanglesACrossingTour() {
+		// Start at 0 and visit four points on a line; the nearest-neighbour tour 0-1-3-2-4 crosses back
+		double[][] points = {{0, 0}, {1, 0}, {2, 0}, {3, 0}, {4, 0}};
+		double[][] matrix = matrix(points);
+
+		int[] tour = DispatchOptimizer.twoOpt(matrix, new int[]{0, 1, 3, 2, 4}, Long.MAX_VALUE);
+
+		assertArrayEquals(new int[]{0, 1, 2, 3, 4}, tour);
+		assertEquals(4, DispatchOptimizer.length(matrix, tour), 1e-9);
+	}
+
+	@Test
+	void plannedTourVisitsEveryPointOnceAndNeverGetsLonger() {
+		Random random = new Random(42);
+		double[][] points = new double[200][];
+		for (int i = 0; i < points.length; i++) {
+			points[i] = new double[]{random.nextDouble() * 5000, random.nextDouble() * 5000};
+		}
+		double[][] matrix = matrix(points);
+
+		int[] greedy = DispatchOptimizer.nearestNeighbour(matrix, 1);
+		double greedyLength = DispatchOptimizer.length(matrix, greedy);
+		int[] improved = DispatchOptimizer.twoOpt(matrix, greedy.clone(), Long.MAX_VALUE);
+
+		assertEquals(0, improved[0]);
+		int[] sorted = improved.clone();
+		Arrays.sort(sorted);
+		for (int i = 0; i < sorted.length; i++) {
+			assertEquals(i, sorted[i]);
+		}
+		assertTrue(DispatchOptimizer.length(matrix, improved) <= greedyLength);
+	}
+
+	private static double[][] matrix(double[][] points) {
+		double[][] matrix = new double[points.length][points.length];
+		for (int i = 0; i < points.length; i++) {
+			for (int j = 0; j < points.length; j++) {
+				matrix[i][j] = Math.hypot(points[i][0] - points[j][0], points[i][1] - points[j][1]);
+			}
+		}
+		return matrix;
+	}
+}
@@ -0,0 +1,108 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Car;
+import com.example.demo.model.CarStatus;
+import com.example.demo.model.UserInfo;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EntityCacheTest {
+
+	private static Function<String, Car> loader(AtomicInteger loads) {
+		return no -> {
+			loads.incrementAndGet();
+			return new Car(no, 25.04, 121.54, 80, CarStatus.NORMAL, false, 0L);
+		};
+	}
+
+	private static Function<String, UserInfo> userLoader(AtomicInteger loads, int couponCount) {
+		return username -> {
+			loads.incrementAndGet();
+			return new UserInfo(7L, username, "secret", null, null, null, null, true, couponCount, null);
+		};
+	}
+
+	@Test
+	void loadedEntitiesAreCached() {
+		EntityCache cache = new EntityCache(100, Duration.ofMinutes(10));
+		AtomicInteger loads = new AtomicInteger();
+
+		assertEquals("C1", cache.getCar("C1", loader(loads)).getNo());
+		cache.getCar("C1", loader(loads));
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	void loadsRacingWithAWriteOfTheirKeyAreNotCached() {
+		EntityCache cache = new EntityCache(100, Duration.ofMinutes(10));
+		AtomicInteger loads = new AtomicInteger();
+
+		Function<String, Car> evicting = no -> {
+			cache.evictCar(no);
+			return loader(loads).apply(no);
+		};
+		cache.getCar("C1", evicting);
+		cache.getCar("C1", loader(loads));
+		assertEquals(2, loads.get());
+
+		// The state put during the load is kept rather than the one loaded
+		Function<String, Car> putting = no -> {
+			cache.putCar(new Car(no, 25.05, 121.55, 30, CarStatus.NORMAL, false, 1L));
+			return loader(loads).apply(no);
+		};
+		cache.getCar("C2", putting);
+		assertEquals(30, cache.getCar("C2", loader(loads)).getPower());
+		assertEquals(3, loads.get());
+	}
+
+	@Test
+	void writesOfOtherKeysDoNotStopCaching() {
+		EntityCache cache = new EntityCache(100, Duration.ofMinutes(10));
+		AtomicInteger loads = new AtomicInteger();
+
+		Function<String, Car> evictingOthers = no -> {
+			cache.evictCar("C9");
+			cache.evictUser(7L);
+			return loader(loads).apply(no);
+		};
+		cache.getCar("C1", evictingOthers);
+		cache.getCar("C1", loader(loads));
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	void usersLoadedByNameAreCachedOnceTheirIdIsKnown() {
+		EntityCache cache = new EntityCache(100, Duration.ofMinutes(10));
+		AtomicInteger loads = new AtomicInteger();
+
+		cache.getUserByName("alice", userLoader(loads, 0));
+		assertNull(cache.findUser(7L));
+		cache.getUserByName("alice", userLoader(loads, 0));
+		cache.getUserByName("alice", userLoader(loads, 0));
+		assertEquals(2, loads.get());
+		assertEquals(0, cache.findUser(7L).getCouponCount());
+	}
+
+	@Test
+	void usersLoadedByNameRacingWithAnEvictionAreNotCached() {
+		EntityCache cache = new EntityCache(100, Duration.ofMinutes(10));
+		AtomicInteger loads = new AtomicInteger();
+		cache.getUserByName("alice", userLoader(loads, 0));
+
+		// Coupons are granted while the old state is being read
+		Function<String, UserInfo> evicting = username -> {
+			UserInfo stale = userLoader(loads, 0).apply(username);
+			cache.evictUser(7L);
+			return stale;
+		};
+		assertEquals(0, cache.getUserByName("alice", evicting).getCouponCount());
+		assertNull(cache.findUser(7L));
+		assertEquals(3, cache.getUserByName("alice", userLoader(loads, 3)).getCouponCount());
+	}
+}
@@ -0,0 +1,172 @@
+package com.example.demo.service;
+
+import com.example.demo.model.CarStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventLogTest {
+
+	@TempDir
+	Path directory;
+
+	private EventLog open() {
+		return open(0);
+	}
+
+	private EventLog open(int retentionSegments) {
+		return new EventLog(directory.toString(), DataSize.ofKilobytes(4), Duration.ofMillis(10), retentionSegments);
+	}
+
+	private long segmentFiles() throws Exception {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(path -> path.toString().endsWith(".log")).count();
+		}
+	}
+
+	private static List<RentalEvent> readAll(EventLog log) {
+		List<RentalEvent> events = new ArrayList<>();
+		log.read(log.start(), Integer.MAX_VALUE, events::add);
+		return events;
+	}
+
+	@Test
+	void eventsAreReadBackInOrder() throws Exception {
+		EventLog log = open();
+		assertEquals(0, log.append(RentalEvent.rented(7, "C1", 11, 31.2, 121.4, 1000)));
+		assertEquals(1, log.append(RentalEvent.returned(7, "C1", 11, 31.3, 121.5, 80, 2.5, 12, 30, 1, true, 2000)));
+		assertEquals(2, log.append(RentalEvent.statusChanged("C1", CarStatus.values()[0], 3000)));
+
+		List<RentalEvent> events = readAll(log);
+		log.close();
+
+		assertEquals(3, events.size());
+		assertEquals(RentalEvent.Type.RENT, events.get(0).type());
+		RentalEvent returned = events.get(1);
+		assertEquals(1, returned.sequence());
+		assertEquals("C1", returned.carNo());
+		assertEquals(11, returned.recordId());
+		assertEquals(31.3, returned.lat());
+		assertEquals(80, returned.power());
+		assertEquals(30, returned.bill());
+		assertTrue(returned.usedCoupon());
+		assertNull(returned.carStatus());
+		assertEquals(CarStatus.values()[0], events.get(2).carStatus());
+	}
+
+	@Test
+	void fullSegmentsRollOver() throws Exception {
+		EventLog log = open();
+		for (int i = 0; i < 200; i++) {
+			log.append(RentalEvent.charged("C" + i, 31, 121, 100, i));
+		}
+		List<RentalEvent> events = readAll(log);
+		log.close();
+
+		assertEquals(200, events.size());
+		for (int i = 0; i < 200; i++) {
+			assertEquals(i, events.get(i).sequence());
+			assertEquals("C" + i, events.get(i).carNo());
+		}
+		assertTrue(segmentFiles() > 1);
+	}
+
+	@Test
+	void segmentsPastTheRetentionAreDeleted() throws Exception {
+		EventLog log = open(2);
+		for (int i = 0; i < 200; i++) {
+			log.append(RentalEvent.charged("C" + i, 31, 121, 100, i));
+		}
+		List<RentalEvent> events = readAll(log);
+		List<RentalEvent> fromDeleted = new ArrayList<>();
+		log.read(new EventLog.Position(0, 0), Integer.MAX_VALUE, fromDeleted::add);
+		log.close();
+
+		assertEquals(2, segmentFiles());
+		assertTrue(events.size() < 200);
+		assertEquals(199, events.get(events.size() - 1).sequence());
+		for (int i = 1; i < events.size(); i++) {
+			assertEquals(events.get(i - 1).sequence() + 1, events.get(i).sequence());
+		}
+		assertEquals(events.size(), fromDeleted.size());
+
+		EventLog reopened = open(1);
+		assertEquals(200, reopened.nextSequence());
+		assertEquals(1, segmentFiles());
+		reopened.close();
+	}
+
+	@Test
+	void undecodableEventsAreSkipped() throws Exception {
+		EventLog log = open();
+		log.append(RentalEvent.charged("C0", 31, 121, 100, 0));
+		log.append(RentalEvent.charged("C1", 31, 121, 100, 1));
+		log.close();
+		// An unknown event type, with a valid checksum
+		try (FileChannel segment = FileChannel.open(directory.resolve(String.format("%010d.log", 0)), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(4);
+			segment.read(header, 0);
+			ByteBuffer payload = ByteBuffer.allocate(header.getInt(0));
+			segment.read(payload, 16);
+			payload.put(0, (byte) 99);
+			CRC32 crc = new CRC32();
+			crc.update(payload.array());
+			segment.write(ByteBuffer.allocate(4).putInt(0, (int) crc.getValue()), 4);
+			segment.write(payload.rewind(), 16);
+		}
+
+		EventLog reopened = open();
+		List<RentalEvent> events = readAll(reopened);
+		assertEquals(1L, reopened.stats().get("undecodable"));
+		reopened.close();
+
+		assertEquals(1, events.size());
+		assertEquals("C1", events.get(0).carNo());
+	}
+
+	@Test
+	void reopenedLogsContinueAfterTheLastCompleteEvent() throws Exception {
+		EventLog log = open();
+		for (int i = 0; i < 100; i++) {
+			log.append(RentalEvent.charged("C" + i, 31, 121, 100, i));
+		}
+		EventLog.Position end = log.end();
+		log.close();
+		// A torn record: its length written, its payload not
+		try (FileChannel segment = FileChannel.open(directory.resolve(String.format("%010d.log", end.segment())), StandardOpenOption.WRITE)) {
+			segment.write(ByteBuffer.allocate(4).putInt(0, 64), end.offset());
+		}
+
+		EventLog reopened = open();
+		assertEquals(100, reopened.nextSequence());
+		assertEquals(100, reopened.append(RentalEvent.charged("C100", 31, 121, 100, 100)));
+		List<RentalEvent> events = readAll(reopened);
+		reopened.close();
+
+		assertEquals(101, events.size());
+		assertEquals("C100", events.get(100).carNo());
+	}
+
+	@Test
+	void aDirectoryIsOpenedOnce() throws Exception {
+		EventLog log = open();
+		assertThrows(IllegalStateException.class, this::open);
+		log.close();
+	}
+}
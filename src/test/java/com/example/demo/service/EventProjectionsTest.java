@@ -0,0 +1,62 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventProjectionsTest {
+
+	@TempDir
+	Path directory;
+
+	private static void awaitApplied(EventProjections projections, long sequence) throws InterruptedException {
+		for (int i = 0; i < 500 && (long) projections.stats().get("applied") < sequence; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(sequence, projections.stats().get("applied"));
+	}
+
+	@Test
+	void projectionsFollowAndReplayTheLog() throws Exception {
+		EventLog log = new EventLog(directory.toString(), DataSize.ofKilobytes(64), Duration.ofMillis(10), 0);
+		RenterStatusProjection status = new RenterStatusProjection();
+		RentHistoryProjection history = new RentHistoryProjection();
+		FleetPositionProjection fleet = new FleetPositionProjection();
+		EventProjections projections = new EventProjections(log, List.of(status, history, fleet), Duration.ofMillis(1));
+
+		log.append(RentalEvent.rented(7, "C1", 11, 31.2, 121.4, 1000));
+		awaitApplied(projections, 0);
+		assertTrue(status.find(7L).renting());
+		assertEquals("C1", status.find(7L).carNo());
+		assertNull(history.find(7L).get(0).endTime());
+		assertTrue(fleet.find("C1").riding());
+
+		log.append(RentalEvent.returned(7, "C1", 11, 31.3, 121.5, 80, 2.5, 12, 30, 0, false, 2000));
+		awaitApplied(projections, 1);
+		assertFalse(status.find(7L).renting());
+		assertEquals(30, history.find(7L).get(0).bill());
+		assertEquals(2000L, history.find(7L).get(0).endTime());
+		assertFalse(fleet.find("C1").riding());
+		assertEquals(80, fleet.find("C1").power());
+
+		projections.rebuild();
+		for (int i = 0; i < 500 && (long) projections.stats().get("rebuilds") < 1; i++) {
+			Thread.sleep(10);
+		}
+		awaitApplied(projections, 1);
+		assertEquals(1, history.find(7L).size());
+		assertEquals(31.3, fleet.find("C1").lat());
+
+		projections.close();
+		log.close();
+	}
+}
@@ -0,0 +1,129 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Car;
+import com.example.demo.response.FleetDelta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class FleetUpdatePublisherTest {
+	// Cells are 0.005 degrees: these are cell 5008_24308 and the cell north of it
+	private static final double LAT = 25.0412;
+	private static final double LNG = 121.5412;
+	private static final double NORTH_LAT = 25.0462;
+
+	private CarSpatialIndex index;
+	private SimpMessagingTemplate template;
+	private FleetUpdatePublisher publisher;
+
+	@BeforeEach
+	void setUp() {
+		index = new CarSpatialIndex(0.005);
+		template = mock(SimpMessagingTemplate.class);
+		publisher = new FleetUpdatePublisher();
+		ReflectionTestUtils.setField(publisher, "carIndex", index);
+		ReflectionTestUtils.setField(publisher, "messagingTemplate", template);
+		publisher.register();
+	}
+
+	@Test
+	void changesToACarWithinATickAreSentOnce() {
+		Car car = new Car("A", 100, LAT, LNG);
+		index.load(List.of(car));
+		for (int power = 90; power >= 70; power -= 10) {
+			car.setPower(power);
+			index.update(car);
+		}
+
+		publisher.publish();
+
+		Map<String, List<FleetDelta>> sent = sent();
+		assertEquals(Map.of("/topic/cars/5008_24308", 1, "/topic/fleet/5008_24308", 1), sizes(sent));
+		FleetDelta delta = sent.get("/topic/cars/5008_24308").get(0);
+		assertEquals(FleetDelta.MOVE, delta.getType());
+		assertEquals(70, delta.getCar().getPower());
+	}
+
+	@Test
+	void carsMovingBetweenCellsAreSentToBothCells() {
+		Car car = new Car("A", 100, LAT, LNG);
+		index.load(List.of(car));
+		car.setLat(NORTH_LAT);
+		index.update(car);
+
+		publisher.publish();
+
+		Map<String, List<FleetDelta>> sent = sent();
+		assertEquals(4, sent.size());
+		assertEquals(FleetDelta.REMOVE, sent.get("/topic/cars/5008_24308").get(0).getType());
+		assertEquals(FleetDelta.ADD, sent.get("/topic/cars/5009_24308").get(0).getType());
+		assertEquals(FleetDelta.REMOVE, sent.get("/topic/fleet/5008_24308").get(0).getType());
+		assertEquals(FleetDelta.ADD, sent.get("/topic/fleet/5009_24308").get(0).getType());
+	}
+
+	@Test
+	void rentedCarsLeaveTheRenterTopicsOnly() {
+		Car car = new Car("A", 100, LAT, LNG);
+		index.load(List.of(car));
+		car.setRiding(true);
+		index.update(car);
+
+		publisher.publish();
+
+		Map<String, List<FleetDelta>> sent = sent();
+		assertEquals(FleetDelta.REMOVE, sent.get("/topic/cars/5008_24308").get(0).getType());
+		assertEquals(FleetDelta.MOVE, sent.get("/topic/fleet/5008_24308").get(0).getType());
+	}
+
+	@Test
+	void quietTicksSendNothing() {
+		index.load(List.of(new Car("A", 100, LAT, LNG)));
+
+		publisher.publish();
+
+		verify(template, never()).convertAndSend(anyString(), any(Object.class));
+	}
+
+	@Test
+	void viewportsListTheTopicsOfTheirCells() {
+		List<String> topics = publisher.topicsIn(FleetUpdatePublisher.CARS_TOPIC, LAT, NORTH_LAT, LNG, LNG);
+
+		assertEquals(List.of("/topic/cars/5008_24308", "/topic/cars/5009_24308"), topics);
+		// 0.5 degrees square is 10000 cells
+		assertNull(publisher.topicsIn(FleetUpdatePublisher.FLEET_TOPIC, 25.0, 25.5, 121.0, 121.5));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, List<FleetDelta>> sent() {
+		ArgumentCaptor<String> topics = ArgumentCaptor.forClass(String.class);
+		ArgumentCaptor<Object> payloads = ArgumentCaptor.forClass(Object.class);
+		verify(template, atLeast(0)).convertAndSend(topics.capture(), payloads.capture());
+		Map<String, List<FleetDelta>> sent = new HashMap<>();
+		for (int i = 0; i < topics.getAllValues().size(); i++) {
+			// A topic is sent to at most once per tick
+			assertNull(sent.put(topics.getAllValues().get(i), (List<FleetDelta>) payloads.getAllValues().get(i)));
+		}
+		return sent;
+	}
+
+	private static Map<String, Integer> sizes(Map<String, List<FleetDelta>> sent) {
+		Map<String, Integer> sizes = new HashMap<>();
+		sent.forEach((topic, deltas) -> sizes.put(topic, deltas.size()));
+		return sizes;
+	}
+}
@@ -0,0 +1,85 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeofenceTest {
+	// An L-shaped zone: the north-east quarter of the square is cut out
+	private static final Geofence.Zone L_SHAPE = Geofence.Zone.parse("l-shape",
+			"25.00 121.50, 25.00 121.52, 25.01 121.52, 25.01 121.51, 25.02 121.51, 25.02 121.50");
+
+	@Test
+	void classifiesCellsAsInsideOutsideOrEdge() {
+		Geofence geofence = new Geofence(List.of(L_SHAPE), 0.001);
+
+		assertEquals(Geofence.INSIDE, geofence.cellType(25.0055, 121.5055));
+		assertEquals(Geofence.OUTSIDE, geofence.cellType(25.0155, 121.5155));
+		assertEquals(Geofence.EDGE, geofence.cellType(25.0100, 121.5155));
+		assertTrue(geofence.contains(25.005, 121.515));
+		assertFalse(geofence.contains(25.015, 121.515));
+		assertFalse(geofence.contains(24.9, 121.505));
+	}
+
+	@Test
+	void gridAnswersMatchTheExactPolygonTest() {
+		Geofence geofence = new Geofence(List.of(L_SHAPE), 0.0007);
+		Random random = new Random(11);
+		for (int i = 0; i < 100000; i++) {
+			double lat = 24.995 + random.nextDouble() * 0.03;
+			double lng = 121.495 + random.nextDouble() * 0.03;
+			assertEquals(L_SHAPE.contains(lat, lng), geofence.contains(lat, lng), lat + " " + lng);
+		}
+	}
+
+	@Test
+	void pointsOnEdgesAreInside() {
+		Geofence geofence = new Geofence(List.of(L_SHAPE), 0.001);
+
+		// South, north, west and east edges, and the two edges of the cut-out
+		assertTrue(geofence.contains(25.00, 121.505));
+		assertTrue(geofence.contains(25.02, 121.505));
+		assertTrue(geofence.contains(25.015, 121.50));
+		assertTrue(geofence.contains(25.005, 121.52));
+		assertTrue(geofence.contains(25.01, 121.515));
+		assertTrue(geofence.contains(25.015, 121.51));
+		assertFalse(geofence.contains(25.0201, 121.505));
+		assertFalse(geofence.contains(25.005, 121.5201));
+		assertFalse(geofence.contains(25.0101, 121.515));
+	}
+
+	@Test
+	void cornersAreInside() {
+		Geofence geofence = new Geofence(List.of(L_SHAPE), 0.001);
+
+		for (int i = 0; i < L_SHAPE.lats().length; i++) {
+			assertTrue(geofence.contains(L_SHAPE.lats()[i], L_SHAPE.lngs()[i]), "corner " + i);
+		}
+		assertFalse(geofence.contains(25.0201, 121.5201));
+		assertFalse(geofence.contains(25.0101, 121.5101));
+	}
+
+	@Test
+	void pointsOnSlantedEdgesAreInside() {
+		Geofence.Zone triangle = Geofence.Zone.parse("triangle", "25.00 121.50, 25.00 121.52, 25.02 121.50");
+
+		assertTrue(triangle.contains(25.01, 121.51));
+		assertTrue(triangle.contains(25.005, 121.515));
+		assertFalse(triangle.contains(25.0101, 121.5101));
+	}
+
+	@Test
+	void nearestInsideCellIsFullyInside() {
+		Geofence geofence = new Geofence(List.of(L_SHAPE), 0.001);
+
+		int cell = geofence.nearestInsideCell(25.019, 121.519);
+
+		assertTrue(L_SHAPE.contains(geofence.cellLat(cell, 0), geofence.cellLng(cell, 0)));
+		assertTrue(L_SHAPE.contains(geofence.cellLat(cell, 0.999), geofence.cellLng(cell, 0.999)));
+	}
+}
@@ -0,0 +1,84 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyCacheTest {
+
+	@Test
+	void retriesAreAnsweredWithTheFirstResult() {
+		IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(10));
+		AtomicInteger executions = new AtomicInteger();
+
+		String first = cache.execute(1L, "rent", "k1", "C1", () -> "result" + executions.incrementAndGet());
+		String retry = cache.execute(1L, "rent", "k1", "C1", () -> "result" + executions.incrementAndGet());
+		String otherUser = cache.execute(2L, "rent", "k1", "C1", () -> "result" + executions.incrementAndGet());
+		String noKey = cache.execute(1L, "rent", null, "C1", () -> "result" + executions.incrementAndGet());
+
+		assertEquals("result1", first);
+		assertEquals("result1", retry);
+		assertEquals("result2", otherUser);
+		assertEquals("result3", noKey);
+		assertEquals(1, cache.getReplayCount());
+	}
+
+	@Test
+	void keysReusedForAnotherRequestAreRejected() {
+		IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(10));
+		cache.execute(1L, "rent", "k1", "C1", () -> "ok");
+
+		assertThrows(IdempotencyCache.InvalidIdempotencyKeyException.class,
+				() -> cache.execute(1L, "rent", "k1", "C2", () -> "ok"));
+		assertThrows(IdempotencyCache.InvalidIdempotencyKeyException.class,
+				() -> cache.execute(1L, "rent", "k".repeat(129), "C1", () -> "ok"));
+	}
+
+	@Test
+	void failedAttemptsAreNotRemembered() {
+		IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(10));
+
+		assertThrows(IllegalStateException.class, () -> cache.execute(1L, "return", "k1", "form", () -> {
+			throw new IllegalStateException("conflict");
+		}));
+
+		assertEquals("ok", cache.execute(1L, "return", "k1", "form", () -> "ok"));
+	}
+
+	@Test
+	void concurrentDuplicatesWaitForTheFirstAttempt() throws Exception {
+		IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(10));
+		AtomicInteger executions = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> cache.execute(1L, "return", "k1", "form", () -> {
+			executions.incrementAndGet();
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "paid";
+		}));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		CompletableFuture<String> duplicate = CompletableFuture.supplyAsync(() -> cache.execute(1L, "return", "k1", "form", () -> {
+			executions.incrementAndGet();
+			return "paid twice";
+		}));
+		release.countDown();
+
+		assertEquals("paid", first.get(5, TimeUnit.SECONDS));
+		assertEquals("paid", duplicate.get(5, TimeUnit.SECONDS));
+		assertEquals(1, executions.get());
+	}
+}
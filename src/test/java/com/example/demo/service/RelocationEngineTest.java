@@ -0,0 +1,117 @@
+package com.example.demo.service;
+
+import com.example.demo.config.GeofenceProperties;
+import com.example.demo.model.Car;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RelocationEngineTest {
+	private static final double MIN_LATITUDE = 25.026708;
+	private static final double MAX_LATITUDE = 25.068277;
+	private static final double MIN_LONGITUDE = 121.511162;
+	private static final double MAX_LONGITUDE = 121.567045;
+
+	@Test
+	void samplesStayInsideTheAreaEvenForCarsFarOutside() {
+		for (double u : new double[]{0, 0.5, 0.999999}) {
+			double inside = RelocationEngine.sample(25.04, 0.0005, MIN_LATITUDE, MAX_LATITUDE, u);
+			double below = RelocationEngine.sample(24.0, 0.0005, MIN_LATITUDE, MAX_LATITUDE, u);
+			double above = RelocationEngine.sample(26.0, 0.0005, MIN_LATITUDE, MAX_LATITUDE, u);
+
+			assertTrue(Math.abs(inside - 25.04) <= 0.0005);
+			assertTrue(below >= MIN_LATITUDE && below <= MIN_LATITUDE + 0.001);
+			assertTrue(above <= MAX_LATITUDE && above >= MAX_LATITUDE - 0.001);
+		}
+	}
+
+	@Test
+	void seededEnginesReplayTheSameRelocations() {
+		assertEquals(relocations(7L), relocations(7L));
+	}
+
+	@Test
+	void leastCoveredModeMovesCarsIntoAnEmptyCell() {
+		CarSpatialIndex index = new CarSpatialIndex(0.005);
+		List<Car> fleet = new ArrayList<>();
+		for (int row = index.cellIndex(MIN_LATITUDE); row <= index.cellIndex(MAX_LATITUDE); row++) {
+			for (int col = index.cellIndex(MIN_LONGITUDE); col <= index.cellIndex(MAX_LONGITUDE); col++) {
+				double lat = Math.min(MAX_LATITUDE, Math.max(MIN_LATITUDE, (row + 0.5) * 0.005));
+				double lng = Math.min(MAX_LONGITUDE, Math.max(MIN_LONGITUDE, (col + 0.5) * 0.005));
+				fleet.add(new Car("C" + fleet.size(), 100, lat, lng));
+			}
+		}
+		// Leave exactly one cell of the area without cars
+		Car missing = fleet.remove(5);
+		index.load(fleet);
+		RelocationEngine engine = new RelocationEngine(index, new GeofenceService(new GeofenceProperties()), "least-covered", 1L);
+
+		Car car = new Car("X", 100, 25.04, 121.54);
+		engine.relocate(car);
+
+		assertEquals(index.cellKey(missing.getLat(), missing.getLng()), index.cellKey(car.getLat(), car.getLng()));
+	}
+
+	@Test
+	void leastCoveredModeKeepsCarsInTheirOwnZone() {
+		GeofenceProperties properties = new GeofenceProperties();
+		GeofenceProperties.ZoneProperties city = new GeofenceProperties.ZoneProperties();
+		city.setName("city");
+		city.setPolygon("25.00 121.50, 25.00 121.52, 25.02 121.52, 25.02 121.50");
+		GeofenceProperties.ZoneProperties otherCity = new GeofenceProperties.ZoneProperties();
+		otherCity.setName("other-city");
+		otherCity.setPolygon("24.00 121.00, 24.00 121.01, 24.01 121.01, 24.01 121.00");
+		properties.setZones(List.of(city, otherCity));
+		GeofenceService geofence = new GeofenceService(properties);
+		// Every cell of the city has a car; the other city has none
+		CarSpatialIndex index = new CarSpatialIndex(0.005);
+		List<Car> fleet = new ArrayList<>();
+		for (double lat = 25.0025; lat < 25.02; lat += 0.005) {
+			for (double lng = 121.5025; lng < 121.52; lng += 0.005) {
+				fleet.add(new Car("C" + fleet.size(), 100, lat, lng));
+			}
+		}
+		index.load(fleet);
+		RelocationEngine engine = new RelocationEngine(index, geofence, "least-covered", 5L);
+
+		for (int i = 0; i < 20; i++) {
+			Car car = new Car("X", 100, 25.01, 121.51);
+			engine.relocate(car);
+			assertEquals(0, geofence.getGeofence().zoneAt(car.getLat(), car.getLng()));
+		}
+	}
+
+	@Test
+	void relocatedCarsStayInsideAnIrregularZone() {
+		GeofenceProperties properties = new GeofenceProperties();
+		GeofenceProperties.ZoneProperties zone = new GeofenceProperties.ZoneProperties();
+		zone.setName("l-shape");
+		zone.setPolygon("25.00 121.50, 25.00 121.52, 25.01 121.52, 25.01 121.51, 25.02 121.51, 25.02 121.50");
+		properties.setZones(List.of(zone));
+		GeofenceService geofence = new GeofenceService(properties);
+		RelocationEngine engine = new RelocationEngine(new CarSpatialIndex(0.005), geofence, "random", 3L);
+
+		// Starts in the notch of the L, outside the zone
+		Car car = new Car("A", 100, 25.015, 121.515);
+		for (int i = 0; i < 100; i++) {
+			engine.relocate(car);
+			assertTrue(geofence.contains(car.getLat(), car.getLng()));
+		}
+	}
+
+	private static List<Double> relocations(Long seed) {
+		RelocationEngine engine = new RelocationEngine(new CarSpatialIndex(0.005), new GeofenceService(new GeofenceProperties()), "random", seed);
+		List<Double> positions = new ArrayList<>();
+		Car car = new Car("A", 100, 25.04, 121.54);
+		for (int i = 0; i < 5; i++) {
+			engine.relocate(car);
+			positions.add(car.getLat());
+			positions.add(car.getLng());
+		}
+		return positions;
+	}
+}
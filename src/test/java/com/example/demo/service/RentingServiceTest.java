@@ -0,0 +1,216 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Car;
+import com.example.demo.model.RentRecord;
+import com.example.demo.model.Renter;
+import com.example.demo.repository.CarRepository;
+import com.example.demo.repository.RentRecordRepository;
+import com.example.demo.repository.RenterRepository;
+import com.example.demo.response.RecordPageResponse;
+import com.example.demo.response.RentSummary;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs the renting service against H2: rents racing from several threads, record pages and summaries.
+ */
+@SpringBootTest
+class RentingServiceTest {
+	private static final int THREADS = 8;
+
+	@Autowired
+	private RentingService rentingService;
+
+	@Autowired
+	private CarRepository carRepo;
+
+	@Autowired
+	private RenterRepository renterRepo;
+
+	@Autowired
+	private RentRecordRepository rentRecordRepo;
+
+	@Test
+	void onlyOneOfManyRentersGetsTheSameCar() throws Exception {
+		carRepo.save(new Car("RS1", 80, 25.04, 121.54));
+		long version = carRepo.findByNo("RS1").getVersion();
+		List<Callable<Boolean>> rents = new ArrayList<>();
+		for (long userId = 9100; userId < 9100 + THREADS; userId++) {
+			rentingService.createRenter(userId);
+			Renter renter = renterRepo.findByUserId(userId);
+			Car car = carRepo.findByNo("RS1");
+			rents.add(() -> rentingService.rent(car, renter));
+		}
+
+		List<Object> results = runTogether(rents);
+
+		assertEquals(1, results.stream().filter(Boolean.TRUE::equals).count());
+		assertEquals(THREADS - 1, results.stream().filter(Boolean.FALSE::equals).count());
+		assertEquals(1, openRecords(9100, 9100 + THREADS));
+		Car car = carRepo.findByNo("RS1");
+		assertEquals(true, car.isRiding());
+		// Claimed exactly once
+		assertEquals(version + 1, car.getVersion());
+	}
+
+	@Test
+	void aRenterCannotRentTwoCarsAtOnce() throws Exception {
+		carRepo.save(new Car("RS2", 80, 25.04, 121.54));
+		carRepo.save(new Car("RS3", 80, 25.05, 121.55));
+		rentingService.createRenter(9200L);
+		List<Callable<Boolean>> rents = new ArrayList<>();
+		for (String no : List.of("RS2", "RS3")) {
+			// Both rents start from the same version of the renter
+			Renter renter = renterRepo.findByUserId(9200L);
+			Car car = carRepo.findByNo(no);
+			rents.add(() -> rentingService.rent(car, renter));
+		}
+
+		List<Object> results = runTogether(rents);
+
+		assertEquals(1, results.stream().filter(Boolean.TRUE::equals).count());
+		assertInstanceOf(OptimisticLockingFailureException.class,
+				results.stream().filter(result -> !Boolean.TRUE.equals(result)).findFirst().orElseThrow());
+		assertEquals(1, openRecords(9200, 9201));
+		// The claim of the losing car was rolled back with the rest of its transaction
+		assertEquals(1, (carRepo.findByNo("RS2").isRiding() ? 1 : 0) + (carRepo.findByNo("RS3").isRiding() ? 1 : 0));
+		Renter renter = renterRepo.findByUserId(9200L);
+		assertEquals(true, renter.isRenting());
+		assertEquals(renter.getCurrentCar().getNo(), carRepo.findByNo("RS2").isRiding() ? "RS2" : "RS3");
+	}
+
+	@Test
+	void pagesWalkEveryRecordOnceAcrossEqualStartTimes() {
+		LocalDateTime start = LocalDateTime.of(2026, 1, 5, 8, 0);
+		List<RentRecord> saved = new ArrayList<>();
+		// Three rides start at the same second, twice, then one alone
+		for (int i = 0; i < 7; i++) {
+			saved.add(record(9300L, start.plusMinutes(i / 3), i < 6 ? start.plusHours(1) : null, 10, 1.5, 20));
+		}
+		saved.sort(Comparator.comparing(RentRecord::getStartTime).thenComparing(RentRecord::getId).reversed());
+
+		List<Long> walked = new ArrayList<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			RecordPageResponse page = rentingService.getRentRecordPage(9300L, cursor, 2);
+			page.getRecords().forEach(record -> walked.add(record.getId()));
+			cursor = page.getNextCursor();
+			pages++;
+		} while (cursor != null);
+
+		assertEquals(saved.stream().map(RentRecord::getId).toList(), walked);
+		assertEquals(4, pages);
+	}
+
+	@Test
+	void theLastPageHasNoCursor() {
+		LocalDateTime start = LocalDateTime.of(2026, 1, 6, 8, 0);
+		for (int i = 0; i < 4; i++) {
+			record(9301L, start.plusMinutes(i), null, 0, 0, 0);
+		}
+
+		RecordPageResponse first = rentingService.getRentRecordPage(9301L, null, 2);
+		RecordPageResponse last = rentingService.getRentRecordPage(9301L, first.getNextCursor(), 2);
+
+		assertNotNull(first.getNextCursor());
+		assertEquals(2, last.getRecords().size());
+		assertNull(last.getNextCursor());
+		assertNull(rentingService.getRentRecordPage(9302L, null, 2).getNextCursor());
+	}
+
+	@Test
+	void malformedCursorsAreRejected() {
+		for (String cursor : List.of("not base64!", "bm8tc2VwYXJhdG9y", "eHx5")) {
+			assertThrows(IllegalArgumentException.class, () -> rentingService.getRentRecordPage(9303L, cursor, 2), cursor);
+		}
+	}
+
+	@Test
+	void summaryTotalsOnlyFinishedRides() {
+		LocalDateTime start = LocalDateTime.of(2026, 1, 7, 8, 0);
+		record(9304L, start, start.plusMinutes(30), 120, 2.5, 30);
+		record(9304L, start.plusHours(1), start.plusHours(2), 80, 4.0, 60);
+		record(9304L, start.plusHours(3), null, 0, 0, 0);
+		record(9305L, start, null, 0, 0, 0);
+
+		RentSummary summary = rentingService.getRentSummary(9304L);
+		assertEquals(2, summary.getRides());
+		assertEquals(200, summary.getTotalBill());
+		assertEquals(6.5, summary.getTotalDistance());
+		assertEquals(90, summary.getTotalMinutes());
+
+		// A renter whose only ride is still going
+		RentSummary none = rentingService.getRentSummary(9305L);
+		assertEquals(0, none.getRides());
+		assertEquals(0, none.getTotalBill());
+		assertEquals(0, none.getTotalDistance());
+		assertEquals(0, none.getTotalMinutes());
+	}
+
+	private RentRecord record(Long userId, LocalDateTime startTime, LocalDateTime endTime, int bill, double distance, long minutes) {
+		RentRecord record = new RentRecord();
+		record.setUserid(userId);
+		record.setStartTime(startTime);
+		record.setEndTime(endTime);
+		record.setBill(bill);
+		record.setDistance(distance);
+		record.setTotalMinutes(endTime == null ? null : minutes);
+		return rentRecordRepo.save(record);
+	}
+
+	/**
+	 * Runs the tasks on their own threads, released together, and returns their results or exceptions.
+	 */
+	private static List<Object> runTogether(List<Callable<Boolean>> tasks) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<>();
+			for (Callable<Boolean> task : tasks) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					return task.call();
+				}));
+			}
+			start.countDown();
+			List<Object> results = new ArrayList<>();
+			for (Future<Boolean> future : futures) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					results.add(e.getCause());
+				}
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private long openRecords(long fromUserId, long toUserId) {
+		return rentRecordRepo.findAll().stream()
+				.filter(record -> record.getUserid() >= fromUserId && record.getUserid() < toUserId)
+				.filter(record -> record.getEndTime() == null)
+				.count();
+	}
+}
@@ -0,0 +1,51 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Car;
+import com.example.demo.model.CarStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RepairQueuesTest {
+
+	@Test
+	void lowPowerQueueIsOrderedByPowerThenDistanceAndPaginated() {
+		RepairQueues queues = new RepairQueues();
+		queues.load(List.of(new Car("FAR", 5, 25.100, 121.600), new Car("NEAR", 5, 25.041, 121.541),
+				new Car("EMPTY", 0, 25.200, 121.700), new Car("FULL", 90, 25.040, 121.540), new Car("LOW", 20, 25.040, 121.540)));
+
+		List<Car> first = queues.lowPower(20, 25.040, 121.540, 0, 2);
+		List<Car> second = queues.lowPower(20, 25.040, 121.540, 1, 2);
+
+		assertEquals(List.of("EMPTY", "NEAR"), first.stream().map(Car::getNo).toList());
+		assertEquals(List.of("FAR", "LOW"), second.stream().map(Car::getNo).toList());
+	}
+
+	@Test
+	void statusQueueAndCountsGroupCarsByStatus() {
+		RepairQueues queues = new RepairQueues();
+		Car broken = new Car("B", 50, 25.040, 121.540);
+		broken.setCarStatus(CarStatus.BROKEN);
+		queues.load(List.of(broken, new Car("A", 60, 25.040, 121.540)));
+
+		assertEquals(List.of("B"), queues.allByStatus(CarStatus.BROKEN).stream().map(Car::getNo).toList());
+		@SuppressWarnings("unchecked")
+		Map<String, Integer> byStatus = (Map<String, Integer>) queues.counts().get("byStatus");
+		assertEquals(1, byStatus.get("BROKEN"));
+		assertEquals(1, byStatus.get("NORMAL"));
+	}
+
+	@Test
+	void lowPowerCountIncludesEveryStatus() {
+		RepairQueues queues = new RepairQueues();
+		Car broken = new Car("B", 10, 25.040, 121.540);
+		broken.setCarStatus(CarStatus.BROKEN);
+		queues.load(List.of(broken, new Car("A", 20, 25.040, 121.540), new Car("C", 21, 25.040, 121.540)));
+
+		assertEquals(2, queues.lowPowerCount(RepairQueues.NO_POWER_LEVEL));
+		assertEquals(3, queues.lowPowerCount(RepairQueues.MAX_POWER));
+	}
+}
@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionStoreTest {
+
+	@Test
+	void loginReturnsTheSameTokenUntilLogout() {
+		SessionStore store = new SessionStore(Duration.ofHours(1), Duration.ofMinutes(10), 10, () -> 0L);
+		String token = store.login(1L);
+
+		assertEquals(token, store.login(1L));
+		assertTrue(store.isAuthenticated(1L, token));
+		assertFalse(store.isAuthenticated(1L, "other"));
+		assertTrue(store.logout(1L));
+		assertFalse(store.logout(1L));
+		assertFalse(store.isAuthenticated(1L, token));
+		assertEquals(1, store.getHitCount());
+		assertEquals(2, store.getMissCount());
+	}
+
+	@Test
+	void sessionsExpireWhenIdleOrTooOld() {
+		AtomicLong now = new AtomicLong();
+		SessionStore store = new SessionStore(Duration.ofMinutes(30), Duration.ofMinutes(10), 10, now::get);
+		String token = store.login(1L);
+
+		now.set(Duration.ofMinutes(9).toMillis());
+		assertTrue(store.isAuthenticated(1L, token));
+		now.set(Duration.ofMinutes(18).toMillis());
+		assertTrue(store.isAuthenticated(1L, token));
+		now.set(Duration.ofMinutes(30).toMillis());
+		assertFalse(store.isAuthenticated(1L, token));
+
+		String second = store.login(2L);
+		now.addAndGet(Duration.ofMinutes(10).toMillis());
+		store.sweep();
+		assertEquals(0, store.size());
+		assertFalse(store.isAuthenticated(2L, second));
+	}
+
+	@Test
+	void evictsTheIdlestSessionWhenFull() {
+		AtomicLong now = new AtomicLong();
+		SessionStore store = new SessionStore(Duration.ofHours(1), Duration.ofHours(1), 2, now::get);
+		String first = store.login(1L);
+		now.set(2000);
+		String second = store.login(2L);
+		now.set(4000);
+		store.isAuthenticated(1L, first);
+		String third = store.login(3L);
+
+		assertEquals(2, store.size());
+		assertTrue(store.isAuthenticated(1L, first));
+		assertFalse(store.isAuthenticated(2L, second));
+		assertTrue(store.isAuthenticated(3L, third));
+		assertEquals(1, store.getEvictionCount());
+	}
+
+	@Test
+	void evictionSkipsSessionsThatAreGone() {
+		AtomicLong now = new AtomicLong();
+		SessionStore store = new SessionStore(Duration.ofHours(1), Duration.ofHours(1), 2, now::get);
+		for (long id = 10; id < 1000; id++) {
+			store.login(id);
+			store.logout(id);
+		}
+		String first = store.login(1L);
+		String second = store.login(2L);
+		now.set(2000);
+		store.isAuthenticated(1L, first);
+		String third = store.login(3L);
+
+		assertEquals(2, store.size());
+		assertTrue(store.isAuthenticated(1L, first));
+		assertFalse(store.isAuthenticated(2L, second));
+		assertTrue(store.isAuthenticated(3L, third));
+		assertEquals(1, store.getEvictionCount());
+	}
+}
@@ -0,0 +1,84 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SignedTokenServiceTest {
+
+	private static SignedTokenService.RevocationStore store(Map<Long, Long> times) {
+		return new SignedTokenService.RevocationStore() {
+			@Override
+			public Long tokensValidAfter(Long userID) {
+				return times.get(userID);
+			}
+
+			@Override
+			public void revoke(Long userID, long time) {
+				times.merge(userID, time, Math::max);
+			}
+		};
+	}
+
+	private static SignedTokenService service(String secret, Duration ttl, AtomicLong now, Map<Long, Long> times) {
+		return new SignedTokenService(secret, ttl, Duration.ZERO, now::get, store(times));
+	}
+
+	@Test
+	void tokensCarryTheUserAndRole() {
+		AtomicLong now = new AtomicLong(1000);
+		SignedTokenService service = service("secret", Duration.ofHours(1), now, new ConcurrentHashMap<>());
+		String token = service.issue(7L, false);
+
+		SignedTokenService.TokenClaims claims = service.verify(7L, token);
+		assertNotNull(claims);
+		assertEquals(7L, claims.userId());
+		assertFalse(claims.renter());
+		assertNull(service.verify(8L, token));
+		assertNull(service.verify(7L, token.substring(0, token.length() - 2) + "AA"));
+		assertNull(service("other", Duration.ofHours(1), now, new ConcurrentHashMap<>()).verify(7L, token));
+	}
+
+	@Test
+	void tokensExpireAndCanBeRevoked() {
+		AtomicLong now = new AtomicLong(1000);
+		SignedTokenService service = service("secret", Duration.ofMinutes(10), now, new ConcurrentHashMap<>());
+		String token = service.issue(1L, true);
+
+		service.revoke(service.verify(1L, token));
+		assertNull(service.verify(1L, token));
+		String renewed = service.issue(1L, true);
+		assertNotNull(service.verify(1L, renewed));
+
+		now.addAndGet(Duration.ofMinutes(11).toMillis());
+		assertNull(service.verify(1L, renewed));
+	}
+
+	@Test
+	void revocationsAreSharedBetweenInstances() {
+		Map<Long, Long> times = new ConcurrentHashMap<>();
+		AtomicLong behind = new AtomicLong(1000);
+		AtomicLong ahead = new AtomicLong(5000);
+		SignedTokenService first = service("secret", Duration.ofMinutes(10), behind, times);
+		SignedTokenService second = service("secret", Duration.ofMinutes(10), ahead, times);
+		String token = second.issue(1L, true);
+
+		// Logging out on an instance whose clock is behind still covers the token
+		first.revoke(first.verify(1L, token));
+		assertNull(first.verify(1L, token));
+		assertNull(second.verify(1L, token));
+
+		// A later login is accepted everywhere, whichever clock issued it
+		String renewed = first.issue(1L, true);
+		assertNotNull(first.verify(1L, renewed));
+		assertNotNull(second.verify(1L, renewed));
+	}
+}
@@ -0,0 +1,51 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TariffTest {
+	private static final Tariff.Rule LEGACY = new Tariff.Rule(null, null, null, 3.0, 0.0, 0.0);
+
+	@Test
+	void defaultTariffMatchesTheOriginalPricing() {
+		Tariff tariff = new Tariff(List.of("default"), 10, List.of(LEGACY));
+		for (int i = 0; i < 20000; i++) {
+			double distance = i * 0.37;
+			int bill = (int) distance * 3;
+			assertEquals(bill, tariff.bill(0, i % 24, distance, i, false));
+			assertEquals((int) (bill * 0.9), tariff.bill(-1, i % 24, distance, i, true));
+		}
+	}
+
+	@Test
+	void laterRulesOverrideOnlyTheRatesTheySet() {
+		Tariff tariff = new Tariff(List.of("centre", "suburb"), 20, List.of(
+				LEGACY,
+				new Tariff.Rule(null, 22, 6, null, 1.0, null),
+				new Tariff.Rule("centre", 7, 10, null, 0.5, 10.0)));
+
+		assertEquals(30, tariff.bill(1, 12, 10.4, 60, false));
+		// The night rule wraps around midnight and applies outside the zones too
+		assertEquals(90, tariff.bill(-1, 23, 10, 60, false));
+		assertEquals(90, tariff.bill(0, 5, 10, 60, false));
+		assertEquals(30, tariff.bill(0, 6, 10, 60, false));
+		assertEquals(70, tariff.bill(0, 8, 10, 60, false));
+		assertEquals(56, tariff.bill(0, 8, 10, 60, true));
+		assertEquals(30, tariff.bill(1, 8, 10, 60, false));
+	}
+
+	@Test
+	void rejectsInvalidRules() {
+		assertThrows(IllegalArgumentException.class,
+				() -> new Tariff(List.of("centre"), 10, List.of(new Tariff.Rule("airport", null, null, 1.0, null, null))));
+		assertThrows(IllegalArgumentException.class,
+				() -> new Tariff(List.of("centre"), 10, List.of(new Tariff.Rule(null, 25, null, 1.0, null, null))));
+		assertThrows(IllegalArgumentException.class,
+				() -> new Tariff(List.of("centre"), 10, List.of(new Tariff.Rule(null, null, null, -1.0, null, null))));
+		assertThrows(IllegalArgumentException.class, () -> new Tariff(List.of("centre"), 120, List.of(LEGACY)));
+	}
+}
@@ -0,0 +1,135 @@
+package com.example.demo.service;
+
+import com.example.demo.config.GeofenceProperties;
+import com.example.demo.model.RentRecord;
+import com.example.demo.response.TripAnalyticsResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TripStoreTest {
+	private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+	private static TripStore store() {
+		return new TripStore(new GeofenceService(new GeofenceProperties()), 2, 1000);
+	}
+
+	private static RentRecord record(long id, SplittableRandom random) {
+		LocalDateTime startTime = START.plusMinutes(random.nextInt(60 * 24 * 30));
+		long minutes = random.nextInt(180);
+		double distance = random.nextInt(30000) / 1000.0;
+		return new RentRecord(id, 1L, 25.03 + random.nextDouble() * 0.04, 121.52 + random.nextDouble() * 0.04,
+				25.03 + random.nextDouble() * 0.04, 121.52 + random.nextDouble() * 0.04, startTime, startTime.plusMinutes(minutes),
+				minutes, 0, distance, random.nextInt(500), random.nextBoolean());
+	}
+
+	@Test
+	void packedColumnsDecodeToTheirValues() {
+		int[][] columns = {{}, {7, 7, 7}, {-5, 250, 0}, {25_040_000, 25_060_000, 25_030_000}, {Integer.MIN_VALUE, 0, Integer.MAX_VALUE}};
+		for (int[] values : columns) {
+			int[] decoded = new int[values.length];
+			PackedColumn.pack(values, values.length).decode(decoded);
+			assertArrayEquals(values, decoded);
+		}
+		assertEquals(0, PackedColumn.pack(columns[1], 3).sizeInBytes());
+		assertEquals(3, PackedColumn.pack(columns[2], 3).sizeInBytes());
+		assertEquals(6, PackedColumn.pack(columns[3], 3).sizeInBytes());
+	}
+
+	@Test
+	void recordIdsBeyondTheIntRangeAreStoredOnce() {
+		TripStore store = store();
+		SplittableRandom random = new SplittableRandom(3);
+		long large = Integer.MAX_VALUE + 10L;
+
+		assertTrue(store.add(record(large, random)));
+		assertTrue(store.add(record(large + (1 << 16), random)));
+		assertTrue(store.add(record(7, random)));
+		assertFalse(store.add(record(large, random)));
+		assertEquals(3L, store.stats().get("trips"));
+	}
+
+	@Test
+	void aggregatesMatchAScanOfTheRecords() {
+		TripStore store = store();
+		SplittableRandom random = new SplittableRandom(42);
+		Map<Integer, long[]> byHour = new HashMap<>();
+		long firstWeek = 0;
+		int size = 2 * TripSegment.CAPACITY + 1000;
+		for (int i = 1; i <= size; i++) {
+			RentRecord record = record(i, random);
+			store.add(record);
+			long[] totals = byHour.computeIfAbsent(record.getStartTime().getHour(), hour -> new long[2]);
+			totals[0]++;
+			totals[1] += record.getBill();
+			firstWeek += record.getStartTime().isBefore(START.plusDays(7)) ? 1 : 0;
+		}
+		assertFalse(store.add(record(1, random)));
+
+		TripAnalyticsResponse all = store.aggregate(List.of(), null, null, 0.01, "key", 10);
+		assertEquals(size, all.getTrips());
+		assertEquals(1, all.getGroups().size());
+
+		TripAnalyticsResponse hours = store.aggregate(List.of(TripStore.Dimension.HOUR), null, null, 0.01, "key", 100);
+		assertEquals(24, hours.getGroupCount());
+		for (TripAnalyticsResponse.Group group : hours.getGroups()) {
+			long[] totals = byHour.get((Integer) group.getKey().get("hour"));
+			assertEquals(totals[0], group.getTrips());
+			assertEquals(totals[1], group.getRevenue());
+		}
+
+		TripAnalyticsResponse week = store.aggregate(List.of(TripStore.Dimension.DAY, TripStore.Dimension.ZONE), START,
+				START.plusDays(7), 0.01, "revenue", 100);
+		assertEquals(firstWeek, week.getTrips());
+		assertEquals(7, week.getGroups().stream().map(group -> group.getKey().get("day")).distinct().count());
+
+		TripAnalyticsResponse cells = store.aggregate(List.of(TripStore.Dimension.START_CELL), null, null, 0.02, "trips", 3);
+		assertEquals(3, cells.getGroups().size());
+		assertEquals(store.stats().get("trips"), (long) size);
+	}
+
+	@Test
+	void returnsAreJoinedWithTheirRents() {
+		TripStore store = store();
+		long start = START.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		store.apply(RentalEvent.rented(7, "C1", 11, 25.04, 121.54, start));
+		store.apply(RentalEvent.returned(7, "C1", 11, 25.05, 121.55, 80, 2.5, 12, 30, 0, true, start + 720_000));
+		store.apply(RentalEvent.returned(8, "C2", 12, 25.05, 121.55, 80, 2.5, 12, 30, 0, true, start + 720_000));
+		// A replayed ride is not stored twice
+		store.reset();
+		store.apply(RentalEvent.rented(7, "C1", 11, 25.04, 121.54, start));
+		store.apply(RentalEvent.returned(7, "C1", 11, 25.05, 121.55, 80, 2.5, 12, 30, 0, true, start + 720_000));
+
+		TripAnalyticsResponse trips = store.aggregate(List.of(TripStore.Dimension.HOUR, TripStore.Dimension.COUPON), null, null,
+				0.01, "key", 10);
+		assertEquals(1, trips.getTrips());
+		TripAnalyticsResponse.Group group = trips.getGroups().get(0);
+		assertEquals(0, group.getKey().get("hour"));
+		assertEquals(true, group.getKey().get("coupon"));
+		assertEquals(30, group.getRevenue());
+		assertEquals(12.0, group.getAvgMinutes());
+		assertEquals(2.5, group.getAvgDistance());
+		assertEquals(1L, store.stats().get("unmatchedReturns"));
+	}
+
+	@Test
+	void invalidQueriesAreRejected() {
+		TripStore store = store();
+		assertThrows(IllegalArgumentException.class, () -> TripStore.Dimension.parse("color"));
+		assertThrows(IllegalArgumentException.class, () -> store.aggregate(List.of(TripStore.Dimension.HOUR,
+				TripStore.Dimension.HOUR), null, null, 0.01, "key", 10));
+		assertThrows(IllegalArgumentException.class, () -> store.aggregate(List.of(), null, null, 0, "key", 10));
+		assertThrows(IllegalArgumentException.class, () -> store.aggregate(List.of(), null, null, 0.01, "color", 10));
+	}
+}